@@ -2,7 +2,6 @@ package uk.ac.ed.inf;
 
 import uk.ac.ed.inf.ilp.constant.SystemConstants;
 import uk.ac.ed.inf.ilp.data.LngLat;
-import uk.ac.ed.inf.ilp.data.NamedRegion;
 
 import java.util.*;
 
@@ -13,133 +12,618 @@ import java.util.*;
  * @author B209981
  */
 public class AStar {
-    // Direction angles in degrees
-    private static final double[] DIRECTIONS = {0.0, 45.0, 90.0, 135.0, 180.0, 225.0, 270.0, 315.0};
-
-    // Open set for the nodes to be evaluated
-    static PriorityQueue<Node> openSet = new PriorityQueue<>(Comparator.comparingDouble(n -> n.total));
-    // Closed set for the nodes already evaluated
-    static HashSet<Node> closedSet = new HashSet<>();
-    // Path found by the algorithm
-    static List<Node> path;
-
     /**
      * Performs A* search to find the shortest path avoiding no-fly zones and staying within the central area.
+     * All search state lives in the given context, so searches with different contexts can run concurrently.
+     * The context is reset before the search starts and holds the path once it is found.
+     * The search is anytime (ARA*): it runs one iteration per weight of the context's weight schedule, the first
+     * finding a path fast and each later one improving it with a lower weight, reusing the nodes found so far.
+     * When the context's time budget runs out the search stops and keeps the cheapest path found.
      *
-     * @param noFlyZones Array of no-fly zones
+     * @param context Search context holding the open set, closed set, weight schedule, time budget and resulting path
+     * @param flightMap Central area and no-fly zones to respect
      * @param start Start node
      * @param goal Goal node
-     * @param central Central named region
      * @return true if a path is found, false otherwise
      */
-    public static boolean findShortestPath(NamedRegion[] noFlyZones, Node start, Node goal, NamedRegion central) {
-        long startTime = System.nanoTime();
-        openSet.add(start);
+    public static boolean findShortestPath(SearchContext context, FlightMap flightMap, Node start, Node goal) {
+        long deadline = System.nanoTime() + context.budgetNanos();
+        context.reset();
+        context.setOrigin(start.coordinates);
+        NodeArena arena = context.arena;
+        double goalLng = goal.coordinates.lng();
+        double goalLat = goal.coordinates.lat();
+        if (context.usesLandmarks()) {
+            context.landmarkTable = flightMap.landmarks();
+            context.landmarkGoal = context.landmarkTable.distancesTo(goalLng, goalLat);
+        }
+
+        int root = arena.add(start.coordinates.lng(), start.coordinates.lat());
+        arena.central[root] = flightMap.isInCentralArea(start.coordinates);
+        arena.key[root] = context.keyOf(arena.lng[root], arena.lat[root], arena.central[root]);
+        arena.estimate[root] = heuristic(context, arena.lng[root], arena.lat[root], goalLng, goalLat);
+        arena.total[root] = context.weight * arena.estimate[root];
+        context.openSet.add(root);
+        context.nodeIndex.put(arena.key[root], root);
+
+        double[] weights = context.weights();
+        int best = NodeArena.NONE;
+        for (int iteration = 0; iteration < weights.length; iteration++) {
+            if (iteration > 0) {
+                startIteration(context, weights[iteration]);
+            }
+            int found = improvePath(context, flightMap, goalLng, goalLat, best, deadline);
+            if (found != NodeArena.NONE && (best == NodeArena.NONE || arena.cost[found] < arena.cost[best])) {
+                best = found;
+            }
+            if (System.nanoTime() > deadline) {
+                // Out of time, keeping the best path found so far
+                context.timedOut = true;
+                break;
+            }
+            context.completedIterations++;
+        }
+
+        if (best == NodeArena.NONE) {
+            return false; // No path found
+        }
+        context.path = arena.pathFromRoot(best);
+        return true;
+    }
+
+    // Expands nodes until a node close to the goal is taken from the open set, or no queued node can lead to a path
+    // cheaper than the best one found so far. Returns the node close to the goal, or NONE if none was found.
+    private static int improvePath(SearchContext context, FlightMap flightMap, double goalLng, double goalLat, int best, long deadline) {
+        OpenSet openSet = context.openSet;
+        NodeArena arena = context.arena;
 
         while (!openSet.isEmpty()) {
-            if ((System.nanoTime() - startTime) > 30_000_000_000L) {
-                // Timeout after 30 seconds
-                return false;
+            if (System.nanoTime() > deadline) {
+                return NodeArena.NONE;
+            }
+            if (best != NodeArena.NONE && arena.total[openSet.peek()] >= arena.cost[best]) {
+                // No queued node can improve on the path already found
+                return NodeArena.NONE;
             }
 
-            Node current = openSet.poll();
-            closedSet.add(current);
+            int current = openSet.poll();
+            arena.expanded[current] = true;
+            context.closedSet.add(arena.key[current]);
+            context.expandedNodes++;
 
             // Check if the goal is reached
-            if (current != null) {
-                if (!isCloseToGoal(current, goal)) {
-                    exploreNeighbors(current, noFlyZones, goal, central);
-                } else {
-                    reconstructPath(current);
-                    return true;
+            if (!isCloseTo(arena.lng[current], arena.lat[current], goalLng, goalLat)) {
+                exploreNeighbors(context, current, flightMap, goalLng, goalLat);
+            } else {
+                return current;
+            }
+        }
+        return NodeArena.NONE;
+    }
+
+    // Starts the next iteration of an anytime search with a lower weight: the nodes reached more cheaply after
+    // their cell was closed are queued again, every queued node is re-keyed with the new weight, and no cell is closed
+    private static void startIteration(SearchContext context, double weight) {
+        context.iteration++;
+        context.weight = weight;
+        OpenSet openSet = context.openSet;
+        NodeArena arena = context.arena;
+        for (int i = 0; i < context.inconsistentCount; i++) {
+            int node = context.inconsistent[i];
+            // A node replaced by a cheaper one in the same cell is no longer needed
+            if (context.nodeIndex.get(arena.key[node]) == node && !openSet.contains(node)) {
+                openSet.add(node);
+            }
+        }
+        context.inconsistentCount = 0;
+        openSet.updateAll(node -> arena.total[node] = arena.cost[node] + weight * arena.estimate[node]);
+        context.closedSet.clear();
+    }
+
+    /**
+     * Performs a bidirectional A* search: one frontier grows forwards from the start and one backwards from the goal,
+     * always expanding the frontier with fewer queued nodes, until they meet in the middle. The two frontiers lie on
+     * different lattices, so they meet when a node of one is within DRONE_IS_CLOSE_DISTANCE of a node of the other.
+     * The moves of the backward node's path are then flown from the forward node instead, which ends the path within
+     * DRONE_IS_CLOSE_DISTANCE of the goal, and the meeting is only used if each of those moves is valid, including
+     * the rule that the drone cannot leave the central area once inside it.
+     * The search stops when the cheapest queued node of either frontier cannot lead to a cheaper path than the best
+     * one found. It is a single weighted A* search using the first weight of the context's weight schedule.
+     *
+     * @param context Search context holding the forward frontier, the weight schedule, the time budget and resulting path
+     * @param flightMap Central area and no-fly zones to respect
+     * @param start Start node
+     * @param goal Goal node
+     * @return true if a path is found, false otherwise
+     */
+    public static boolean findBidirectionalPath(SearchContext context, FlightMap flightMap, Node start, Node goal) {
+        long deadline = System.nanoTime() + context.budgetNanos();
+        SearchContext backward = context.backward();
+        context.reset();
+        backward.reset();
+        // Both frontiers run the last iteration of the schedule only, so no node is kept for a later one
+        context.iteration = context.weights().length - 1;
+        backward.iteration = backward.weights().length - 1;
+        context.setOrigin(start.coordinates);
+        backward.setOrigin(goal.coordinates);
+
+        double startLng = start.coordinates.lng();
+        double startLat = start.coordinates.lat();
+        double goalLng = goal.coordinates.lng();
+        double goalLat = goal.coordinates.lat();
+        double estimate = distance(startLng, startLat, goalLng, goalLat);
+        addRoot(context, flightMap, start.coordinates, estimate);
+        addRoot(backward, flightMap, goal.coordinates, estimate);
+        List<LngLat> startTarget = List.of(start.coordinates);
+        boolean[] reached = new boolean[1];
+
+        Meeting meeting = new Meeting();
+        while (!context.openSet.isEmpty() && !backward.openSet.isEmpty()) {
+            if (System.nanoTime() > deadline) {
+                // Out of time, keeping the best path found so far
+                context.timedOut = true;
+                break;
+            }
+            if (meeting.forwardNode != NodeArena.NONE
+                    && (context.arena.total[context.openSet.peek()] >= meeting.cost
+                    || backward.arena.total[backward.openSet.peek()] >= meeting.cost)) {
+                // No queued node of one of the frontiers can improve on the path already found
+                break;
+            }
+
+            if (context.openSet.size() <= backward.openSet.size()) {
+                int current = pollAndClose(context);
+                checkMeeting(context, backward, current, true, flightMap, goalLng, goalLat, meeting);
+                exploreNeighbors(context, current, flightMap, goalLng, goalLat);
+            } else {
+                int current = pollAndClose(backward);
+                checkMeeting(context, backward, current, false, flightMap, goalLng, goalLat, meeting);
+                explorePredecessors(backward, current, flightMap, startTarget, reached);
+            }
+        }
+
+        context.expandedNodes += backward.expandedNodes;
+        context.skippedClosedNodes += backward.skippedClosedNodes;
+        if (meeting.forwardNode == NodeArena.NONE) {
+            return false; // No path found
+        }
+        context.completedIterations = 1;
+        context.path = joinFrontiers(context, backward, meeting.forwardNode, meeting.backwardNode);
+        return true;
+    }
+
+    // Adds the root node of a search at a position and queues it
+    private static void addRoot(SearchContext context, FlightMap flightMap, LngLat position, double estimate) {
+        NodeArena arena = context.arena;
+        int root = arena.add(position.lng(), position.lat());
+        arena.central[root] = flightMap.isInCentralArea(position);
+        arena.key[root] = context.keyOf(arena.lng[root], arena.lat[root], arena.central[root]);
+        arena.estimate[root] = estimate;
+        arena.total[root] = context.weight * estimate;
+        context.openSet.add(root);
+        context.nodeIndex.put(arena.key[root], root);
+    }
+
+    // Takes the cheapest node from the open set of a context and closes its cell
+    private static int pollAndClose(SearchContext context) {
+        int current = context.openSet.poll();
+        context.arena.expanded[current] = true;
+        context.closedSet.add(context.arena.key[current]);
+        context.expandedNodes++;
+        return current;
+    }
+
+    // Looks for nodes of the other frontier within DRONE_IS_CLOSE_DISTANCE of a node just expanded, and keeps the
+    // cheapest meeting whose backward moves can be flown from the forward node.
+    // A position within that distance lies at most two cells away in each axis of the other frontier's lattice,
+    // and near the boundary of the central area each of those cells may hold a node on either side of it.
+    private static void checkMeeting(SearchContext forward, SearchContext backward, int node, boolean expandedForward,
+                                     FlightMap flightMap, double goalLng, double goalLat, Meeting meeting) {
+        SearchContext other = expandedForward ? backward : forward;
+        NodeArena arena = expandedForward ? forward.arena : backward.arena;
+        double lng = arena.lng[node];
+        double lat = arena.lat[node];
+        if (!other.arena.isNearBounds(lng, lat, SystemConstants.DRONE_IS_CLOSE_DISTANCE)) {
+            // The frontiers have not come close to each other yet
+            return;
+        }
+        long key = other.keyOf(lng, lat);
+        int column = Lattice.column(key);
+        int row = Lattice.row(key);
+        // Away from the boundary of the central area every node close by is on the same side as the expanded node,
+        // as the close distance is not more than a move
+        long firstState = arena.central[node] ? Lattice.CENTRAL : 0;
+        long lastState = firstState;
+        if (flightMap.mayCrossCentralBoundary(lng, lat)) {
+            firstState = 0;
+            lastState = Lattice.CENTRAL;
+        }
+
+        for (int dc = -2; dc <= 2; dc++) {
+            for (int dr = -2; dr <= 2; dr++) {
+                for (long state = firstState; state <= lastState; state++) {
+                    int candidate = other.nodeIndex.get(Lattice.pack(column + dc, row + dr) | state);
+                    if (candidate == NodeArena.NONE
+                            || !isCloseTo(lng, lat, other.arena.lng[candidate], other.arena.lat[candidate])) {
+                        continue;
+                    }
+                    int forwardNode = expandedForward ? node : candidate;
+                    int backwardNode = expandedForward ? candidate : node;
+                    double cost = forward.arena.cost[forwardNode] + backward.arena.cost[backwardNode];
+                    if (cost < meeting.cost && canFlyBackwardMoves(forward, backward, forwardNode, backwardNode, flightMap, goalLng, goalLat)) {
+                        meeting.forwardNode = forwardNode;
+                        meeting.backwardNode = backwardNode;
+                        meeting.cost = cost;
+                    }
                 }
             }
+        }
+    }
 
+    // Follows the moves of a backward node's path to the goal from the position of a forward node instead.
+    // Checks that each move is valid and that the last position is close to the goal.
+    private static boolean canFlyBackwardMoves(SearchContext forward, SearchContext backward, int forwardNode, int backwardNode,
+                                               FlightMap flightMap, double goalLng, double goalLat) {
+        NodeArena arena = backward.arena;
+        double[] position = backward.nextPosition;
+        double lng = forward.arena.lng[forwardNode];
+        double lat = forward.arena.lat[forwardNode];
+        boolean central = forward.arena.central[forwardNode];
+        for (int node = backwardNode; arena.parent[node] != NodeArena.NONE; node = arena.parent[node]) {
+            LngLatHandler.nextPosition(lng, lat, arena.direction[node], position);
+            boolean nextCentral = flightMap.isInCentralArea(position[0], position[1]);
+            if (!isValidMove(position[0], position[1], nextCentral, flightMap, lng, lat, central)) {
+                return false;
+            }
+            lng = position[0];
+            lat = position[1];
+            central = nextCentral;
         }
+        return isCloseTo(lng, lat, goalLng, goalLat);
+    }
 
-        return false; // No path found
+    // Builds the path from the start to the forward node, followed by the moves of the backward node's path
+    private static List<Node> joinFrontiers(SearchContext forward, SearchContext backward, int forwardNode, int backwardNode) {
+        List<Node> path = forward.arena.pathFromRoot(forwardNode);
+        NodeArena arena = backward.arena;
+        double[] position = backward.nextPosition;
+        Node previous = path.get(path.size() - 1);
+        for (int node = backwardNode; arena.parent[node] != NodeArena.NONE; node = arena.parent[node]) {
+            LngLatHandler.nextPosition(previous.coordinates.lng(), previous.coordinates.lat(), arena.direction[node], position);
+            Node step = new Node(new LngLat(position[0], position[1]));
+            step.parent = previous;
+            step.cost = previous.cost + SystemConstants.DRONE_MOVE_DISTANCE;
+            step.angle = arena.direction[node] * LngLatHandler.ANGLE_STEP;
+            path.add(step);
+            previous = step;
+        }
+        return path;
     }
 
-    // Checks if the current node is close to the goal
-    private static boolean isCloseToGoal(Node current, Node goal) {
-        return new LngLatHandler().isCloseTo(current.coordinates, goal.coordinates);
+    // Meeting point of the two frontiers of a bidirectional search
+    private static final class Meeting {
+        // Forward node and the backward node whose moves are flown from it
+        int forwardNode = NodeArena.NONE;
+        int backwardNode = NodeArena.NONE;
+        // Cost of the path through the meeting
+        double cost = Double.MAX_VALUE;
     }
 
-    // Reconstructs the path from the goal to the start
-    private static void reconstructPath(Node current) {
-        path = new ArrayList<>();
-        while (current != null) {
-            path.add(current);
-            current = current.parent;
+    /**
+     * Performs a single search backwards from the goal that finds a path to the goal from every target.
+     * The search keeps expanding until every target has a node within DRONE_IS_CLOSE_DISTANCE of it, so all the
+     * paths come from one search tree. Each path starts at the node found close to its target and ends exactly at
+     * the goal, and the angle of each node is the direction of the move from it towards the goal.
+     * The search is a single weighted A* search using the first weight of the context's weight schedule.
+     *
+     * @param context Search context holding the open set and closed set
+     * @param flightMap Central area and no-fly zones to respect
+     * @param targets Positions to find paths from, such as restaurant locations
+     * @param goal Goal node where every path ends
+     * @return Paths from each target to the goal in the order of the targets, null for targets without a path
+     */
+    public static List<List<Node>> findPathsToGoal(SearchContext context, FlightMap flightMap, List<LngLat> targets, Node goal) {
+        long deadline = System.nanoTime() + context.budgetNanos();
+        context.reset();
+        context.setOrigin(goal.coordinates);
+        NodeArena arena = context.arena;
+
+        List<List<Node>> paths = new ArrayList<>(Collections.nCopies(targets.size(), null));
+        boolean[] reached = new boolean[targets.size()];
+        int unreached = targets.size();
+
+        OpenSet openSet = context.openSet;
+        int root = arena.add(goal.coordinates.lng(), goal.coordinates.lat());
+        arena.central[root] = flightMap.isInCentralArea(goal.coordinates);
+        arena.key[root] = context.keyOf(arena.lng[root], arena.lat[root], arena.central[root]);
+        arena.estimate[root] = estimateToNearestTarget(arena.lng[root], arena.lat[root], targets, reached);
+        arena.total[root] = context.weight * arena.estimate[root];
+        openSet.add(root);
+        context.nodeIndex.put(arena.key[root], root);
+
+        while (!openSet.isEmpty() && unreached > 0) {
+            if (System.nanoTime() > deadline) {
+                // Out of time, keeping the paths found so far
+                context.timedOut = true;
+                break;
+            }
+
+            int current = openSet.poll();
+            arena.expanded[current] = true;
+            context.closedSet.add(arena.key[current]);
+            context.expandedNodes++;
+
+            // Record a path for every target the current node is close to
+            boolean reachedTarget = false;
+            for (int i = 0; i < targets.size(); i++) {
+                LngLat target = targets.get(i);
+                if (!reached[i] && isCloseTo(arena.lng[current], arena.lat[current], target.lng(), target.lat())) {
+                    paths.set(i, arena.pathToRoot(current));
+                    reached[i] = true;
+                    unreached--;
+                    reachedTarget = true;
+                }
+            }
+
+            if (reachedTarget && unreached > 0) {
+                reestimateOpenSet(context, targets, reached);
+            }
+            explorePredecessors(context, current, flightMap, targets, reached);
         }
-        Collections.reverse(path);
+
+        return paths;
     }
 
-    // Explores neighbors of the current node, updating or adding them to the open set
-    private static void exploreNeighbors(Node current, NamedRegion[] noFlyZones, Node goal, NamedRegion central) {
-        for (double direction : DIRECTIONS) {
-            LngLat nextCoords = new LngLatHandler().nextPosition(current.coordinates, direction);
-            Node next = new Node(nextCoords);
+    // Checks if a position is close to another one, within DRONE_IS_CLOSE_DISTANCE
+    private static boolean isCloseTo(double lng, double lat, double otherLng, double otherLat) {
+        return distance(lng, lat, otherLng, otherLat) < SystemConstants.DRONE_IS_CLOSE_DISTANCE;
+    }
 
-            if (isValidMove(nextCoords, noFlyZones, current, central)) {
-                processNeighbor(current, next, direction, goal);
+    // Explores neighbors of the current node in each direction allowed by the context, updating or adding them to the open set.
+    // Neighbors in a cell that has already been expanded are skipped before any node is created for them,
+    // unless a later iteration could use them because they are reached more cheaply than before.
+    private static void exploreNeighbors(SearchContext context, int current, FlightMap flightMap, double goalLng, double goalLat) {
+        int step = LngLatHandler.COMPASS_DIRECTIONS / context.directions;
+        double[] nextPosition = context.nextPosition;
+        NodeArena arena = context.arena;
+        double currentLng = arena.lng[current];
+        double currentLat = arena.lat[current];
+
+        // Test every neighbour against the regions in one batch. Whether the current node is inside the central area
+        // was found when it was generated; its neighbours share the answer unless the boundary may pass between them
+        PointBatch neighbours = context.neighbours;
+        neighbours.clear();
+        for (int direction = 0; direction < LngLatHandler.COMPASS_DIRECTIONS; direction += step) {
+            LngLatHandler.nextPosition(currentLng, currentLat, direction, nextPosition);
+            neighbours.add(nextPosition[0], nextPosition[1]);
+        }
+        flightMap.markNoFly(neighbours);
+        // Only the moves left after the other checks are tested against the edges gathered near the node
+        boolean nearNoFly = flightMap.gatherNoFlyEdges(neighbours, currentLng, currentLat);
+        boolean inCentral = arena.central[current];
+        boolean nearBoundary = flightMap.mayCrossCentralBoundary(currentLng, currentLat);
+        if (nearBoundary) {
+            flightMap.markCentral(neighbours);
+        }
+
+        for (int i = 0; i < neighbours.count; i++) {
+            int direction = i * step;
+            double nextLng = neighbours.lng[i];
+            double nextLat = neighbours.lat[i];
+            boolean nextCentral = nearBoundary ? neighbours.central[i] : inCentral;
+            long nextKey = context.keyOf(nextLng, nextLat, nextCentral);
+
+            boolean closed = context.closedSet.contains(nextKey);
+            if (closed && !context.hasLaterIteration()) {
+                context.skippedClosedNodes++;
+                continue;
+            }
+            double estimate = heuristic(context, nextLng, nextLat, goalLng, goalLat);
+            if (closed && !improvesClosedNode(context, current, nextKey, estimate)) {
+                context.skippedClosedNodes++;
+                continue;
+            }
+
+            // Same rule as isValidMove: not into or across a no-fly zone, and not out of the central area once inside
+            if (context.isInBounds(nextLng, nextLat) && !neighbours.noFly[i] && (!inCentral || nextCentral)
+                    && !(nearNoFly && flightMap.crossesGatheredEdge(neighbours, i, currentLng, currentLat))) {
+                // The scratch position is where the new node is placed
+                nextPosition[0] = nextLng;
+                nextPosition[1] = nextLat;
+                context.nextCentral = nextCentral;
+                if (closed) {
+                    addInconsistentNode(context, current, nextKey, estimate, direction);
+                } else {
+                    processNeighbor(context, current, nextKey, estimate, direction);
+                }
             }
         }
     }
 
-    // Checks if moving to the next coordinates is valid (not entering no-fly zones and stays in central if required)
-    private static boolean isValidMove(LngLat nextCoords, NamedRegion[] noFlyZones, Node current, NamedRegion central) {
-        for (NamedRegion noFlyZone : noFlyZones) {
-            if (new LngLatHandler().isInRegion(nextCoords, noFlyZone)) {
-                return false;
+    // Checks if a move from the current node reaches a closed cell more cheaply than the node already in it
+    private static boolean improvesClosedNode(SearchContext context, int current, long key, double estimate) {
+        NodeArena arena = context.arena;
+        int existing = context.nodeIndex.get(key);
+        return arena.cost[current] + SystemConstants.DRONE_MOVE_DISTANCE + context.weight * estimate
+                < arena.cost[existing] + context.weight * arena.estimate[existing];
+    }
+
+    // Records a node reached more cheaply after its cell was closed, to be queued by the next iteration.
+    // The closed node keeps its position as nodes were generated from it, the new node takes its place in the index.
+    private static void addInconsistentNode(SearchContext context, int current, long key, double estimate, int direction) {
+        int node = addNode(context, current, key, estimate, direction);
+        context.nodeIndex.put(key, node);
+        context.addInconsistent(node);
+    }
+
+    // Explores the positions one move away from which the drone reaches the current node, for a backwards search
+    private static void explorePredecessors(SearchContext context, int current, FlightMap flightMap, List<LngLat> targets, boolean[] reached) {
+        int step = LngLatHandler.COMPASS_DIRECTIONS / context.directions;
+        double[] previousPosition = context.nextPosition;
+        NodeArena arena = context.arena;
+        double currentLng = arena.lng[current];
+        double currentLat = arena.lat[current];
+        boolean currentCentral = arena.central[current];
+        boolean nearBoundary = flightMap.mayCrossCentralBoundary(currentLng, currentLat);
+
+        // Away from the boundary of the central area every predecessor shares the answer of the current node,
+        // otherwise it is found for all of them in one batch
+        PointBatch predecessors = context.neighbours;
+        predecessors.clear();
+        for (int direction = 0; direction < LngLatHandler.COMPASS_DIRECTIONS; direction += step) {
+            // A move in this direction reaches the current node from one move away in the opposite direction
+            int opposite = (direction + LngLatHandler.COMPASS_DIRECTIONS / 2) % LngLatHandler.COMPASS_DIRECTIONS;
+            LngLatHandler.nextPosition(currentLng, currentLat, opposite, previousPosition);
+            predecessors.add(previousPosition[0], previousPosition[1]);
+        }
+        if (nearBoundary) {
+            flightMap.markCentral(predecessors);
+        }
+
+        for (int i = 0; i < predecessors.count; i++) {
+            int direction = i * step;
+            double previousLng = predecessors.lng[i];
+            double previousLat = predecessors.lat[i];
+            boolean previousCentral = nearBoundary ? predecessors.central[i] : currentCentral;
+            long previousKey = context.keyOf(previousLng, previousLat, previousCentral);
+
+            if (context.closedSet.contains(previousKey)) {
+                context.skippedClosedNodes++;
+                continue;
+            }
+
+            if (isValidPreviousMove(previousLng, previousLat, previousCentral, flightMap, currentLng, currentLat, currentCentral)) {
+                // The scratch position is where the new node is placed
+                previousPosition[0] = previousLng;
+                previousPosition[1] = previousLat;
+                context.nextCentral = previousCentral;
+                double estimate = estimateToNearestTarget(previousLng, previousLat, targets, reached);
+                processNeighbor(context, current, previousKey, estimate, direction);
             }
         }
+    }
 
-        return !new LngLatHandler().isInRegion(current.coordinates, central) || new LngLatHandler().isInRegion(nextCoords, central);
+    // Checks if moving to the next coordinates is valid (not entering or cutting across no-fly zones and stays in
+    // central if required)
+    static boolean isValidMove(double nextLng, double nextLat, FlightMap flightMap, double currentLng, double currentLat) {
+        if (flightMap.isInNoFlyZone(nextLng, nextLat)
+                || flightMap.crossesNoFlyZone(currentLng, currentLat, nextLng, nextLat)) {
+            return false;
+        }
+
+        return !flightMap.isInCentralArea(currentLng, currentLat) || flightMap.isInCentralArea(nextLng, nextLat);
     }
 
-    // Processes a neighbor node during search
-    private static void processNeighbor(Node current, Node neighbor, double direction, Node goal) {
-        double tentativeG = current.cost + SystemConstants.DRONE_MOVE_DISTANCE;
-        Node existingNeighbor = findNeighbor(neighbor.coordinates);
+    // Same check for a move between positions whose central area states are already known, such as search nodes
+    private static boolean isValidMove(double nextLng, double nextLat, boolean nextCentral, FlightMap flightMap,
+                                       double currentLng, double currentLat, boolean currentCentral) {
+        return (!currentCentral || nextCentral) && !flightMap.isInNoFlyZone(nextLng, nextLat)
+                && !flightMap.crossesNoFlyZone(currentLng, currentLat, nextLng, nextLat);
+    }
 
-        if (existingNeighbor != null && tentativeG < existingNeighbor.cost) {
-            updateNeighbor(existingNeighbor, current, tentativeG, direction, goal);
-        } else if (existingNeighbor == null) {
-            addNeighborToOpenSet(neighbor, current, tentativeG, direction, goal);
+    // Checks if a move from the previous coordinates to the current node is valid, for a backwards search,
+    // given whether each is inside the central area
+    private static boolean isValidPreviousMove(double previousLng, double previousLat, boolean previousCentral,
+                                               FlightMap flightMap, double currentLng, double currentLat, boolean currentCentral) {
+        if (previousCentral && !currentCentral) {
+            return false;
         }
+
+        return !flightMap.isInNoFlyZone(previousLng, previousLat)
+                && !flightMap.crossesNoFlyZone(previousLng, previousLat, currentLng, currentLat);
     }
 
-    // Updates an existing neighbor in the open set
-    private static void updateNeighbor(Node neighbor, Node current, double newCost, double direction, Node goal) {
-        neighbor.parent = current;
-        neighbor.cost = newCost;
-        neighbor.angle = direction;
-        updateEstimates(neighbor, goal);
+    // Processes a neighbor at the scratch position of the context, in the lattice cell with the given key.
+    // A node in the same lattice cell is taken over by the new position if that gives it a lower total: a queued node
+    // that was never expanded is moved, any other node is replaced so the nodes generated from it keep valid moves.
+    private static void processNeighbor(SearchContext context, int current, long key, double estimate, int direction) {
+        NodeArena arena = context.arena;
+        double tentativeG = arena.cost[current] + SystemConstants.DRONE_MOVE_DISTANCE;
+        int existing = context.nodeIndex.get(key);
+
+        if (existing == NodeArena.NONE) {
+            addNeighborToOpenSet(context, current, key, estimate, direction);
+        } else if (tentativeG + context.weight * estimate
+                < arena.cost[existing] + context.weight * arena.estimate[existing]) {
+            boolean queued = context.openSet.contains(existing);
+            if (queued && !arena.expanded[existing]) {
+                updateNeighbor(context, existing, current, estimate, direction);
+            } else {
+                if (queued) {
+                    context.openSet.remove(existing);
+                }
+                addNeighborToOpenSet(context, current, key, estimate, direction);
+            }
+        }
     }
 
-    // Adds a new neighbor to the open set
-    private static void addNeighborToOpenSet(Node neighbor, Node current, double cost, double direction, Node goal) {
-        neighbor.parent = current;
-        neighbor.cost = cost;
-        neighbor.angle = direction;
-        updateEstimates(neighbor, goal);
-        openSet.add(neighbor);
+    // Moves a queued neighbor to the scratch position, reached from the current node, and restores the order of the open set
+    private static void updateNeighbor(SearchContext context, int neighbor, int current, double estimate, int direction) {
+        NodeArena arena = context.arena;
+        arena.lng[neighbor] = context.nextPosition[0];
+        arena.lat[neighbor] = context.nextPosition[1];
+        arena.central[neighbor] = context.nextCentral;
+        arena.includeInBounds(arena.lng[neighbor], arena.lat[neighbor]);
+        arena.estimate[neighbor] = estimate;
+        arena.parent[neighbor] = current;
+        arena.cost[neighbor] = arena.cost[current] + SystemConstants.DRONE_MOVE_DISTANCE;
+        arena.direction[neighbor] = (byte) direction;
+        arena.total[neighbor] = arena.cost[neighbor] + context.weight * estimate;
+        context.openSet.decreaseKey(neighbor);
     }
 
-    // Updates cost estimates for a node
-    private static void updateEstimates(Node node, Node goal) {
-        node.estimate = 2 * heuristic(node, goal);
-        node.total = node.cost + node.estimate;
+    // Adds a new neighbor at the scratch position to the open set
+    private static void addNeighborToOpenSet(SearchContext context, int current, long key, double estimate, int direction) {
+        int neighbor = addNode(context, current, key, estimate, direction);
+        context.openSet.add(neighbor);
+        context.nodeIndex.put(key, neighbor);
     }
 
-    // Finds a neighbor node in the open set based on coordinates
-    private static Node findNeighbor(LngLat coords) {
-        return openSet.stream().filter(n -> n.coordinates.equals(coords)).findFirst().orElse(null);
+    // Adds a node at the scratch position to the arena, reached from the current node by a move in the given direction
+    private static int addNode(SearchContext context, int current, long key, double estimate, int direction) {
+        NodeArena arena = context.arena;
+        int node = arena.add(context.nextPosition[0], context.nextPosition[1]);
+        arena.key[node] = key;
+        arena.central[node] = context.nextCentral;
+        arena.estimate[node] = estimate;
+        arena.parent[node] = current;
+        arena.cost[node] = arena.cost[current] + SystemConstants.DRONE_MOVE_DISTANCE;
+        arena.direction[node] = (byte) direction;
+        arena.total[node] = arena.cost[node] + context.weight * estimate;
+        return node;
+    }
+
+    // Estimates the cost from a position to the nearest target that has not been reached yet
+    private static double estimateToNearestTarget(double lng, double lat, List<LngLat> targets, boolean[] reached) {
+        double nearest = Double.MAX_VALUE;
+        for (int i = 0; i < targets.size(); i++) {
+            if (!reached[i]) {
+                nearest = Math.min(nearest, distance(lng, lat, targets.get(i).lng(), targets.get(i).lat()));
+            }
+        }
+        return nearest == Double.MAX_VALUE ? 0 : nearest;
+    }
+
+    // Recomputes the estimates of every queued node once a target has been reached and no longer attracts the search
+    private static void reestimateOpenSet(SearchContext context, List<LngLat> targets, boolean[] reached) {
+        NodeArena arena = context.arena;
+        context.openSet.updateAll(node -> {
+            arena.estimate[node] = estimateToNearestTarget(arena.lng[node], arena.lat[node], targets, reached);
+            arena.total[node] = arena.cost[node] + context.weight * arena.estimate[node];
+        });
+    }
+
+    // Heuristic function, the straight line distance to the goal raised to the landmark bound when the search uses one
+    private static double heuristic(SearchContext context, double lng, double lat, double goalLng, double goalLat) {
+        double straight = distance(lng, lat, goalLng, goalLat);
+        if (context.landmarkGoal == null) {
+            return straight;
+        }
+        return Math.max(straight, context.landmarkTable.lowerBound(lng, lat, context.landmarkGoal));
     }
 
-    // Heuristic function (Manhattan distance)
-    private static double heuristic(Node a, Node b) {
-        return new LngLatHandler().distanceTo(a.coordinates, b.coordinates);
+    // Straight line distance between two positions
+    private static double distance(double lng, double lat, double otherLng, double otherLat) {
+        return Math.hypot(lng - otherLng, lat - otherLat);
     }
 }
@@ -46,8 +46,10 @@ public class App {
 
             Order[] orderList = client.orders(date);
             Restaurant[] restaurantList = client.restaurants();
+            // Central area and no-fly zones are fetched once and shared by every path search
+            FlightMap flightMap = FlightMap.fetch(client);
 
-            if (orderList != null && restaurantList != null) {
+            if (orderList != null && restaurantList != null && flightMap != null) {
 
                 List<Order> validOrderList = new ArrayList<>();
                 List<Restaurant> restaurantDetailsList = new ArrayList<>();
@@ -72,7 +74,7 @@ public class App {
                     }
 
                     // Create Flightpath and Drone files from only the valid orders and corresponding restaurants
-                    List<Order> ordersValidNoPath = PathFinding.processOrders(validOrderList, restaurantDetailsList, url, date);
+                    List<Order> ordersValidNoPath = PathFinding.processOrders(validOrderList, restaurantDetailsList, flightMap, date);
                     // Update the validity status of orders with no paths
                     if (ordersValidNoPath.size() > 0) {
                         for (Order valid : ordersValidNoPath) {
@@ -86,7 +88,7 @@ public class App {
                     System.out.println("[Info]: No orders for the selected date.");
                     FileHandler.resultFiles();
                     Delivery.writeToFile(updatedOrderList, date);
-                    PathFinding.processOrders(validOrderList, restaurantDetailsList, url, date);
+                    PathFinding.processOrders(validOrderList, restaurantDetailsList, flightMap, date);
                 }
             }
         }
@@ -0,0 +1,197 @@
+package uk.ac.ed.inf;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Open set that sorts nodes into buckets of equal width by total cost instead of keeping a heap.
+ * Every move costs the same, so totals fall on a coarse scale and a bucket a fraction of a move wide orders
+ * the search almost exactly like a heap. Adding, moving and removing a node take O(1) by linking it into
+ * the list of its bucket, and taking the cheapest node only scans forward over empty buckets.
+ * Within a bucket the node added last is taken first, which favours the deeper nodes with larger cost so far.
+ *
+ * @author B209981
+ */
+class BucketQueue implements OpenSet {
+
+    // Width of a bucket as a share of a move
+    static final double BUCKETS_PER_MOVE = 4;
+
+    // Arena holding the nodes, their totals and the links between the nodes of a bucket
+    private final NodeArena arena;
+    // Width of a bucket in total cost
+    private final double width;
+    // First node of each bucket, bucket number b is at index b - offset
+    private int[] heads = emptyHeads(64);
+    // Bucket number of index 0, set by the first node added
+    private long offset;
+    private boolean hasOffset;
+    // Lowest index that may hold a node
+    private int cursor;
+    // Number of nodes currently in the queue
+    private int size;
+
+    /**
+     * Creates a queue with buckets a fraction of a move wide for the nodes of an arena.
+     *
+     * @param arena The arena holding the nodes.
+     * @param moveCost The cost of a single move.
+     */
+    BucketQueue(NodeArena arena, double moveCost) {
+        this.arena = arena;
+        this.width = moveCost / BUCKETS_PER_MOVE;
+    }
+
+    @Override
+    public void add(int node) {
+        long bucket = (long) Math.floor(arena.total[node] / width);
+        if (!hasOffset) {
+            offset = bucket;
+            hasOffset = true;
+            cursor = 0;
+        }
+        if (bucket < offset) {
+            shiftUp((int) (offset - bucket));
+        }
+        int index = (int) (bucket - offset);
+        if (index >= heads.length) {
+            int length = heads.length;
+            heads = Arrays.copyOf(heads, Math.max(length * 2, index + 1));
+            Arrays.fill(heads, length, heads.length, NodeArena.NONE);
+        }
+
+        arena.bucketPrevious[node] = NodeArena.NONE;
+        arena.bucketNext[node] = heads[index];
+        if (heads[index] != NodeArena.NONE) {
+            arena.bucketPrevious[heads[index]] = node;
+        }
+        heads[index] = node;
+        arena.queueIndex[node] = index;
+        size++;
+        if (index < cursor) {
+            cursor = index;
+        }
+    }
+
+    @Override
+    public int poll() {
+        int first = peek();
+        if (first != NodeArena.NONE) {
+            unlink(first);
+        }
+        return first;
+    }
+
+    @Override
+    public int peek() {
+        if (size == 0) {
+            return NodeArena.NONE;
+        }
+        while (heads[cursor] == NodeArena.NONE) {
+            cursor++;
+        }
+        return heads[cursor];
+    }
+
+    @Override
+    public void decreaseKey(int node) {
+        unlink(node);
+        add(node);
+    }
+
+    @Override
+    public void remove(int node) {
+        unlink(node);
+    }
+
+    @Override
+    public void updateAll(IntConsumer update) {
+        int[] nodes = new int[size];
+        int count = 0;
+        for (int i = cursor; i < heads.length && count < size; i++) {
+            for (int node = heads[i]; node != NodeArena.NONE; node = arena.bucketNext[node]) {
+                nodes[count++] = node;
+            }
+        }
+        clear();
+        for (int node : nodes) {
+            update.accept(node);
+            add(node);
+        }
+    }
+
+    @Override
+    public boolean contains(int node) {
+        int index = arena.queueIndex[node];
+        return index >= 0 && index < heads.length
+                && (heads[index] == node || arena.bucketPrevious[node] != NodeArena.NONE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = cursor; i < heads.length && size > 0; i++) {
+            int node = heads[i];
+            while (node != NodeArena.NONE) {
+                int next = arena.bucketNext[node];
+                arena.bucketNext[node] = NodeArena.NONE;
+                arena.bucketPrevious[node] = NodeArena.NONE;
+                arena.queueIndex[node] = IndexedHeap.NOT_IN_HEAP;
+                size--;
+                node = next;
+            }
+            heads[i] = NodeArena.NONE;
+        }
+        size = 0;
+        hasOffset = false;
+        cursor = 0;
+    }
+
+    // Takes a node out of the list of its bucket
+    private void unlink(int node) {
+        int previous = arena.bucketPrevious[node];
+        int next = arena.bucketNext[node];
+        if (previous != NodeArena.NONE) {
+            arena.bucketNext[previous] = next;
+        } else {
+            heads[arena.queueIndex[node]] = next;
+        }
+        if (next != NodeArena.NONE) {
+            arena.bucketPrevious[next] = previous;
+        }
+        arena.bucketNext[node] = NodeArena.NONE;
+        arena.bucketPrevious[node] = NodeArena.NONE;
+        arena.queueIndex[node] = IndexedHeap.NOT_IN_HEAP;
+        size--;
+    }
+
+    // Makes room for buckets below the current offset, which a weighted search can reach after its totals drop
+    private void shiftUp(int shift) {
+        int[] shifted = emptyHeads(heads.length + shift);
+        System.arraycopy(heads, 0, shifted, shift, heads.length);
+        heads = shifted;
+        offset -= shift;
+        cursor += shift;
+        for (int i = shift; i < heads.length; i++) {
+            for (int node = heads[i]; node != NodeArena.NONE; node = arena.bucketNext[node]) {
+                arena.queueIndex[node] = i;
+            }
+        }
+    }
+
+    // Creates an array of empty buckets
+    private static int[] emptyHeads(int length) {
+        int[] heads = new int[length];
+        Arrays.fill(heads, NodeArena.NONE);
+        return heads;
+    }
+}
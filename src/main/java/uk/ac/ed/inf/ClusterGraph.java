@@ -0,0 +1,220 @@
+package uk.ac.ed.inf;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Abstract graph of the hierarchical planner. The area around the geofence is split into square clusters, and every
+ * stretch of a border between two clusters that is clear of the no-fly zones gets entrances the drone can cross at.
+ * Routes between the entrances of a cluster are found on the move lattice the first time a search needs them, and
+ * their costs are kept for every later search on the same geofence.
+ *
+ * @author B209981
+ */
+final class ClusterGraph {
+
+    // Side of a cluster, 32 moves
+    static final double CLUSTER_SIZE = 32 * SystemConstants.DRONE_MOVE_DISTANCE;
+    // Margin around the regions covered by the clusters, enough for restaurants well outside the central area
+    static final double MARGIN = 0.02;
+    // Clear stretches of a border longer than this many samples also get entrances near both ends
+    private static final int LONG_STRETCH = 8;
+    // Route cost of a pair of entrances not searched yet
+    private static final float UNKNOWN = Float.NaN;
+
+    // Corner of the clusters and their number along each axis
+    final double minLng;
+    final double minLat;
+    final int columns;
+    final int rows;
+
+    // Position of each entrance
+    final double[] entranceLng;
+    final double[] entranceLat;
+    // Entrances of each cluster, and the two clusters of each entrance at 2 * entrance and 2 * entrance + 1
+    final int[][] clusterEntrances;
+    final int[] entranceClusters;
+
+    // Route costs between the entrances of each cluster for moves in 8 and in 16 directions, from local entrance i to
+    // j at i * count + j, as the bits of a float, infinite if there is no route. Searches on several threads share
+    // them, so each cost is published atomically; a race only repeats a search finding the same cost.
+    private final AtomicIntegerArray[] routeCosts8;
+    private final AtomicIntegerArray[] routeCosts16;
+
+    // Creates a graph from its clusters and entrances, with no routes searched yet
+    private ClusterGraph(double minLng, double minLat, int columns, int rows,
+                         double[] entranceLng, double[] entranceLat, int[][] clusterEntrances, int[] entranceClusters) {
+        this.minLng = minLng;
+        this.minLat = minLat;
+        this.columns = columns;
+        this.rows = rows;
+        this.entranceLng = entranceLng;
+        this.entranceLat = entranceLat;
+        this.clusterEntrances = clusterEntrances;
+        this.entranceClusters = entranceClusters;
+        this.routeCosts8 = unknownRouteCosts(clusterEntrances);
+        this.routeCosts16 = unknownRouteCosts(clusterEntrances);
+    }
+
+    // Creates the route costs of each cluster with none searched yet
+    private static AtomicIntegerArray[] unknownRouteCosts(int[][] clusterEntrances) {
+        AtomicIntegerArray[] costs = new AtomicIntegerArray[clusterEntrances.length];
+        for (int c = 0; c < clusterEntrances.length; c++) {
+            int count = clusterEntrances[c].length;
+            int[] unknown = new int[count * count];
+            Arrays.fill(unknown, Float.floatToRawIntBits(UNKNOWN));
+            costs[c] = new AtomicIntegerArray(unknown);
+        }
+        return costs;
+    }
+
+    /**
+     * Splits the area around a set of regions into clusters and places the entrances on their borders.
+     *
+     * @param regions The regions to cover, the no-fly zones and the central area.
+     * @param flightMap The flight map whose no-fly zones the entrances must avoid.
+     * @return The cluster graph.
+     */
+    static ClusterGraph build(NamedRegion[] regions, FlightMap flightMap) {
+        double lowLng = Double.MAX_VALUE, lowLat = Double.MAX_VALUE, highLng = -Double.MAX_VALUE, highLat = -Double.MAX_VALUE;
+        for (NamedRegion region : regions) {
+            for (LngLat vertex : region.vertices()) {
+                lowLng = Math.min(lowLng, vertex.lng());
+                lowLat = Math.min(lowLat, vertex.lat());
+                highLng = Math.max(highLng, vertex.lng());
+                highLat = Math.max(highLat, vertex.lat());
+            }
+        }
+        if (lowLng > highLng) {
+            // No region, a single search needs no clusters
+            return new ClusterGraph(0, 0, 0, 0, new double[0], new double[0], new int[0][], new int[0]);
+        }
+
+        double minLng = lowLng - MARGIN;
+        double minLat = lowLat - MARGIN;
+        int columns = (int) Math.ceil((highLng - lowLng + 2 * MARGIN) / CLUSTER_SIZE);
+        int rows = (int) Math.ceil((highLat - lowLat + 2 * MARGIN) / CLUSTER_SIZE);
+
+        List<double[]> entrances = new ArrayList<>();
+        List<int[]> entranceClusterPairs = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                int cluster = row * columns + column;
+                double lng = minLng + column * CLUSTER_SIZE;
+                double lat = minLat + row * CLUSTER_SIZE;
+                if (column > 0) {
+                    // Western border, shared with the cluster to the west
+                    addEntrances(flightMap, lng, lat, 0, 1, cluster - 1, cluster, entrances, entranceClusterPairs);
+                }
+                if (row > 0) {
+                    // Southern border, shared with the cluster to the south
+                    addEntrances(flightMap, lng, lat, 1, 0, cluster - columns, cluster, entrances, entranceClusterPairs);
+                }
+            }
+        }
+
+        int count = entrances.size();
+        double[] entranceLng = new double[count];
+        double[] entranceLat = new double[count];
+        int[] entranceClusters = new int[2 * count];
+        int[] entranceCounts = new int[columns * rows];
+        for (int e = 0; e < count; e++) {
+            entranceLng[e] = entrances.get(e)[0];
+            entranceLat[e] = entrances.get(e)[1];
+            entranceClusters[2 * e] = entranceClusterPairs.get(e)[0];
+            entranceClusters[2 * e + 1] = entranceClusterPairs.get(e)[1];
+            entranceCounts[entranceClusters[2 * e]]++;
+            entranceCounts[entranceClusters[2 * e + 1]]++;
+        }
+        int[][] clusterEntrances = new int[columns * rows][];
+        for (int c = 0; c < clusterEntrances.length; c++) {
+            clusterEntrances[c] = new int[entranceCounts[c]];
+            entranceCounts[c] = 0;
+        }
+        for (int e = 0; e < count; e++) {
+            for (int side = 0; side < 2; side++) {
+                int cluster = entranceClusters[2 * e + side];
+                clusterEntrances[cluster][entranceCounts[cluster]++] = e;
+            }
+        }
+        return new ClusterGraph(minLng, minLat, columns, rows, entranceLng, entranceLat, clusterEntrances, entranceClusters);
+    }
+
+    /**
+     * Gets the cluster a position lies in.
+     *
+     * @param lng The longitude of the position.
+     * @param lat The latitude of the position.
+     * @return The index of the cluster, or -1 if the position is outside every cluster.
+     */
+    int clusterOf(double lng, double lat) {
+        double x = (lng - minLng) / CLUSTER_SIZE;
+        double y = (lat - minLat) / CLUSTER_SIZE;
+        if (!(x >= 0 && y >= 0 && x < columns && y < rows)) {
+            return -1;
+        }
+        return (int) y * columns + (int) x;
+    }
+
+    /**
+     * Gets the cost of the route between two entrances of a cluster found by an earlier search.
+     *
+     * @param cluster The cluster.
+     * @param from The position of the first entrance in the entrances of the cluster.
+     * @param to The position of the second entrance in the entrances of the cluster.
+     * @param directions The number of directions the route moves in, 8 or 16.
+     * @return The route cost, infinite if there is no route, NaN if the route has not been searched yet.
+     */
+    float routeCost(int cluster, int from, int to, int directions) {
+        AtomicIntegerArray costs = (directions == 8 ? routeCosts8 : routeCosts16)[cluster];
+        return Float.intBitsToFloat(costs.get(from * clusterEntrances[cluster].length + to));
+    }
+
+    /**
+     * Records the cost of the route between two entrances of a cluster.
+     *
+     * @param cluster The cluster.
+     * @param from The position of the first entrance in the entrances of the cluster.
+     * @param to The position of the second entrance in the entrances of the cluster.
+     * @param directions The number of directions the route moves in, 8 or 16.
+     * @param cost The route cost, infinite if there is no route.
+     */
+    void setRouteCost(int cluster, int from, int to, int directions, float cost) {
+        AtomicIntegerArray costs = (directions == 8 ? routeCosts8 : routeCosts16)[cluster];
+        costs.set(from * clusterEntrances[cluster].length + to, Float.floatToRawIntBits(cost));
+    }
+
+    // Places entrances along the border starting at a corner and running in the given direction for one cluster
+    // side: one in the middle of every stretch clear of the no-fly zones, and for long stretches one near each end
+    private static void addEntrances(FlightMap flightMap, double lng, double lat, int stepLng, int stepLat,
+                                     int first, int second, List<double[]> entrances, List<int[]> clusterPairs) {
+        double step = SystemConstants.DRONE_MOVE_DISTANCE;
+        int samples = (int) Math.round(CLUSTER_SIZE / step);
+        int stretchStart = -1;
+        for (int i = 0; i <= samples; i++) {
+            boolean clear = i < samples && !flightMap.isInNoFlyZone(lng + stepLng * i * step, lat + stepLat * i * step);
+            if (clear && stretchStart < 0) {
+                stretchStart = i;
+            } else if (!clear && stretchStart >= 0) {
+                int end = i - 1;
+                List<Integer> positions = new ArrayList<>();
+                positions.add((stretchStart + end) / 2);
+                if (end - stretchStart > LONG_STRETCH) {
+                    positions.add(stretchStart + 1);
+                    positions.add(end - 1);
+                }
+                for (int position : positions) {
+                    entrances.add(new double[]{lng + stepLng * position * step, lat + stepLat * position * step});
+                    clusterPairs.add(new int[]{first, second});
+                }
+                stretchStart = -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package uk.ac.ed.inf;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.util.Arrays;
+
+/**
+ * A region prepared once for fast point tests with the ray cast. The edges are kept in flat arrays sorted by the
+ * latitude of their southern end, each with the inverse of its slope, so a test walks the edges south of the point
+ * and stops at the first one that starts north of it, with one multiplication per edge its ray may cross.
+ * Points north or south of the bounding box are rejected without looking at an edge. The same edges, together with
+ * the edges along lines of latitude kept apart, tell whether a segment such as a drone move touches the boundary.
+ * Built from a {@link NamedRegion} that is never changed afterwards, so concurrent searches can share it.
+ *
+ * @author B209981
+ */
+final class CompiledRegion {
+
+    // Region the edges were taken from
+    final NamedRegion source;
+
+    // Bounding box of the vertices
+    final double minLng;
+    final double minLat;
+    final double maxLng;
+    final double maxLat;
+
+    // Number of edges that are not along a line of latitude, the only ones a ray running east can cross
+    final int edgeCount;
+    // Latitude band of each edge, sorted by its southern end
+    final double[] lowLat;
+    final double[] highLat;
+    // Longitude of the southern and northern end of each edge, and the change in longitude per degree of latitude
+    final double[] lowLng;
+    final double[] highLng;
+    final double[] inverseSlope;
+
+    // Edges along a line of latitude, which only a segment can cross: their latitude and western and eastern end
+    final int flatEdgeCount;
+    final double[] flatLat;
+    final double[] flatWestLng;
+    final double[] flatEastLng;
+
+    /**
+     * Compiles a region.
+     *
+     * @param region The region, a closed polygon. A region with fewer than three vertices contains no point.
+     */
+    CompiledRegion(NamedRegion region) {
+        this.source = region;
+        LngLat[] corners = region.vertices();
+        int n = corners.length;
+
+        double lowLng = Double.MAX_VALUE, lowLat = Double.MAX_VALUE, highLng = -Double.MAX_VALUE, highLat = -Double.MAX_VALUE;
+        for (LngLat corner : corners) {
+            lowLng = Math.min(lowLng, corner.lng());
+            lowLat = Math.min(lowLat, corner.lat());
+            highLng = Math.max(highLng, corner.lng());
+            highLat = Math.max(highLat, corner.lat());
+        }
+        minLng = lowLng;
+        minLat = lowLat;
+        maxLng = highLng;
+        maxLat = highLat;
+
+        // Each edge as its southern end followed by its northern end, keeping the edges a ray can never cross apart
+        double[][] edges = new double[n >= 3 ? n : 0][];
+        double[][] flatEdges = new double[edges.length][];
+        int count = 0;
+        int flatCount = 0;
+        for (int i = 0; i < edges.length; i++) {
+            LngLat a = corners[i];
+            LngLat b = corners[i + 1 == n ? 0 : i + 1];
+            if (a.lat() < b.lat()) {
+                edges[count++] = new double[]{a.lng(), a.lat(), b.lng(), b.lat()};
+            } else if (a.lat() > b.lat()) {
+                edges[count++] = new double[]{b.lng(), b.lat(), a.lng(), a.lat()};
+            } else if (a.lng() != b.lng()) {
+                flatEdges[flatCount++] = new double[]{a.lat(), Math.min(a.lng(), b.lng()), Math.max(a.lng(), b.lng())};
+            }
+        }
+        Arrays.sort(edges, 0, count, (first, second) -> Double.compare(first[1], second[1]));
+
+        edgeCount = count;
+        this.lowLat = new double[count];
+        this.highLat = new double[count];
+        this.lowLng = new double[count];
+        this.highLng = new double[count];
+        this.inverseSlope = new double[count];
+        for (int e = 0; e < count; e++) {
+            double[] edge = edges[e];
+            this.lowLng[e] = edge[0];
+            this.lowLat[e] = edge[1];
+            this.highLng[e] = edge[2];
+            this.highLat[e] = edge[3];
+            this.inverseSlope[e] = (edge[2] - edge[0]) / (edge[3] - edge[1]);
+        }
+
+        flatEdgeCount = flatCount;
+        flatLat = new double[flatCount];
+        flatWestLng = new double[flatCount];
+        flatEastLng = new double[flatCount];
+        for (int e = 0; e < flatCount; e++) {
+            flatLat[e] = flatEdges[e][0];
+            flatWestLng[e] = flatEdges[e][1];
+            flatEastLng[e] = flatEdges[e][2];
+        }
+    }
+
+    /**
+     * Compiles each of a set of regions.
+     *
+     * @param regions The regions.
+     * @return The compiled regions, in the same order.
+     */
+    static CompiledRegion[] compileAll(NamedRegion[] regions) {
+        CompiledRegion[] compiled = new CompiledRegion[regions.length];
+        for (int r = 0; r < regions.length; r++) {
+            compiled[r] = new CompiledRegion(regions[r]);
+        }
+        return compiled;
+    }
+
+    /**
+     * Checks if a point is inside the region, counting the edges crossed by a ray running east from it.
+     * An edge counts when the point lies strictly within its latitude band and the edge lies east of the point,
+     * so the ray never counts the vertex it passes through twice.
+     *
+     * @param lng The longitude of the point.
+     * @param lat The latitude of the point.
+     * @return true if the point is inside the region, false otherwise.
+     */
+    boolean contains(double lng, double lat) {
+        if (!(lat > minLat && lat < maxLat)) {
+            return false;
+        }
+        boolean odd = false;
+        for (int e = 0; e < edgeCount && lowLat[e] < lat; e++) {
+            if (lat < highLat[e] && crossingLng(e, lat) > lng) {
+                odd = !odd;
+            }
+        }
+        return odd;
+    }
+
+    /**
+     * Gets the longitude at which an edge reaches a latitude.
+     *
+     * @param edge The edge, in sorted order.
+     * @param lat A latitude within the band of the edge.
+     * @return The longitude of the edge at that latitude.
+     */
+    double crossingLng(int edge, double lat) {
+        return lowLng[edge] + (lat - lowLat[edge]) * inverseSlope[edge];
+    }
+
+    /**
+     * Checks if a segment touches the boundary of the region: crosses one of its edges, or passes through or ends on
+     * one. A segment that does not touch the boundary lies either wholly inside or wholly outside the region, which
+     * {@link #contains} tells from either end. Segments whose bounding box misses the region's are rejected at once,
+     * and only the edges whose latitude band overlaps the segment's are tested.
+     *
+     * @param fromLng The longitude of the start of the segment.
+     * @param fromLat The latitude of the start of the segment.
+     * @param toLng The longitude of the end of the segment.
+     * @param toLat The latitude of the end of the segment.
+     * @return true if the segment touches the boundary, false otherwise.
+     */
+    boolean touchesSegment(double fromLng, double fromLat, double toLng, double toLat) {
+        double south = Math.min(fromLat, toLat);
+        double north = Math.max(fromLat, toLat);
+        double west = Math.min(fromLng, toLng);
+        double east = Math.max(fromLng, toLng);
+        if (north < minLat || south > maxLat || east < minLng || west > maxLng) {
+            return false;
+        }
+        for (int e = 0; e < edgeCount && lowLat[e] <= north; e++) {
+            if (highLat[e] >= south
+                    && segmentsTouch(fromLng, fromLat, toLng, toLat, lowLng[e], lowLat[e], highLng[e], highLat[e])) {
+                return true;
+            }
+        }
+        for (int e = 0; e < flatEdgeCount; e++) {
+            if (flatLat[e] >= south && flatLat[e] <= north
+                    && segmentsTouch(fromLng, fromLat, toLng, toLat, flatWestLng[e], flatLat[e], flatEastLng[e], flatLat[e])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if two segments cross or touch, from the side of each segment the ends of the other lie on.
+     *
+     * @param ax The longitude of the start of the first segment.
+     * @param ay The latitude of the start of the first segment.
+     * @param bx The longitude of the end of the first segment.
+     * @param by The latitude of the end of the first segment.
+     * @param cx The longitude of the start of the second segment.
+     * @param cy The latitude of the start of the second segment.
+     * @param dx The longitude of the end of the second segment.
+     * @param dy The latitude of the end of the second segment.
+     * @return true if the segments have a point in common, false otherwise.
+     */
+    static boolean segmentsTouch(double ax, double ay, double bx, double by,
+                                         double cx, double cy, double dx, double dy) {
+        double c = orientation(ax, ay, bx, by, cx, cy);
+        double d = orientation(ax, ay, bx, by, dx, dy);
+        double a = orientation(cx, cy, dx, dy, ax, ay);
+        double b = orientation(cx, cy, dx, dy, bx, by);
+        if (((c > 0 && d < 0) || (c < 0 && d > 0)) && ((a > 0 && b < 0) || (a < 0 && b > 0))) {
+            return true;
+        }
+        // An end of one segment on the other
+        return (c == 0 && onSegment(ax, ay, bx, by, cx, cy)) || (d == 0 && onSegment(ax, ay, bx, by, dx, dy))
+                || (a == 0 && onSegment(cx, cy, dx, dy, ax, ay)) || (b == 0 && onSegment(cx, cy, dx, dy, bx, by));
+    }
+
+    // Twice the signed area of the triangle of three points, positive when the third lies left of the line from the first
+    private static double orientation(double ax, double ay, double bx, double by, double px, double py) {
+        return (bx - ax) * (py - ay) - (by - ay) * (px - ax);
+    }
+
+    // Checks if a point known to lie on the line through a segment lies between its ends
+    private static boolean onSegment(double ax, double ay, double bx, double by, double px, double py) {
+        return px >= Math.min(ax, bx) && px <= Math.max(ax, bx) && py >= Math.min(ay, by) && py <= Math.max(ay, by);
+    }
+}
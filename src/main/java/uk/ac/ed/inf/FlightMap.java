@@ -0,0 +1,374 @@
+package uk.ac.ed.inf;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.util.Arrays;
+
+/**
+ * Immutable snapshot of the geofence the drone flies in: the central area and the no-fly zones.
+ * It is fetched once per run and shared by every search, together with geometry precomputed from it,
+ * so neither the REST service nor the region parsing is hit again for each restaurant.
+ *
+ * @author B209981
+ */
+public final class FlightMap {
+
+    private final NamedRegion centralArea;
+    private final NamedRegion[] noFlyZones;
+    // Fingerprint of the regions, identifying this geofence in caches
+    private final String fingerprint;
+
+    // Occupancy rasters of the regions, falling back to spatial indexes that only check the edges near a point.
+    // Both, like the batch tests below, work on the regions compiled once when the snapshot is created
+    private final OccupancyRaster centralRaster;
+    private final OccupancyRaster noFlyRaster;
+    // Compiled no-fly zones, for the moves that pass near an edge
+    private final CompiledRegion[] compiledNoFly;
+    // Batch polygon tests of the regions, for the points of a batch the rasters cannot answer
+    private final RegionBatch centralBatch;
+    private final RegionBatch noFlyBatch;
+    // Corners of the regions pushed outwards, the vertices of the visibility graph
+    private final double[] visibilityCorners;
+    // Landmark distances for the A* heuristic, built on first use unless loaded with the rasters
+    private volatile LandmarkTable landmarks;
+    // Whether the rasters come from or were saved to the raster file, which then also gets the landmark distances
+    private final boolean useRasterFile;
+    // Clusters of the hierarchical planner, built on first use
+    private volatile ClusterGraph clusterGraph;
+
+    /**
+     * Creates a snapshot of the given regions.
+     *
+     * @param centralArea The central area.
+     * @param noFlyZones Array of no-fly zones, copied so later changes to the array do not affect the snapshot.
+     */
+    public FlightMap(NamedRegion centralArea, NamedRegion[] noFlyZones) {
+        this(centralArea, noFlyZones, false);
+    }
+
+    // Creates a snapshot, mapping its rasters from the raster file when the file was built for the same regions
+    private FlightMap(NamedRegion centralArea, NamedRegion[] noFlyZones, boolean useRasterFile) {
+        this.centralArea = centralArea;
+        this.noFlyZones = noFlyZones.clone();
+        this.fingerprint = PathCache.fingerprint(this.noFlyZones, centralArea);
+        this.useRasterFile = useRasterFile;
+        NamedRegion[] central = {centralArea};
+        CompiledRegion[] compiledCentral = CompiledRegion.compileAll(central);
+        this.compiledNoFly = CompiledRegion.compileAll(this.noFlyZones);
+        RegionIndex centralIndex = new RegionIndex(compiledCentral);
+        RegionIndex noFlyIndex = new RegionIndex(this.compiledNoFly);
+
+        RasterFile.Contents contents = useRasterFile ? RasterFile.load(fingerprint, centralIndex, noFlyIndex) : null;
+        if (contents != null) {
+            this.centralRaster = contents.central();
+            this.noFlyRaster = contents.noFly();
+            this.landmarks = contents.landmarks();
+        } else {
+            this.centralRaster = new OccupancyRaster(central, centralIndex);
+            this.noFlyRaster = new OccupancyRaster(this.noFlyZones, noFlyIndex);
+            if (useRasterFile) {
+                // The landmark distances take far longer to build, so they are only saved once a search needs them
+                RasterFile.store(fingerprint, new RasterFile.Contents(centralRaster, noFlyRaster, null));
+            }
+        }
+
+        this.centralBatch = RegionBatch.of(compiledCentral);
+        this.noFlyBatch = RegionBatch.of(this.compiledNoFly);
+        this.visibilityCorners = VisibilityPlanner.inflatedCorners(regions(), noFlyRaster);
+    }
+
+    /**
+     * Creates a snapshot of the given regions, reusing the rasters saved by an earlier run for the same regions.
+     * The rasters are built and saved for the next run if the raster file holds another geofence.
+     *
+     * @param centralArea The central area.
+     * @param noFlyZones Array of no-fly zones, copied so later changes to the array do not affect the snapshot.
+     * @return The snapshot of the geofence.
+     */
+    public static FlightMap load(NamedRegion centralArea, NamedRegion[] noFlyZones) {
+        return new FlightMap(centralArea, noFlyZones, true);
+    }
+
+    /**
+     * Fetches the central area and the no-fly zones from the REST service.
+     *
+     * @param client Client of the REST service.
+     * @return The snapshot of the geofence, or null if either request fails.
+     */
+    public static FlightMap fetch(Client client) {
+        NamedRegion centralArea = client.centralArea();
+        NamedRegion[] noFlyZones = client.noFlyZones();
+
+        if (centralArea == null || noFlyZones == null) {
+            System.err.println("[Error]: Unable to retrieve the central area and no-fly zones.");
+            return null;
+        }
+        return load(centralArea, noFlyZones);
+    }
+
+    public NamedRegion centralArea() {
+        return centralArea;
+    }
+
+    public NamedRegion[] noFlyZones() {
+        return noFlyZones.clone();
+    }
+
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    // Gets the corners of the regions used by the visibility planner, as longitude and latitude pairs
+    double[] visibilityCorners() {
+        return visibilityCorners;
+    }
+
+    /**
+     * Gets the landmark distances of the geofence, computing them the first time they are needed and adding them to
+     * the raster file when the snapshot uses one. Searches running at the same time share the table.
+     *
+     * @return The landmark distances.
+     */
+    LandmarkTable landmarks() {
+        LandmarkTable table = landmarks;
+        if (table == null) {
+            synchronized (this) {
+                if (landmarks == null) {
+                    landmarks = LandmarkTable.build(regions(), noFlyRaster);
+                    if (useRasterFile) {
+                        RasterFile.store(fingerprint, new RasterFile.Contents(centralRaster, noFlyRaster, landmarks));
+                    }
+                }
+                table = landmarks;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Gets the clusters and entrances of the hierarchical planner, creating them the first time they are needed.
+     * Route costs found by one search are kept in the graph for later searches on this geofence.
+     *
+     * @return The cluster graph.
+     */
+    ClusterGraph clusterGraph() {
+        ClusterGraph graph = clusterGraph;
+        if (graph == null) {
+            synchronized (this) {
+                if (clusterGraph == null) {
+                    clusterGraph = ClusterGraph.build(regions(), this);
+                }
+                graph = clusterGraph;
+            }
+        }
+        return graph;
+    }
+
+    // Gets the no-fly zones followed by the central area
+    private NamedRegion[] regions() {
+        NamedRegion[] regions = Arrays.copyOf(noFlyZones, noFlyZones.length + 1);
+        regions[noFlyZones.length] = centralArea;
+        return regions;
+    }
+
+    /**
+     * Checks if a position is inside any no-fly zone.
+     *
+     * @param position The position to check.
+     * @return true if the position is inside a no-fly zone, false otherwise.
+     */
+    public boolean isInNoFlyZone(LngLat position) {
+        return noFlyRaster.contains(position.lng(), position.lat());
+    }
+
+    /**
+     * Checks if a position given as a longitude and latitude is inside any no-fly zone, without allocating.
+     *
+     * @param lng The longitude of the position.
+     * @param lat The latitude of the position.
+     * @return true if the position is inside a no-fly zone, false otherwise.
+     */
+    public boolean isInNoFlyZone(double lng, double lat) {
+        return noFlyRaster.contains(lng, lat);
+    }
+
+    /**
+     * Checks if a position is inside the central area.
+     *
+     * @param position The position to check.
+     * @return true if the position is inside the central area, false otherwise.
+     */
+    public boolean isInCentralArea(LngLat position) {
+        return centralRaster.contains(position.lng(), position.lat());
+    }
+
+    /**
+     * Checks if a position given as a longitude and latitude is inside the central area, without allocating.
+     *
+     * @param lng The longitude of the position.
+     * @param lat The latitude of the position.
+     * @return true if the position is inside the central area, false otherwise.
+     */
+    public boolean isInCentralArea(double lng, double lat) {
+        return centralRaster.contains(lng, lat);
+    }
+
+    /**
+     * Checks if the straight line between two positions, such as a move of the drone, touches the boundary of a
+     * no-fly zone, so a move whose ends are both outside the zones can still be found to cut across a corner.
+     * The raster rules out almost every move with a few bit lookups; only moves passing near an edge are tested
+     * against the edges of the zones whose bounding box they overlap.
+     *
+     * @param fromLng The longitude of the first position.
+     * @param fromLat The latitude of the first position.
+     * @param toLng The longitude of the second position.
+     * @param toLat The latitude of the second position.
+     * @return true if the line touches the boundary of a no-fly zone, false otherwise.
+     */
+    public boolean crossesNoFlyZone(double fromLng, double fromLat, double toLng, double toLat) {
+        if (!noFlyRaster.mayTouchEdge(fromLng, fromLat, toLng, toLat)) {
+            return false;
+        }
+        for (CompiledRegion zone : compiledNoFly) {
+            if (zone.touchesSegment(fromLng, fromLat, toLng, toLat)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks which points of a batch are inside a no-fly zone, setting their noFly flags.
+     * The raster answers most points, the rest are tested together in one batch polygon test.
+     *
+     * @param batch The points to check.
+     */
+    void markNoFly(PointBatch batch) {
+        mark(noFlyRaster, noFlyBatch, batch, batch.noFly);
+    }
+
+    /**
+     * Gathers the edges of the no-fly zones near the moves from a position to the points of a batch, so that
+     * {@link #crossesGatheredEdge} can test just the moves a search goes on to take. The moves all lie within the
+     * bounding box of the position and the points, so when the raster knows every cell of that box, as it does away
+     * from the zones, no edge is gathered.
+     *
+     * @param batch The points the moves end at, receiving the edges.
+     * @param fromLng The longitude the moves start at.
+     * @param fromLat The latitude the moves start at.
+     * @return true if edges were gathered, false if none of the moves can touch a no-fly zone.
+     */
+    boolean gatherNoFlyEdges(PointBatch batch, double fromLng, double fromLat) {
+        batch.edgeCount = 0;
+        // Plain comparisons, the positions are never NaN
+        double west = fromLng < batch.west ? fromLng : batch.west;
+        double south = fromLat < batch.south ? fromLat : batch.south;
+        double east = fromLng > batch.east ? fromLng : batch.east;
+        double north = fromLat > batch.north ? fromLat : batch.north;
+        if (noFlyRaster.isKnownWithin(west, south, east, north)) {
+            return false;
+        }
+
+        for (CompiledRegion zone : compiledNoFly) {
+            if (north < zone.minLat || south > zone.maxLat || east < zone.minLng || west > zone.maxLng) {
+                continue;
+            }
+            // Edges are kept from their southern end
+            for (int e = 0; e < zone.edgeCount && zone.lowLat[e] <= north; e++) {
+                if (zone.highLat[e] >= south && (zone.lowLng[e] <= east || zone.highLng[e] <= east)
+                        && (zone.lowLng[e] >= west || zone.highLng[e] >= west)) {
+                    batch.addEdge(zone.lowLng[e], zone.lowLat[e], zone.highLng[e], zone.highLat[e]);
+                }
+            }
+            for (int e = 0; e < zone.flatEdgeCount; e++) {
+                if (zone.flatLat[e] >= south && zone.flatLat[e] <= north
+                        && zone.flatWestLng[e] <= east && zone.flatEastLng[e] >= west) {
+                    batch.addEdge(zone.flatWestLng[e], zone.flatLat[e], zone.flatEastLng[e], zone.flatLat[e]);
+                }
+            }
+        }
+        return batch.edgeCount > 0;
+    }
+
+    /**
+     * Checks if the move from a position to a point of a batch touches a no-fly zone, as {@link #crossesNoFlyZone}
+     * does, testing it only against the edges {@link #gatherNoFlyEdges} gathered for the same position.
+     *
+     * @param batch The points the moves end at, with the gathered edges.
+     * @param i The index of the point the move ends at.
+     * @param fromLng The longitude the move starts at.
+     * @param fromLat The latitude the move starts at.
+     * @return true if the move touches a gathered edge, false otherwise.
+     */
+    boolean crossesGatheredEdge(PointBatch batch, int i, double fromLng, double fromLat) {
+        double toLng = batch.lng[i];
+        double toLat = batch.lat[i];
+        double moveWest = fromLng < toLng ? fromLng : toLng;
+        double moveEast = fromLng < toLng ? toLng : fromLng;
+        double moveSouth = fromLat < toLat ? fromLat : toLat;
+        double moveNorth = fromLat < toLat ? toLat : fromLat;
+        for (int e = 0; e < batch.edgeCount; e++) {
+            // Most moves are rejected by the bounding box of the edge, which runs from south to north, before its
+            // orientations are computed
+            double edgeLng1 = batch.edgeLng1[e];
+            double edgeLng2 = batch.edgeLng2[e];
+            if (batch.edgeLat2[e] < moveSouth || batch.edgeLat1[e] > moveNorth
+                    || (edgeLng1 < moveWest && edgeLng2 < moveWest) || (edgeLng1 > moveEast && edgeLng2 > moveEast)) {
+                continue;
+            }
+            if (CompiledRegion.segmentsTouch(fromLng, fromLat, toLng, toLat,
+                    edgeLng1, batch.edgeLat1[e], edgeLng2, batch.edgeLat2[e])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks which points of a batch are inside the central area, setting their central flags.
+     * The raster answers most points, the rest are tested together in one batch polygon test.
+     *
+     * @param batch The points to check.
+     */
+    void markCentral(PointBatch batch) {
+        mark(centralRaster, centralBatch, batch, batch.central);
+    }
+
+    /**
+     * Checks if the boundary of the central area may pass within one move of a position, looking only at the raster.
+     * When it cannot, every position one move away is on the same side of the boundary as the position itself.
+     *
+     * @param lng The longitude of the position.
+     * @param lat The latitude of the position.
+     * @return false if no position one move away is on the other side of the boundary, true if one may be.
+     */
+    boolean mayCrossCentralBoundary(double lng, double lat) {
+        // The raster cells are at least half a move wide, so two cells cover a move
+        return !centralRaster.isKnownAround(lng, lat);
+    }
+
+    // Sets the flag of each point of a batch inside the regions of a raster, collecting the points the raster cannot
+    // answer and passing them to the polygon test in one call
+    private static void mark(OccupancyRaster raster, RegionBatch regions, PointBatch batch, boolean[] inside) {
+        int pending = 0;
+        for (int i = 0; i < batch.count; i++) {
+            int state = raster.state(batch.lng[i], batch.lat[i]);
+            if (state == OccupancyRaster.UNDECIDED) {
+                batch.pendingLng[pending] = batch.lng[i];
+                batch.pendingLat[pending] = batch.lat[i];
+                batch.pendingIndex[pending] = i;
+                pending++;
+            } else {
+                inside[i] = state == OccupancyRaster.INSIDE;
+            }
+        }
+        if (pending == 0) {
+            return;
+        }
+        regions.contains(batch.pendingLng, batch.pendingLat, pending, batch.pendingInside);
+        for (int p = 0; p < pending; p++) {
+            inside[batch.pendingIndex[p]] = batch.pendingInside[p];
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package uk.ac.ed.inf;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Plans paths hierarchically (HPA*) over the clusters of {@link ClusterGraph}. A search over the entrances of the
+ * clusters finds which borders the path crosses, using route costs between entrances that are cached per geofence,
+ * and the path is then refined by short lattice searches from one crossing to the next. Only the searches into and
+ * out of the clusters of the start and the goal are new for each path, so the work grows with the number of clusters
+ * crossed rather than with the area a flat search spreads over. If the start or goal lies outside the clusters, or
+ * a crossing cannot be reached, the planner falls back to {@link AStar#findShortestPath}.
+ *
+ * @author B209981
+ */
+public class HierarchicalPlanner {
+
+    // Distance the searches within a cluster may stray past its border, enough to reach entrances on the border
+    private static final double BORDER = 2 * SystemConstants.DRONE_MOVE_DISTANCE;
+
+    /**
+     * Finds a path from the start to the goal through the clusters of the flight map, with the same contract as
+     * {@link AStar#findShortestPath}. The expanded node count of the context is the total over every lattice search
+     * run for the path, including the routes between entrances that were not cached yet, and the search counts as out
+     * of time if any of them ran out.
+     *
+     * @param context Search context holding the settings of the lattice searches and the resulting path
+     * @param flightMap Central area and no-fly zones to respect
+     * @param start Start node
+     * @param goal Goal node
+     * @return true if a path is found, false otherwise
+     */
+    public static boolean findShortestPath(SearchContext context, FlightMap flightMap, Node start, Node goal) {
+        ClusterGraph graph = flightMap.clusterGraph();
+        int startCluster = graph.clusterOf(start.coordinates.lng(), start.coordinates.lat());
+        int goalCluster = graph.clusterOf(goal.coordinates.lng(), goal.coordinates.lat());
+        if (startCluster < 0 || goalCluster < 0 || startCluster == goalCluster) {
+            return AStar.findShortestPath(context, flightMap, start, goal);
+        }
+
+        Tally tally = new Tally();
+        Route route = abstractRoute(context, flightMap, graph, start, goal, startCluster, goalCluster, tally);
+        List<Node> path = route == null ? null : refineRoute(context, flightMap, graph, route, start, goal, tally);
+        context.clearBounds();
+        if (path == null) {
+            boolean found = AStar.findShortestPath(context, flightMap, start, goal);
+            context.expandedNodes += tally.expanded;
+            context.timedOut |= tally.timedOut;
+            return found;
+        }
+        context.path = path;
+        context.expandedNodes = tally.expanded;
+        context.timedOut = tally.timedOut;
+        return true;
+    }
+
+    // Finds the cheapest sequence of entrances from the start to the goal with A* over the abstract graph, whose
+    // vertices are the entrances followed by the start and the goal. Edges are queued with the straight line as their
+    // cost and their route is only searched once such an edge comes first in the queue, so the routes towards
+    // entrances the path never takes are not searched. Returns the route, or null if there is no route.
+    private static Route abstractRoute(SearchContext context, FlightMap flightMap, ClusterGraph graph, Node start,
+                                       Node goal, int startCluster, int goalCluster, Tally tally) {
+        int entrances = graph.entranceLng.length;
+        int startVertex = entrances;
+        int goalVertex = entrances + 1;
+        double[] lng = Arrays.copyOf(graph.entranceLng, entrances + 2);
+        double[] lat = Arrays.copyOf(graph.entranceLat, entrances + 2);
+        lng[startVertex] = start.coordinates.lng();
+        lat[startVertex] = start.coordinates.lat();
+        lng[goalVertex] = goal.coordinates.lng();
+        lat[goalVertex] = goal.coordinates.lat();
+
+        double[] cost = new double[entrances + 2];
+        int[] parent = new int[entrances + 2];
+        int[] parentCluster = new int[entrances + 2];
+        boolean[] closed = new boolean[entrances + 2];
+        parent[startVertex] = NodeArena.NONE;
+        PriorityQueue<Edge> queue = new PriorityQueue<>(Comparator.comparingDouble((Edge edge) -> edge.total));
+        queue.add(new Edge(NodeArena.NONE, startVertex, startCluster, 0, 0, true));
+
+        while (true) {
+            Edge edge = queue.poll();
+            if (edge == null) {
+                return null;
+            }
+            int current = edge.to;
+            if (closed[current]) {
+                continue;
+            }
+            if (!edge.searched) {
+                double routeCost = edgeCost(context, flightMap, graph, edge, lng, lat, tally);
+                if (routeCost != Double.POSITIVE_INFINITY) {
+                    double searchedCost = cost[edge.from] + routeCost;
+                    queue.add(new Edge(edge.from, current, edge.cluster, searchedCost,
+                            searchedCost + heuristicOf(current, lng, lat, goalVertex), true));
+                }
+                continue;
+            }
+            closed[current] = true;
+            cost[current] = edge.cost;
+            parent[current] = edge.from;
+            parentCluster[current] = edge.cluster;
+            if (current == goalVertex) {
+                break;
+            }
+
+            int firstCluster = current == startVertex ? startCluster : graph.entranceClusters[2 * current];
+            int lastCluster = current == startVertex ? startCluster : graph.entranceClusters[2 * current + 1];
+            for (int side = firstCluster == lastCluster ? 1 : 0; side < 2; side++) {
+                int cluster = side == 0 ? firstCluster : lastCluster;
+                int[] members = graph.clusterEntrances[cluster];
+                for (int to = 0; to <= members.length; to++) {
+                    // After the entrances of the cluster comes the goal, if it lies in this cluster
+                    if (to == members.length && cluster != goalCluster) {
+                        break;
+                    }
+                    int next = to == members.length ? goalVertex : members[to];
+                    if (!closed[next]) {
+                        double lowerBound = cost[current] + Math.hypot(lng[next] - lng[current], lat[next] - lat[current]);
+                        queue.add(new Edge(current, next, cluster, lowerBound,
+                                lowerBound + heuristicOf(next, lng, lat, goalVertex), false));
+                    }
+                }
+            }
+        }
+
+        int length = 0;
+        for (int i = goalVertex; i != NodeArena.NONE; i = parent[i]) {
+            length++;
+        }
+        Route route = new Route(length);
+        for (int i = goalVertex, j = length - 1; i != NodeArena.NONE; i = parent[i], j--) {
+            route.vertices[j] = i;
+            route.clusters[j] = parentCluster[i];
+        }
+        return route;
+    }
+
+    // Gets the cost of the route along an edge, from the cache of its cluster when it joins two entrances
+    private static double edgeCost(SearchContext context, FlightMap flightMap, ClusterGraph graph, Edge edge,
+                                   double[] lng, double[] lat, Tally tally) {
+        int[] members = graph.clusterEntrances[edge.cluster];
+        int from = indexOf(members, edge.from);
+        int to = indexOf(members, edge.to);
+        if (from < 0 || to < 0) {
+            // The start or the goal, whose routes depend on the path asked for
+            return routeCost(context, flightMap, graph, edge.cluster, lng[edge.from], lat[edge.from],
+                    lng[edge.to], lat[edge.to], tally);
+        }
+        float cached = graph.routeCost(edge.cluster, from, to, context.directions);
+        if (Float.isNaN(cached)) {
+            // Kept for every later search, so found with the same settings whoever asks first
+            cached = (float) routeCost(context.entranceRoutes(), flightMap, graph, edge.cluster, lng[edge.from],
+                    lat[edge.from], lng[edge.to], lat[edge.to], tally);
+            graph.setRouteCost(edge.cluster, from, to, context.directions, cached);
+        }
+        return cached;
+    }
+
+    // Gets the straight line distance from a vertex to the goal
+    private static double heuristicOf(int vertex, double[] lng, double[] lat, int goalVertex) {
+        return Math.hypot(lng[vertex] - lng[goalVertex], lat[vertex] - lat[goalVertex]);
+    }
+
+    // Finds the cost of flying from one position to close to another with a lattice search within a cluster, infinite
+    // if it cannot be done. A route leaving the central area is ruled out without a search.
+    private static double routeCost(SearchContext context, FlightMap flightMap, ClusterGraph graph, int cluster,
+                                    double fromLng, double fromLat, double toLng, double toLat, Tally tally) {
+        if (flightMap.isInCentralArea(fromLng, fromLat) && !flightMap.isInCentralArea(toLng, toLat)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        confineToCluster(context, graph, cluster);
+        boolean found = AStar.findShortestPath(context, flightMap,
+                new Node(new LngLat(fromLng, fromLat)), new Node(new LngLat(toLng, toLat)));
+        tally.add(context);
+        if (!found) {
+            return Double.POSITIVE_INFINITY;
+        }
+        List<Node> leg = context.path;
+        return leg.get(leg.size() - 1).cost;
+    }
+
+    // Flies the route one entrance at a time, each leg searched from where the previous one ended, and joins the
+    // legs into one path. Returns null if a leg cannot be flown.
+    private static List<Node> refineRoute(SearchContext context, FlightMap flightMap, ClusterGraph graph, Route route,
+                                          Node start, Node goal, Tally tally) {
+        int[] vertices = route.vertices;
+        List<Node> path = new ArrayList<>();
+        Node current = start;
+        for (int r = 1; r < vertices.length; r++) {
+            Node waypoint = r == vertices.length - 1
+                    ? goal
+                    : new Node(new LngLat(graph.entranceLng[vertices[r]], graph.entranceLat[vertices[r]]));
+            confineToCluster(context, graph, route.clusters[r]);
+            boolean found = AStar.findShortestPath(context, flightMap, new Node(current.coordinates), waypoint);
+            tally.add(context);
+            if (!found) {
+                return null;
+            }
+            List<Node> leg = context.path;
+            if (path.isEmpty()) {
+                path.add(leg.get(0));
+            }
+            // The leg starts at cost 0 from its own first node, which is the last node of the path so far
+            Node previous = path.get(path.size() - 1);
+            double joinCost = previous.cost;
+            for (int i = 1; i < leg.size(); i++) {
+                Node node = leg.get(i);
+                node.cost += joinCost;
+                node.parent = previous;
+                path.add(node);
+                previous = node;
+            }
+            current = previous;
+        }
+        return path;
+    }
+
+    // Confines the searches of the context to a cluster and a border around it
+    private static void confineToCluster(SearchContext context, ClusterGraph graph, int cluster) {
+        double lng = graph.minLng + (cluster % graph.columns) * ClusterGraph.CLUSTER_SIZE;
+        double lat = graph.minLat + (cluster / graph.columns) * ClusterGraph.CLUSTER_SIZE;
+        context.setBounds(lng - BORDER, lat - BORDER,
+                lng + ClusterGraph.CLUSTER_SIZE + BORDER, lat + ClusterGraph.CLUSTER_SIZE + BORDER);
+    }
+
+    // Gets the position of a vertex in the entrances of a cluster, or -1 for the start and goal vertices
+    private static int indexOf(int[] members, int vertex) {
+        for (int i = 0; i < members.length; i++) {
+            if (members[i] == vertex) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Edge of the abstract graph waiting in the queue, with the cost of the path to its end through it: the straight
+    // line cost until its route has been searched
+    private static final class Edge {
+        final int from;
+        final int to;
+        final int cluster;
+        final double cost;
+        final double total;
+        final boolean searched;
+
+        Edge(int from, int to, int cluster, double cost, double total, boolean searched) {
+            this.from = from;
+            this.to = to;
+            this.cluster = cluster;
+            this.cost = cost;
+            this.total = total;
+            this.searched = searched;
+        }
+    }
+
+    // Totals over the lattice searches run for one path: the nodes they expanded and whether any ran out of time
+    private static final class Tally {
+        int expanded;
+        boolean timedOut;
+
+        void add(SearchContext search) {
+            expanded += search.expandedNodes;
+            timedOut |= search.timedOut;
+        }
+    }
+
+    // Route through the abstract graph: its vertices in order, and the cluster each one is reached through
+    private static final class Route {
+        final int[] vertices;
+        final int[] clusters;
+
+        Route(int length) {
+            vertices = new int[length];
+            clusters = new int[length];
+        }
+    }
+}
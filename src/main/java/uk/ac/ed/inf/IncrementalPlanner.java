@@ -0,0 +1,317 @@
+package uk.ac.ed.inf;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the path and the A* search tree of every start and goal planned so far, so that a change of the geofence
+ * during the day only repairs the paths it affects instead of planning every path again.
+ * The regions of the old and new geofence are compared to find the boxes where moves changed. New or grown zones
+ * only make moves more expensive, so a path whose moves are all still valid stays as good as before; a path that
+ * now crosses such a zone keeps its part before the zone and only the rest is searched again from there, unless
+ * that makes it more than a few moves longer than before, when it is searched again in full. Where a zone was
+ * removed or shrunk, a search that expanded a node within a move of it may now find a shorter path, so that path
+ * is searched again in full; any other search would run exactly as before. The kept part of a repaired path was
+ * found by a search tree the repair replaced, so the area that tree covered is remembered and checked too.
+ *
+ * @author B209981
+ */
+public class IncrementalPlanner {
+
+    // Moves of a path kept back from the first move a new zone blocks, so the repaired path has room to turn
+    private static final int BACKOFF = 8;
+
+    // Geofence the kept paths are valid for
+    private FlightMap flightMap;
+    // Path and search state of each planned start and goal, in the order they were first planned
+    private final Map<List<LngLat>, Plan> plans = new LinkedHashMap<>();
+
+    /**
+     * Creates a planner for a geofence, with no paths planned yet.
+     *
+     * @param flightMap The central area and no-fly zones to plan with.
+     */
+    public IncrementalPlanner(FlightMap flightMap) {
+        this.flightMap = flightMap;
+    }
+
+    /**
+     * Gets the path from a start to a goal, searching for it the first time it is asked for. Searches use the
+     * settings of {@link PathFinding}, with the A* lattice search whose tree is kept for later repairs.
+     *
+     * @param start The start of the path.
+     * @param goal The goal of the path.
+     * @return The path, or null if there is no path.
+     */
+    public List<Node> findPath(LngLat start, LngLat goal) {
+        List<LngLat> key = List.of(start, goal);
+        Plan plan = plans.get(key);
+        if (plan == null) {
+            plan = new Plan(start, goal);
+            plan.path = search(plan.context, flightMap, start, goal);
+            plans.put(key, plan);
+        }
+        return plan.path;
+    }
+
+    /**
+     * Moves every planned path to a new geofence, repairing only the paths the change affects. A path repaired
+     * from part way along is not always the shortest, but it is never more than eight moves longer than the path
+     * it replaces; a longer repair is dropped and the path is searched again in full.
+     *
+     * @param updated The new central area and no-fly zones.
+     * @return The number of paths that had to be searched again, in full or in part.
+     */
+    public int updateGeofence(FlightMap updated) {
+        GeofenceChange change = GeofenceChange.between(flightMap, updated);
+        flightMap = updated;
+        int repaired = 0;
+        for (Plan plan : plans.values()) {
+            if (repair(plan, change)) {
+                repaired++;
+            }
+        }
+        System.out.println("[Info]: Geofence updated, " + repaired + " of " + plans.size() + " paths repaired.");
+        return repaired;
+    }
+
+    /**
+     * Gets the geofence the paths are currently planned for.
+     *
+     * @return The flight map.
+     */
+    public FlightMap flightMap() {
+        return flightMap;
+    }
+
+    // Brings the path of a plan up to date with a change of the geofence. Returns true if a search was needed.
+    private boolean repair(Plan plan, GeofenceChange change) {
+        if (touchesTree(plan, change.freed) || touchesEarlierTrees(plan, change.freed)) {
+            plan.path = search(plan.context, flightMap, plan.start, plan.goal);
+            plan.earlierTrees = null;
+            return true;
+        }
+        if (plan.path == null) {
+            // Nothing near the explored area was freed, so there is still no way through
+            return false;
+        }
+        int blockedMove = touchesPath(plan.path, change.blocked) ? firstInvalidMove(plan.path) : -1;
+        if (blockedMove < 0) {
+            // New zones only took away moves the path does not use, and no path became cheaper
+            return false;
+        }
+        int restart = Math.max(0, blockedMove - 1 - BACKOFF);
+        Node restartNode = plan.path.get(restart);
+        if (restart > 0) {
+            keepTreeBounds(plan);
+        }
+        List<Node> rest = search(plan.context, flightMap, restartNode.coordinates, plan.goal);
+        if (rest == null) {
+            plan.path = restart == 0 ? null : search(plan.context, flightMap, plan.start, plan.goal);
+            plan.earlierTrees = null;
+            return true;
+        }
+
+        // A repair much longer than the old path may have turned too late, as the cheapest way around the new
+        // zone can leave the old path before the restart node, so the path is searched again in full
+        double oldCost = plan.path.get(plan.path.size() - 1).cost;
+        double repairedCost = restartNode.cost + rest.get(rest.size() - 1).cost;
+        if (repairedCost > oldCost + BACKOFF * SystemConstants.DRONE_MOVE_DISTANCE) {
+            plan.path = search(plan.context, flightMap, plan.start, plan.goal);
+            plan.earlierTrees = null;
+            return true;
+        }
+
+        // Join the part of the old path before the restart node to the new rest of the path
+        List<Node> path = new ArrayList<>(plan.path.subList(0, restart + 1));
+        Node previous = restartNode;
+        for (int i = 1; i < rest.size(); i++) {
+            Node node = rest.get(i);
+            node.cost += restartNode.cost;
+            node.parent = previous;
+            path.add(node);
+            previous = node;
+        }
+        plan.path = path;
+        return true;
+    }
+
+    // Runs a lattice search and returns its path, or null if there is none
+    private static List<Node> search(SearchContext context, FlightMap flightMap, LngLat start, LngLat goal) {
+        if (!AStar.findShortestPath(context, flightMap, new Node(start), new Node(goal))) {
+            return null;
+        }
+        return context.getPath();
+    }
+
+    // Gets the index of the first node of a path that can no longer be moved to, or -1 if every move is still valid
+    private int firstInvalidMove(List<Node> path) {
+        for (int i = 1; i < path.size(); i++) {
+            LngLat from = path.get(i - 1).coordinates;
+            LngLat to = path.get(i).coordinates;
+            if (!AStar.isValidMove(to.lng(), to.lat(), flightMap, from.lng(), from.lat())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Checks if the search of a plan expanded a node within a move of any of the boxes
+    private static boolean touchesTree(Plan plan, List<double[]> boxes) {
+        NodeArena arena = plan.context.arena;
+        double reach = SystemConstants.DRONE_MOVE_DISTANCE;
+        for (double[] box : boxes) {
+            if (!arena.overlapsBounds(box[0] - reach, box[1] - reach, box[2] + reach, box[3] + reach)) {
+                continue;
+            }
+            for (int node = 0; node < arena.size(); node++) {
+                if (arena.expanded[node] && isNear(box, arena.lng[node], arena.lat[node], reach)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Widens the box of the earlier search trees of a plan to the nodes its current tree expanded, before a search
+    // from part way along the path replaces that tree
+    private static void keepTreeBounds(Plan plan) {
+        NodeArena arena = plan.context.arena;
+        double[] trees = plan.earlierTrees;
+        if (trees == null) {
+            trees = new double[]{Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        }
+        for (int node = 0; node < arena.size(); node++) {
+            if (arena.expanded[node]) {
+                trees[0] = Math.min(trees[0], arena.lng[node]);
+                trees[1] = Math.min(trees[1], arena.lat[node]);
+                trees[2] = Math.max(trees[2], arena.lng[node]);
+                trees[3] = Math.max(trees[3], arena.lat[node]);
+            }
+        }
+        plan.earlierTrees = trees;
+    }
+
+    // Checks if any of the boxes lies within a move of the nodes expanded by the earlier search trees of a plan
+    private static boolean touchesEarlierTrees(Plan plan, List<double[]> boxes) {
+        double[] trees = plan.earlierTrees;
+        if (trees == null) {
+            return false;
+        }
+        double reach = SystemConstants.DRONE_MOVE_DISTANCE;
+        for (double[] box : boxes) {
+            if (box[0] - reach <= trees[2] && box[2] + reach >= trees[0]
+                    && box[1] - reach <= trees[3] && box[3] + reach >= trees[1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Checks if a node of a path lies within a move of any of the boxes
+    private static boolean touchesPath(List<Node> path, List<double[]> boxes) {
+        for (double[] box : boxes) {
+            for (Node node : path) {
+                if (isNear(box, node.coordinates.lng(), node.coordinates.lat(), SystemConstants.DRONE_MOVE_DISTANCE)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Checks if a position lies within a distance of a box
+    private static boolean isNear(double[] box, double lng, double lat, double distance) {
+        return lng >= box[0] - distance && lng <= box[2] + distance && lat >= box[1] - distance && lat <= box[3] + distance;
+    }
+
+    /**
+     * Difference between two geofences, as the bounding boxes of the regions that were added and removed.
+     * A region that changed counts as its old version removed and its new version added.
+     */
+    static final class GeofenceChange {
+        // Boxes of regions that appeared, where moves that were valid may now be blocked
+        final List<double[]> blocked = new ArrayList<>();
+        // Boxes of regions that disappeared, where moves that were blocked may now be valid
+        final List<double[]> freed = new ArrayList<>();
+
+        /**
+         * Compares the regions of two geofences. A change of the central area changes which moves are valid on
+         * both sides of its border, so its old and new boxes are both blocked and freed.
+         *
+         * @param before The old geofence.
+         * @param after The new geofence.
+         * @return The change between them.
+         */
+        static GeofenceChange between(FlightMap before, FlightMap after) {
+            GeofenceChange change = new GeofenceChange();
+            for (NamedRegion zone : before.noFlyZones()) {
+                if (!containsRegion(after.noFlyZones(), zone)) {
+                    change.freed.add(boundingBox(zone));
+                }
+            }
+            for (NamedRegion zone : after.noFlyZones()) {
+                if (!containsRegion(before.noFlyZones(), zone)) {
+                    change.blocked.add(boundingBox(zone));
+                }
+            }
+            if (!sameRegion(before.centralArea(), after.centralArea())) {
+                for (NamedRegion central : new NamedRegion[]{before.centralArea(), after.centralArea()}) {
+                    change.blocked.add(boundingBox(central));
+                    change.freed.add(boundingBox(central));
+                }
+            }
+            return change;
+        }
+
+        // Checks if a region with the same name and vertices is among the regions
+        private static boolean containsRegion(NamedRegion[] regions, NamedRegion region) {
+            for (NamedRegion other : regions) {
+                if (sameRegion(other, region)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Checks if two regions have the same name and vertices
+        private static boolean sameRegion(NamedRegion first, NamedRegion second) {
+            return first.name().equals(second.name()) && Arrays.equals(first.vertices(), second.vertices());
+        }
+
+        // Gets the bounding box of a region as its western, southern, eastern and northern edges
+        private static double[] boundingBox(NamedRegion region) {
+            double[] box = {Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+            for (LngLat vertex : region.vertices()) {
+                box[0] = Math.min(box[0], vertex.lng());
+                box[1] = Math.min(box[1], vertex.lat());
+                box[2] = Math.max(box[2], vertex.lng());
+                box[3] = Math.max(box[3], vertex.lat());
+            }
+            return box;
+        }
+    }
+
+    // Path from a start to a goal and the search state that found it
+    private static final class Plan {
+        final LngLat start;
+        final LngLat goal;
+        final SearchContext context = PathFinding.newSearchContext();
+        List<Node> path;
+        // Bounding box of the nodes expanded by the searches that found the kept part of a repaired path, as its
+        // western, southern, eastern and northern edges; null while the current search tree found the whole path
+        double[] earlierTrees;
+
+        Plan(LngLat start, LngLat goal) {
+            this.start = start;
+            this.goal = goal;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package uk.ac.ed.inf;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Binary min-heap of nodes ordered by their total cost, used as the open set of the A* search.
+ * Each node stores its own position in the heap, so membership checks take O(1) and a node whose
+ * total cost has been lowered can be moved up in O(log n) instead of being searched for and re-added.
+ * The heap holds node indices and reads their totals from the arena, so it never touches a Node object.
+ *
+ * @author B209981
+ */
+class IndexedHeap implements OpenSet {
+
+    // Position stored for a node that is not in the heap
+    static final int NOT_IN_HEAP = -1;
+
+    // Arena holding the nodes, their totals and their positions in the heap
+    private final NodeArena arena;
+    // Heap array, the node with the lowest total cost is at index 0
+    private int[] heap = new int[64];
+    // Number of nodes currently in the heap
+    private int size;
+
+    /**
+     * Creates an empty heap for the nodes of an arena.
+     *
+     * @param arena The arena holding the nodes.
+     */
+    IndexedHeap(NodeArena arena) {
+        this.arena = arena;
+    }
+
+    /**
+     * Adds a node to the heap.
+     *
+     * @param node The node to add, it must not already be in a heap.
+     */
+    @Override
+    public void add(int node) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        heap[size] = node;
+        arena.queueIndex[node] = size;
+        size++;
+        siftUp(size - 1);
+    }
+
+    /**
+     * Removes and returns the node with the lowest total cost.
+     *
+     * @return The node with the lowest total cost, or NodeArena.NONE if the heap is empty.
+     */
+    @Override
+    public int poll() {
+        if (size == 0) {
+            return NodeArena.NONE;
+        }
+        int first = heap[0];
+        size--;
+        if (size > 0) {
+            place(heap[size], 0);
+            siftDown(0);
+        }
+        arena.queueIndex[first] = NOT_IN_HEAP;
+        return first;
+    }
+
+    /**
+     * Gets the node with the lowest total cost without removing it.
+     *
+     * @return The node with the lowest total cost, or NodeArena.NONE if the heap is empty.
+     */
+    @Override
+    public int peek() {
+        return size == 0 ? NodeArena.NONE : heap[0];
+    }
+
+    /**
+     * Removes a node from the heap.
+     *
+     * @param node The node to remove, it must be in this heap.
+     */
+    @Override
+    public void remove(int node) {
+        int index = arena.queueIndex[node];
+        size--;
+        if (index < size) {
+            int last = heap[size];
+            place(last, index);
+            siftDown(index);
+            if (arena.queueIndex[last] == index) {
+                siftUp(index);
+            }
+        }
+        arena.queueIndex[node] = NOT_IN_HEAP;
+    }
+
+    /**
+     * Restores the heap order after the total cost of a node in the heap has been lowered.
+     *
+     * @param node The node whose total cost has decreased.
+     */
+    @Override
+    public void decreaseKey(int node) {
+        siftUp(arena.queueIndex[node]);
+    }
+
+    /**
+     * Restores the heap order after the total costs of any number of nodes in the heap have changed.
+     */
+    public void rebuild() {
+        for (int i = (size >>> 1) - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    @Override
+    public void updateAll(IntConsumer update) {
+        for (int i = 0; i < size; i++) {
+            update.accept(heap[i]);
+        }
+        rebuild();
+    }
+
+    /**
+     * Gets the node at a position of the heap array, to visit every queued node.
+     *
+     * @param index Position in the heap array, from 0 to size() - 1.
+     * @return The node at that position.
+     */
+    int get(int index) {
+        return heap[index];
+    }
+
+    /**
+     * Checks if a node is currently in this heap.
+     *
+     * @param node The node to check.
+     * @return true if the node is in the heap, false otherwise.
+     */
+    @Override
+    public boolean contains(int node) {
+        int index = arena.queueIndex[node];
+        return index >= 0 && index < size && heap[index] == node;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every node from the heap.
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            arena.queueIndex[heap[i]] = NOT_IN_HEAP;
+        }
+        size = 0;
+    }
+
+    // Moves the node at the given index up until its parent is not more expensive
+    private void siftUp(int index) {
+        int node = heap[index];
+        double total = arena.total[node];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (arena.total[heap[parent]] <= total) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(node, index);
+    }
+
+    // Moves the node at the given index down until both children are not cheaper
+    private void siftDown(int index) {
+        int node = heap[index];
+        double total = arena.total[node];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && arena.total[heap[right]] < arena.total[heap[child]]) {
+                child = right;
+            }
+            if (total <= arena.total[heap[child]]) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(node, index);
+    }
+
+    // Stores a node at an index and records the index in the arena
+    private void place(int node, int index) {
+        heap[index] = node;
+        arena.queueIndex[node] = index;
+    }
+}
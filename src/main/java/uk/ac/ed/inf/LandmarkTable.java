@@ -0,0 +1,251 @@
+package uk.ac.ed.inf;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Distances from a few landmarks to every cell of a grid around the geofence, for the ALT heuristic of A*.
+ * By the triangle inequality the distance from a node to the goal is at least the difference of their distances
+ * to any landmark, and unlike the straight line distance this difference grows when a zone lies in between.
+ * The distances are found once per geofence with Dijkstra searches over the grid, in which a cell is only
+ * blocked when it lies entirely in a no-fly zone, and are saved with the rasters by {@link RasterFile}.
+ *
+ * @author B209981
+ */
+final class LandmarkTable {
+
+    // Number of landmarks
+    static final int LANDMARKS = 8;
+    // Size of a grid cell, two moves
+    static final double CELL_SIZE = 2 * SystemConstants.DRONE_MOVE_DISTANCE;
+    // Margin around the regions covered by the grid, enough for restaurants well outside the central area
+    static final double MARGIN = 0.02;
+    // Share of a landmark bound that is used. Neighbouring step headings are at most atan(1/2) apart, so a straight
+    // run between two of them costs up to 1 / cos(atan(1/2) / 2), about 1.0275, times the straight line on the grid
+    private static final double SCALE = Math.cos(Math.atan(0.5) / 2);
+
+    // Grid steps as column and row offsets: the 8 neighbours and the 8 knight moves, 16 headings like the drone
+    private static final int[] STEP_COLUMNS = {1, 1, 0, -1, -1, -1, 0, 1, 2, 1, -1, -2, -2, -1, 1, 2};
+    private static final int[] STEP_ROWS = {0, 1, 1, 1, 0, -1, -1, -1, 1, 2, 2, 1, -1, -2, -2, -1};
+
+    // Corner of the grid and its size
+    final double minLng;
+    final double minLat;
+    final double cellSize;
+    final int columns;
+    final int rows;
+    final int landmarks;
+
+    // Distance from landmark l to cell c at index l * columns * rows + c, infinite for cells that cannot be reached
+    final FloatBuffer distances;
+
+    /**
+     * Creates a table from distances computed earlier for the same geofence.
+     *
+     * @param minLng The longitude of the corner of the grid.
+     * @param minLat The latitude of the corner of the grid.
+     * @param cellSize The size of a cell in degrees.
+     * @param columns The number of columns.
+     * @param rows The number of rows.
+     * @param landmarks The number of landmarks.
+     * @param distances The distances, landmark by landmark.
+     */
+    LandmarkTable(double minLng, double minLat, double cellSize, int columns, int rows, int landmarks, FloatBuffer distances) {
+        this.minLng = minLng;
+        this.minLat = minLat;
+        this.cellSize = cellSize;
+        this.columns = columns;
+        this.rows = rows;
+        this.landmarks = landmarks;
+        this.distances = distances;
+    }
+
+    /**
+     * Computes the landmark distances around a set of regions. The landmarks are spread out by choosing each one
+     * as the cell furthest from the landmarks chosen before it.
+     *
+     * @param regions The regions to cover, the no-fly zones and the central area.
+     * @param noFlyZones The occupancy raster of the no-fly zones.
+     * @return The landmark table.
+     */
+    static LandmarkTable build(NamedRegion[] regions, OccupancyRaster noFlyZones) {
+        double lowLng = Double.MAX_VALUE, lowLat = Double.MAX_VALUE, highLng = -Double.MAX_VALUE, highLat = -Double.MAX_VALUE;
+        for (NamedRegion region : regions) {
+            for (LngLat vertex : region.vertices()) {
+                lowLng = Math.min(lowLng, vertex.lng());
+                lowLat = Math.min(lowLat, vertex.lat());
+                highLng = Math.max(highLng, vertex.lng());
+                highLat = Math.max(highLat, vertex.lat());
+            }
+        }
+        if (lowLng > highLng) {
+            // No region, the straight line distance is exact
+            return new LandmarkTable(0, 0, CELL_SIZE, 0, 0, 0, FloatBuffer.allocate(0));
+        }
+
+        double minLng = lowLng - MARGIN;
+        double minLat = lowLat - MARGIN;
+        int columns = (int) Math.ceil((highLng - lowLng + 2 * MARGIN) / CELL_SIZE) + 1;
+        int rows = (int) Math.ceil((highLat - lowLat + 2 * MARGIN) / CELL_SIZE) + 1;
+        int cells = columns * rows;
+
+        boolean[] blocked = new boolean[cells];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                blocked[row * columns + column] = isBlocked(noFlyZones, minLng + column * CELL_SIZE, minLat + row * CELL_SIZE);
+            }
+        }
+
+        float[] table = new float[LANDMARKS * cells];
+        // Distance from the nearest landmark chosen so far, starting from the middle of the regions
+        float[] nearest = new float[cells];
+        int middle = (rows / 2) * columns + columns / 2;
+        dijkstra(middle, blocked, columns, rows, nearest, 0);
+        for (int l = 0; l < LANDMARKS; l++) {
+            int landmark = furthestCell(nearest);
+            if (landmark < 0) {
+                return new LandmarkTable(minLng, minLat, CELL_SIZE, columns, rows, l,
+                        FloatBuffer.wrap(Arrays.copyOf(table, l * cells)));
+            }
+            dijkstra(landmark, blocked, columns, rows, table, l * cells);
+            if (l == 0) {
+                // The middle only seeded the choice of the first landmark
+                System.arraycopy(table, 0, nearest, 0, cells);
+            } else {
+                for (int c = 0; c < cells; c++) {
+                    nearest[c] = Math.min(nearest[c], table[l * cells + c]);
+                }
+            }
+        }
+        return new LandmarkTable(minLng, minLat, CELL_SIZE, columns, rows, LANDMARKS, FloatBuffer.wrap(table));
+    }
+
+    /**
+     * Gets the distance from each landmark to a goal, to be passed to {@link #lowerBound}.
+     *
+     * @param lng The longitude of the goal.
+     * @param lat The latitude of the goal.
+     * @return The landmark distances of the goal, or null if the goal is outside the grid or cannot be reached.
+     */
+    float[] distancesTo(double lng, double lat) {
+        if (landmarks == 0) {
+            return null;
+        }
+        float[] goal = new float[landmarks];
+        for (int l = 0; l < landmarks; l++) {
+            goal[l] = (float) interpolate(l, lng, lat);
+            if (Float.isNaN(goal[l])) {
+                return null;
+            }
+        }
+        return goal;
+    }
+
+    /**
+     * Gets a lower bound of the flying distance from a position to a goal: the largest difference of their
+     * landmark distances, scaled down for the difference between the grid and the moves of the drone.
+     *
+     * @param lng The longitude of the position.
+     * @param lat The latitude of the position.
+     * @param goal The landmark distances of the goal, from {@link #distancesTo}.
+     * @return The lower bound, 0 if the position is outside the grid or next to an unreachable cell.
+     */
+    double lowerBound(double lng, double lat, float[] goal) {
+        double bound = 0;
+        for (int l = 0; l < landmarks; l++) {
+            double distance = interpolate(l, lng, lat);
+            if (!Double.isNaN(distance)) {
+                bound = Math.max(bound, Math.abs(goal[l] - distance));
+            }
+        }
+        return bound * SCALE;
+    }
+
+    // Interpolates the distance from a landmark between the four grid points around a position, so the bound
+    // changes smoothly from one move to the next. NaN outside the grid or next to an unreachable grid point.
+    private double interpolate(int landmark, double lng, double lat) {
+        double x = (lng - minLng) / cellSize;
+        double y = (lat - minLat) / cellSize;
+        if (!(x >= 0 && y >= 0 && x < columns - 1 && y < rows - 1)) {
+            return Double.NaN;
+        }
+        int column = (int) x;
+        int row = (int) y;
+        double fx = x - column;
+        double fy = y - row;
+        int base = landmark * columns * rows + row * columns + column;
+        float d00 = distances.get(base);
+        float d10 = distances.get(base + 1);
+        float d01 = distances.get(base + columns);
+        float d11 = distances.get(base + columns + 1);
+        if (Float.isInfinite(d00) || Float.isInfinite(d10) || Float.isInfinite(d01) || Float.isInfinite(d11)) {
+            return Double.NaN;
+        }
+        return (d00 * (1 - fx) + d10 * fx) * (1 - fy) + (d01 * (1 - fx) + d11 * fx) * fy;
+    }
+
+    // Checks if the square of a cell around a grid point lies in a no-fly zone, tested at its centre and corners
+    private static boolean isBlocked(OccupancyRaster noFlyZones, double lng, double lat) {
+        double half = CELL_SIZE / 2;
+        return noFlyZones.contains(lng, lat)
+                && noFlyZones.contains(lng - half, lat - half) && noFlyZones.contains(lng + half, lat - half)
+                && noFlyZones.contains(lng - half, lat + half) && noFlyZones.contains(lng + half, lat + half);
+    }
+
+    // Gets the reachable cell with the largest finite distance, or -1 if every other cell is unreachable or at 0
+    private static int furthestCell(float[] distance) {
+        int furthest = -1;
+        float best = 0;
+        for (int c = 0; c < distance.length; c++) {
+            if (!Float.isInfinite(distance[c]) && distance[c] > best) {
+                best = distance[c];
+                furthest = c;
+            }
+        }
+        return furthest;
+    }
+
+    // Fills the distances from a cell to every cell of the grid, starting at the given offset of the table.
+    // Runs once per landmark when the geofence changes, so the queue of boxed keys is not worth avoiding.
+    private static void dijkstra(int source, boolean[] blocked, int columns, int rows, float[] table, int offset) {
+        int cells = columns * rows;
+        Arrays.fill(table, offset, offset + cells, Float.POSITIVE_INFINITY);
+        double[] stepLength = new double[STEP_COLUMNS.length];
+        for (int s = 0; s < stepLength.length; s++) {
+            stepLength[s] = Math.hypot(STEP_COLUMNS[s], STEP_ROWS[s]) * CELL_SIZE;
+        }
+
+        // Each entry packs the distance, whose float bits sort like the float, above the cell
+        PriorityQueue<Long> queue = new PriorityQueue<>();
+        table[offset + source] = 0;
+        queue.add((long) source);
+        while (!queue.isEmpty()) {
+            long entry = queue.poll();
+            int cell = (int) entry;
+            float distance = Float.intBitsToFloat((int) (entry >>> 32));
+            if (distance > table[offset + cell]) {
+                continue;
+            }
+            int column = cell % columns;
+            int row = cell / columns;
+            for (int s = 0; s < STEP_COLUMNS.length; s++) {
+                int nextColumn = column + STEP_COLUMNS[s];
+                int nextRow = row + STEP_ROWS[s];
+                if (nextColumn < 0 || nextRow < 0 || nextColumn >= columns || nextRow >= rows) {
+                    continue;
+                }
+                int next = nextRow * columns + nextColumn;
+                float nextDistance = (float) (distance + stepLength[s]);
+                if (!blocked[next] && nextDistance < table[offset + next]) {
+                    table[offset + next] = nextDistance;
+                    queue.add(((long) Float.floatToIntBits(nextDistance) << 32) | next);
+                }
+            }
+        }
+    }
+}
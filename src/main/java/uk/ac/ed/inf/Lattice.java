@@ -0,0 +1,96 @@
+package uk.ac.ed.inf;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+
+/**
+ * Integer lattice used to identify search nodes.
+ * A position is mapped to the (column, row) cell it falls in, counted in half DRONE_MOVE_DISTANCE steps from the
+ * search origin, and the two cell indices are packed into a single long key. Positions reached by different
+ * sequences of moves that land in the same cell therefore share a key, even though their doubles differ.
+ * The lowest bit of a key holds whether the node is inside the central area, which the drone cannot leave once it
+ * has entered, so a cell on the boundary of the area can hold a node on each side of it.
+ *
+ * @author B209981
+ */
+final class Lattice {
+
+    // Size of a lattice cell in degrees.
+    // Every move shifts at least one coordinate by more than half a move, so a move never stays in its own cell.
+    static final double RESOLUTION = SystemConstants.DRONE_MOVE_DISTANCE / 2;
+
+    // Key that no cell maps to, used to mark empty slots in the primitive hash structures
+    static final long NO_KEY = Long.MIN_VALUE;
+
+    // Bit of a key set for a node inside the central area
+    static final long CENTRAL = 1L;
+
+    // Largest row offset a key can hold, the row sharing the low 32 bits with the central area bit
+    static final int MAX_ROW = (1 << 30) - 1;
+
+    private Lattice() {
+    }
+
+    /**
+     * Gets the key of the lattice cell containing a position.
+     *
+     * @param lng Longitude of the position.
+     * @param lat Latitude of the position.
+     * @param originLng Longitude of the search origin.
+     * @param originLat Latitude of the search origin.
+     * @return The packed key of the cell.
+     */
+    static long key(double lng, double lat, double originLng, double originLat) {
+        int column = (int) Math.round((lng - originLng) / RESOLUTION);
+        int row = (int) Math.round((lat - originLat) / RESOLUTION);
+        return pack(column, row);
+    }
+
+    /**
+     * Packs a column and a row into a key, the column in the high 32 bits and the row in the 31 bits above the
+     * central area bit, which is left clear.
+     *
+     * @param column Column offset from the origin.
+     * @param row Row offset from the origin, between -MAX_ROW - 1 and MAX_ROW.
+     * @return The packed key.
+     */
+    static long pack(int column, int row) {
+        return ((long) column << 32) | ((row & 0x7FFFFFFFL) << 1);
+    }
+
+    // Column offset stored in a key
+    static int column(long key) {
+        return (int) (key >> 32);
+    }
+
+    // Row offset stored in a key
+    static int row(long key) {
+        return (int) key >> 1;
+    }
+
+    /**
+     * Sets the central area bit of a key.
+     *
+     * @param key The key of a cell.
+     * @param central Whether the node is inside the central area.
+     * @return The key of the node in that cell with that state.
+     */
+    static long withCentral(long key, boolean central) {
+        return central ? key | CENTRAL : key & ~CENTRAL;
+    }
+
+    // Whether the node of a key is inside the central area
+    static boolean isCentral(long key) {
+        return (key & CENTRAL) != 0;
+    }
+
+    /**
+     * Spreads the bits of a key so that neighbouring cells land in different hash slots.
+     *
+     * @param key The key to hash.
+     * @return The mixed hash of the key.
+     */
+    static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
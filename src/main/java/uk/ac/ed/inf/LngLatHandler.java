@@ -18,6 +18,22 @@ public class LngLatHandler implements LngLatHandling {
     static final int MIN_ANGLE = 0;
     static final int MAX_ANGLE = 360;
     static final int HOVER = 999;
+    static final double ANGLE_STEP = 22.5;
+    static final int COMPASS_DIRECTIONS = 16;
+
+    //components of a move, computed once so that moves do not call cos and sin
+    private static final double COS_22_5 = DRONE_MOVE_DISTANCE * Math.cos(Math.PI / 8);
+    private static final double SIN_22_5 = DRONE_MOVE_DISTANCE * Math.sin(Math.PI / 8);
+    private static final double COS_45 = DRONE_MOVE_DISTANCE * Math.cos(Math.PI / 4);
+    private static final double SIN_45 = DRONE_MOVE_DISTANCE * Math.sin(Math.PI / 4);
+
+    //change in longitude and latitude for each of the 16 compass directions, indexed by angle / ANGLE_STEP
+    static final double[] MOVE_LNG = {
+            DRONE_MOVE_DISTANCE, COS_22_5, COS_45, SIN_22_5, 0, -SIN_22_5, -COS_45, -COS_22_5,
+            -DRONE_MOVE_DISTANCE, -COS_22_5, -COS_45, -SIN_22_5, 0, SIN_22_5, COS_45, COS_22_5};
+    static final double[] MOVE_LAT = {
+            0, SIN_22_5, SIN_45, COS_22_5, DRONE_MOVE_DISTANCE, COS_22_5, SIN_45, SIN_22_5,
+            0, -SIN_22_5, -SIN_45, -COS_22_5, -DRONE_MOVE_DISTANCE, -COS_22_5, -SIN_45, -SIN_22_5};
 
     /**
      * get the distance between two positions
@@ -97,49 +113,32 @@ public class LngLatHandler implements LngLatHandling {
 
         if ((angle >= MIN_ANGLE && angle < MAX_ANGLE) || (angle == HOVER)){
 
-            switch (String.valueOf(angle)) {
-                case "0.0":
-                    return (new LngLat(startPosition.lng() + DRONE_MOVE_DISTANCE, startPosition.lat()));
-                case "22.5":
-                    return (new LngLat(startPosition.lng() + DRONE_MOVE_DISTANCE * Math.cos(Math.PI / 8), startPosition.lat() + DRONE_MOVE_DISTANCE * Math.sin(Math.PI / 8)));
-                case "45.0":
-                    return (new LngLat(startPosition.lng() + DRONE_MOVE_DISTANCE * Math.cos(Math.PI / 4), startPosition.lat() + DRONE_MOVE_DISTANCE * Math.sin(Math.PI / 4)));
-                case "67.5":
-                    return (new LngLat(startPosition.lng() + DRONE_MOVE_DISTANCE * Math.sin(Math.PI / 8), startPosition.lat() + DRONE_MOVE_DISTANCE * Math.cos(Math.PI / 8)));
-                case "90.0":
-                    return (new LngLat(startPosition.lng(), startPosition.lat() + DRONE_MOVE_DISTANCE));
-                case "112.5":
-                    return (new LngLat(startPosition.lng() - DRONE_MOVE_DISTANCE * Math.sin(Math.PI / 8), startPosition.lat() + DRONE_MOVE_DISTANCE * Math.cos(Math.PI / 8)));
-                case "135.0":
-                    return (new LngLat(startPosition.lng() - DRONE_MOVE_DISTANCE * Math.cos(Math.PI / 4), startPosition.lat() + DRONE_MOVE_DISTANCE * Math.sin(Math.PI / 4)));
-                case "157.5":
-                    return (new LngLat(startPosition.lng() - DRONE_MOVE_DISTANCE * Math.cos(Math.PI / 8), startPosition.lat() + DRONE_MOVE_DISTANCE * Math.sin(Math.PI / 8)));
-                case "180.0":
-                    return (new LngLat(startPosition.lng() - DRONE_MOVE_DISTANCE, startPosition.lat()));
-                case "202.5":
-                    return (new LngLat(startPosition.lng() - DRONE_MOVE_DISTANCE * Math.cos(Math.PI / 8), startPosition.lat() - DRONE_MOVE_DISTANCE * Math.sin(Math.PI / 8)));
-                case "225.0":
-                    return (new LngLat(startPosition.lng() - DRONE_MOVE_DISTANCE * Math.cos(Math.PI / 4), startPosition.lat() - DRONE_MOVE_DISTANCE * Math.sin(Math.PI / 4)));
-                case "247.5":
-                    return (new LngLat(startPosition.lng() - DRONE_MOVE_DISTANCE * Math.sin(Math.PI / 8), startPosition.lat() - DRONE_MOVE_DISTANCE * Math.cos(Math.PI / 8)));
-                case "270.0":
-                    return (new LngLat(startPosition.lng(), startPosition.lat() - DRONE_MOVE_DISTANCE));
-                case "292.5":
-                    return (new LngLat(startPosition.lng() + DRONE_MOVE_DISTANCE * Math.sin(Math.PI / 8), startPosition.lat() - DRONE_MOVE_DISTANCE * Math.cos(Math.PI / 8)));
-                case "315.0":
-                    return (new LngLat(startPosition.lng() + DRONE_MOVE_DISTANCE * Math.cos(Math.PI / 4), startPosition.lat() - DRONE_MOVE_DISTANCE * Math.sin(Math.PI / 4)));
-                case "337.5":
-                    return (new LngLat(startPosition.lng() + DRONE_MOVE_DISTANCE * Math.cos(Math.PI / 8), startPosition.lat() - DRONE_MOVE_DISTANCE * Math.sin(Math.PI / 8)));
-                case "999.0":
-                    return (startPosition);
-                default:
-                    System.err.println("[Error]: Angle within range but not one of 16 directions.");
-                    return (startPosition);
+            if (angle == HOVER) {
+                return (startPosition);
+            }
+
+            int direction = (int) (angle / ANGLE_STEP);
+            if (direction * ANGLE_STEP != angle) {
+                System.err.println("[Error]: Angle within range but not one of 16 directions.");
+                return (startPosition);
             }
+            return (new LngLat(startPosition.lng() + MOVE_LNG[direction], startPosition.lat() + MOVE_LAT[direction]));
         } else {
             System.err.println("[Error]: Angle is not within range.");
             return (startPosition);
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * find the next position after a move in one of the 16 compass directions, without allocating
+     * @param lng is the longitude of the start
+     * @param lat is the latitude of the start
+     * @param direction is the index of the direction, the angle divided by ANGLE_STEP (0 to 15)
+     * @param next receives the new longitude at index 0 and the new latitude at index 1
+     */
+    public static void nextPosition(double lng, double lat, int direction, double[] next) {
+        next[0] = lng + MOVE_LNG[direction];
+        next[1] = lat + MOVE_LAT[direction];
+    }
+
+}
@@ -0,0 +1,96 @@
+package uk.ac.ed.inf;
+
+import java.util.Arrays;
+
+/**
+ * Set of primitive long keys using open addressing with linear probing.
+ * Keys are stored directly in a long array, so adding or checking a key neither boxes it nor allocates.
+ * Lattice.NO_KEY marks an empty slot and cannot be stored.
+ *
+ * @author B209981
+ */
+class LongHashSet {
+
+    // Slots of the table, a power of two in length
+    private long[] keys;
+    // Number of keys in the set
+    private int size;
+
+    public LongHashSet() {
+        keys = new long[64];
+        Arrays.fill(keys, Lattice.NO_KEY);
+    }
+
+    /**
+     * Adds a key to the set.
+     *
+     * @param key The key to add.
+     * @return true if the key was not already in the set, false otherwise.
+     */
+    public boolean add(long key) {
+        int mask = keys.length - 1;
+        int slot = Lattice.hash(key) & mask;
+        while (keys[slot] != Lattice.NO_KEY) {
+            if (keys[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a key is in the set.
+     *
+     * @param key The key to check.
+     * @return true if the key is in the set, false otherwise.
+     */
+    public boolean contains(long key) {
+        int mask = keys.length - 1;
+        int slot = Lattice.hash(key) & mask;
+        while (keys[slot] != Lattice.NO_KEY) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every key while keeping the allocated table for reuse.
+     */
+    public void clear() {
+        Arrays.fill(keys, Lattice.NO_KEY);
+        size = 0;
+    }
+
+    // Doubles the table and re-inserts every key
+    private void grow() {
+        long[] old = keys;
+        keys = new long[old.length * 2];
+        Arrays.fill(keys, Lattice.NO_KEY);
+        int mask = keys.length - 1;
+        for (long key : old) {
+            if (key != Lattice.NO_KEY) {
+                int slot = Lattice.hash(key) & mask;
+                while (keys[slot] != Lattice.NO_KEY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+}
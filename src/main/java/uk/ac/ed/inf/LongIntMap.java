@@ -0,0 +1,128 @@
+package uk.ac.ed.inf;
+
+import java.util.Arrays;
+
+/**
+ * Map from primitive long keys to primitive int values using open addressing with linear probing.
+ * Used to find the arena index of the node generated in a lattice cell without boxing the key or hashing a LngLat.
+ * Lattice.NO_KEY marks an empty slot and cannot be stored.
+ *
+ * @author B209981
+ */
+class LongIntMap {
+
+    // Slots of the table, a power of two in length
+    private long[] keys;
+    // Value stored for the key in the same slot
+    private int[] values;
+    // Number of entries in the map
+    private int size;
+
+    public LongIntMap() {
+        keys = new long[64];
+        values = new int[64];
+        Arrays.fill(keys, Lattice.NO_KEY);
+    }
+
+    /**
+     * Gets the value stored for a key.
+     *
+     * @param key The key to look up.
+     * @return The value stored for the key, or NodeArena.NONE if there is none.
+     */
+    public int get(long key) {
+        int mask = keys.length - 1;
+        int slot = Lattice.hash(key) & mask;
+        while (keys[slot] != Lattice.NO_KEY) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NodeArena.NONE;
+    }
+
+    /**
+     * Stores a value for a key, replacing any value already stored for it.
+     *
+     * @param key The key to store the value under.
+     * @param value The value to store.
+     */
+    public void put(long key, int value) {
+        int mask = keys.length - 1;
+        int slot = Lattice.hash(key) & mask;
+        while (keys[slot] != Lattice.NO_KEY) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    /**
+     * Removes the entry for a key, shifting later entries of the probe chain back into the freed slot.
+     *
+     * @param key The key to remove.
+     */
+    public void remove(long key) {
+        int mask = keys.length - 1;
+        int slot = Lattice.hash(key) & mask;
+        while (keys[slot] != key) {
+            if (keys[slot] == Lattice.NO_KEY) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        size--;
+        int next = (slot + 1) & mask;
+        while (keys[next] != Lattice.NO_KEY) {
+            int home = Lattice.hash(keys[next]) & mask;
+            // Move the entry back if its home slot is not between the freed slot and its current slot
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[slot] = Lattice.NO_KEY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every entry while keeping the allocated table for reuse.
+     */
+    public void clear() {
+        Arrays.fill(keys, Lattice.NO_KEY);
+        size = 0;
+    }
+
+    // Doubles the table and re-inserts every entry
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(keys, Lattice.NO_KEY);
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != Lattice.NO_KEY) {
+                int slot = Lattice.hash(oldKeys[i]) & mask;
+                while (keys[slot] != Lattice.NO_KEY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -14,9 +14,9 @@ class Node {
     LngLat coordinates;
 
     // A* algorithm specific parameters.
-    // total = total cost of the node (cost + estimate)
+    // total = total cost of the node (cost + weight * estimate)
     // cost = cost from the start node to this node
-    // estimate = estimated cost from this node to the end node (heuristic)
+    // estimate = estimated cost from this node to the end node (heuristic), before the search weight is applied
     double total, cost, estimate;
 
     // Parent node in the path, used to reconstruct the path once the algorithm finishes.
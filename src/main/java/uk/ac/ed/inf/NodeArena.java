@@ -0,0 +1,214 @@
+package uk.ac.ed.inf;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Storage for the nodes of a search as parallel primitive arrays, so that generating a node allocates nothing.
+ * A node is an index into the arrays and refers to its parent by index. The arrays grow by doubling and are kept
+ * when the arena is cleared, so a search context reused for many searches stops allocating once it is warm.
+ * Node objects and LngLat records are only created when a path is taken out of the arena.
+ *
+ * @author B209981
+ */
+final class NodeArena {
+
+    // Index used for "no node", such as the parent of the start node
+    static final int NONE = -1;
+
+    // Position of each node
+    double[] lng;
+    double[] lat;
+    // Cost from the start, heuristic estimate before the search weight is applied, and cost + weight * estimate
+    double[] cost;
+    double[] estimate;
+    double[] total;
+    // Parent of each node in the search tree, NONE for the root
+    int[] parent;
+    // Index of the compass direction of the move that generated each node, from its parent
+    byte[] direction;
+    // Lattice key of the cell each node lies in
+    long[] key;
+    // Position of each node in the open set (heap slot or bucket), IndexedHeap.NOT_IN_HEAP when it is not queued
+    int[] queueIndex;
+    // Neighbours of each node in its bucket when the open set is a bucket queue
+    int[] bucketNext;
+    int[] bucketPrevious;
+    // Whether each node has been expanded, after which its position is fixed because other nodes were generated from it
+    boolean[] expanded;
+    // Whether each node is inside the central area, found when it is generated; its key holds the same state
+    boolean[] central;
+
+    // Number of nodes in the arena
+    private int size;
+    // Bounding box of every position a node has held since the arena was cleared
+    private double minLng, minLat, maxLng, maxLat;
+
+    NodeArena() {
+        allocateArrays(256);
+        clear();
+    }
+
+    /**
+     * Adds a node at a position, with no parent and every cost 0.
+     *
+     * @param nodeLng The longitude of the node.
+     * @param nodeLat The latitude of the node.
+     * @return The index of the new node.
+     */
+    int add(double nodeLng, double nodeLat) {
+        if (size == lng.length) {
+            grow();
+        }
+        int node = size++;
+        lng[node] = nodeLng;
+        lat[node] = nodeLat;
+        includeInBounds(nodeLng, nodeLat);
+        cost[node] = 0;
+        estimate[node] = 0;
+        total[node] = 0;
+        parent[node] = NONE;
+        direction[node] = 0;
+        key[node] = Lattice.NO_KEY;
+        queueIndex[node] = IndexedHeap.NOT_IN_HEAP;
+        bucketNext[node] = NONE;
+        bucketPrevious[node] = NONE;
+        expanded[node] = false;
+        central[node] = false;
+        return node;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes every node while keeping the arrays for the next search.
+     */
+    void clear() {
+        size = 0;
+        minLng = minLat = Double.MAX_VALUE;
+        maxLng = maxLat = -Double.MAX_VALUE;
+    }
+
+    /**
+     * Widens the bounding box of the arena to a position, for a node moved there after it was added.
+     *
+     * @param nodeLng The longitude of the position.
+     * @param nodeLat The latitude of the position.
+     */
+    void includeInBounds(double nodeLng, double nodeLat) {
+        minLng = Math.min(minLng, nodeLng);
+        minLat = Math.min(minLat, nodeLat);
+        maxLng = Math.max(maxLng, nodeLng);
+        maxLat = Math.max(maxLat, nodeLat);
+    }
+
+    /**
+     * Checks if a position is within a distance of the bounding box of the nodes, so that a node may be near it.
+     *
+     * @param pointLng The longitude of the position.
+     * @param pointLat The latitude of the position.
+     * @param distance The distance allowed outside the bounding box.
+     * @return false if every node is further than the distance from the position in longitude or latitude.
+     */
+    boolean isNearBounds(double pointLng, double pointLat, double distance) {
+        return pointLng >= minLng - distance && pointLng <= maxLng + distance
+                && pointLat >= minLat - distance && pointLat <= maxLat + distance;
+    }
+
+    /**
+     * Checks if a box overlaps the bounding box of the nodes, so that a node may lie in it.
+     *
+     * @param boxMinLng The western edge of the box.
+     * @param boxMinLat The southern edge of the box.
+     * @param boxMaxLng The eastern edge of the box.
+     * @param boxMaxLat The northern edge of the box.
+     * @return true if the boxes overlap, false otherwise.
+     */
+    boolean overlapsBounds(double boxMinLng, double boxMinLat, double boxMaxLng, double boxMaxLat) {
+        return boxMinLng <= maxLng && boxMaxLng >= minLng && boxMinLat <= maxLat && boxMaxLat >= minLat;
+    }
+
+    /**
+     * Builds the path from the root of the search tree to a node, linking each Node to its parent, the one before it.
+     * The angle of each Node is the direction stored for it, the move from its parent in a forward search.
+     *
+     * @param node The last node of the path.
+     * @return The path from the root to the node.
+     */
+    List<Node> pathFromRoot(int node) {
+        int length = 0;
+        for (int i = node; i != NONE; i = parent[i]) {
+            length++;
+        }
+        int[] chain = new int[length];
+        for (int i = node, j = length - 1; i != NONE; i = parent[i], j--) {
+            chain[j] = i;
+        }
+
+        List<Node> path = new ArrayList<>(length);
+        Node previous = null;
+        for (int index : chain) {
+            Node step = new Node(new LngLat(lng[index], lat[index]));
+            step.cost = cost[index];
+            step.angle = direction[index] * LngLatHandler.ANGLE_STEP;
+            step.parent = previous;
+            path.add(step);
+            previous = step;
+        }
+        return path;
+    }
+
+    /**
+     * Builds the path from a node up to the root of the search tree, for a tree searched backwards from its root.
+     * Each Node is linked to the one after it, towards the root, and its angle is the direction of the move
+     * from it to that next node.
+     *
+     * @param node The first node of the path.
+     * @return The path from the node to the root.
+     */
+    List<Node> pathToRoot(int node) {
+        List<Node> path = pathFromRoot(node);
+        Collections.reverse(path);
+        return path;
+    }
+
+    // Doubles every array
+    private void grow() {
+        int capacity = lng.length * 2;
+        lng = Arrays.copyOf(lng, capacity);
+        lat = Arrays.copyOf(lat, capacity);
+        cost = Arrays.copyOf(cost, capacity);
+        estimate = Arrays.copyOf(estimate, capacity);
+        total = Arrays.copyOf(total, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        direction = Arrays.copyOf(direction, capacity);
+        key = Arrays.copyOf(key, capacity);
+        queueIndex = Arrays.copyOf(queueIndex, capacity);
+        bucketNext = Arrays.copyOf(bucketNext, capacity);
+        bucketPrevious = Arrays.copyOf(bucketPrevious, capacity);
+        expanded = Arrays.copyOf(expanded, capacity);
+        central = Arrays.copyOf(central, capacity);
+    }
+
+    private void allocateArrays(int capacity) {
+        lng = new double[capacity];
+        lat = new double[capacity];
+        cost = new double[capacity];
+        estimate = new double[capacity];
+        total = new double[capacity];
+        parent = new int[capacity];
+        direction = new byte[capacity];
+        key = new long[capacity];
+        queueIndex = new int[capacity];
+        bucketNext = new int[capacity];
+        bucketPrevious = new int[capacity];
+        expanded = new boolean[capacity];
+        central = new boolean[capacity];
+    }
+}
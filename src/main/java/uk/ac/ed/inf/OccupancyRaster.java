@@ -0,0 +1,373 @@
+package uk.ac.ed.inf;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.nio.LongBuffer;
+
+/**
+ * Occupancy raster of a set of regions at the resolution of the search lattice, so most point tests are one bit lookup.
+ * A cell that no edge passes near lies entirely inside or entirely outside the regions: it is marked as known and
+ * its inside bit holds the answer. Only points in the few cells along the edges are passed on to the exact index.
+ * The raster is built once per geofence and never changes afterwards, so concurrent searches can share it.
+ * Its bits are kept in buffers so a raster saved by {@link RasterFile} can be used straight from a mapped file.
+ *
+ * @author B209981
+ */
+final class OccupancyRaster {
+
+    // Largest number of cells, the cells are made coarser for regions that would need more
+    private static final long MAX_CELLS = 1L << 26;
+
+    // Answers of a raster lookup
+    static final int OUTSIDE = 0;
+    static final int INSIDE = 1;
+    static final int UNDECIDED = 2;
+
+    // Exact index answering the points in cells that are not known
+    private final RegionIndex index;
+
+    // Corner of the raster and the size of a cell
+    final double minLng;
+    final double minLat;
+    final double cellSize;
+    final int columns;
+    final int rows;
+
+    // Bit row * columns + column is set when every point of the cell has the same answer
+    final LongBuffer known;
+    // Bit row * columns + column is set when the points of a known cell are inside a region
+    final LongBuffer inside;
+
+    /**
+     * Creates a raster from bits computed earlier for the same regions.
+     *
+     * @param index The exact index of the regions.
+     * @param minLng The longitude of the corner of the raster.
+     * @param minLat The latitude of the corner of the raster.
+     * @param cellSize The size of a cell in degrees.
+     * @param columns The number of columns.
+     * @param rows The number of rows.
+     * @param known The known bits, one per cell.
+     * @param inside The inside bits, one per cell.
+     */
+    OccupancyRaster(RegionIndex index, double minLng, double minLat, double cellSize, int columns, int rows,
+                    LongBuffer known, LongBuffer inside) {
+        this.index = index;
+        this.minLng = minLng;
+        this.minLat = minLat;
+        this.cellSize = cellSize;
+        this.columns = columns;
+        this.rows = rows;
+        this.known = known;
+        this.inside = inside;
+    }
+
+    /**
+     * Rasterizes a set of regions.
+     *
+     * @param regions The regions to rasterize, each a closed polygon.
+     * @param index The exact index of the same regions.
+     */
+    OccupancyRaster(NamedRegion[] regions, RegionIndex index) {
+        this.index = index;
+
+        double lowLng = Double.MAX_VALUE, lowLat = Double.MAX_VALUE, highLng = -Double.MAX_VALUE, highLat = -Double.MAX_VALUE;
+        for (NamedRegion region : regions) {
+            if (region.vertices().length < 3) {
+                continue;
+            }
+            for (LngLat vertex : region.vertices()) {
+                lowLng = Math.min(lowLng, vertex.lng());
+                lowLat = Math.min(lowLat, vertex.lat());
+                highLng = Math.max(highLng, vertex.lng());
+                highLat = Math.max(highLat, vertex.lat());
+            }
+        }
+
+        if (lowLng > highLng) {
+            // No region to rasterize, every point is outside
+            minLng = minLat = 0;
+            cellSize = 1;
+            columns = rows = 0;
+            known = inside = LongBuffer.allocate(0);
+            return;
+        }
+
+        double size = Lattice.RESOLUTION;
+        while (((highLng - lowLng) / size + 3) * ((highLat - lowLat) / size + 3) > MAX_CELLS) {
+            size *= 2;
+        }
+        cellSize = size;
+        // Pad by one cell on each side so the neighbours of boundary cells are inside the raster
+        minLng = lowLng - cellSize;
+        minLat = lowLat - cellSize;
+        columns = (int) Math.ceil((highLng - lowLng) / cellSize) + 3;
+        rows = (int) Math.ceil((highLat - lowLat) / cellSize) + 3;
+
+        long[] mixed = new long[words(columns * rows)];
+        for (NamedRegion region : regions) {
+            LngLat[] corners = region.vertices();
+            int n = corners.length;
+            if (n < 3) {
+                continue;
+            }
+            double regionLow = Double.MAX_VALUE, regionHigh = -Double.MAX_VALUE;
+            for (LngLat corner : corners) {
+                regionLow = Math.min(regionLow, corner.lng());
+                regionHigh = Math.max(regionHigh, corner.lng());
+            }
+            for (int i = 0; i < n; i++) {
+                LngLat a = corners[i];
+                LngLat b = corners[(i + 1) % n];
+                markEdge(mixed, a.lng(), a.lat(), b.lng(), b.lat());
+                // The ray cast skips the edges meeting at a vertex, so points at its latitude are left to the exact index
+                markBox(mixed, regionLow, a.lat(), regionHigh, a.lat());
+            }
+        }
+
+        long[] knownBits = new long[mixed.length];
+        long[] insideBits = new long[mixed.length];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                int cell = row * columns + column;
+                if (isSet(mixed, cell)) {
+                    continue;
+                }
+                set(knownBits, cell);
+                if (index.contains(minLng + (column + 0.5) * cellSize, minLat + (row + 0.5) * cellSize)) {
+                    set(insideBits, cell);
+                }
+            }
+        }
+        known = LongBuffer.wrap(knownBits);
+        inside = LongBuffer.wrap(insideBits);
+    }
+
+    /**
+     * Gets the number of longs holding each layer of bits.
+     *
+     * @return The length of the known and inside buffers.
+     */
+    int words() {
+        return words(columns * rows);
+    }
+
+    /**
+     * Checks if a point is inside any of the rasterized regions.
+     *
+     * @param lng The longitude of the point.
+     * @param lat The latitude of the point.
+     * @return true if the point is inside a region, false otherwise.
+     */
+    boolean contains(double lng, double lat) {
+        int state = state(lng, lat);
+        if (state == UNDECIDED) {
+            return index.contains(lng, lat);
+        }
+        return state == INSIDE;
+    }
+
+    /**
+     * Looks a point up in the raster only, without falling back to the exact index.
+     *
+     * @param lng The longitude of the point.
+     * @param lat The latitude of the point.
+     * @return INSIDE or OUTSIDE if the cell of the point is known, UNDECIDED if the point needs an exact test.
+     */
+    int state(double lng, double lat) {
+        double x = (lng - minLng) / cellSize;
+        double y = (lat - minLat) / cellSize;
+        if (!(x >= 0 && y >= 0 && x < columns && y < rows)) {
+            // Beyond the padded bounding box of every region
+            return OUTSIDE;
+        }
+        int cell = (int) y * columns + (int) x;
+        if (isSet(known, cell)) {
+            return isSet(inside, cell) ? INSIDE : OUTSIDE;
+        }
+        return UNDECIDED;
+    }
+
+    /**
+     * Checks if a segment may touch an edge of the regions, looking only at the raster. Every edge marks the cells it
+     * passes through and the cells around them as not known, so points sampled along the segment no more than a cell
+     * apart, which leave no point of it more than half a cell from a sample, all land in known cells when no edge
+     * comes near. A drone move, two lattice cells long, needs three samples.
+     *
+     * @param fromLng The longitude of the start of the segment.
+     * @param fromLat The latitude of the start of the segment.
+     * @param toLng The longitude of the end of the segment.
+     * @param toLat The latitude of the end of the segment.
+     * @return false if no edge can touch the segment, true if it has to be tested against the edges.
+     */
+    boolean mayTouchEdge(double fromLng, double fromLat, double toLng, double toLat) {
+        return state(fromLng, fromLat) == UNDECIDED || state(toLng, toLat) == UNDECIDED
+                || mayTouchEdgeBetween(fromLng, fromLat, toLng, toLat);
+    }
+
+    /**
+     * Checks the samples of {@link #mayTouchEdge} strictly between the ends of a segment, for callers that have
+     * already looked up both ends.
+     *
+     * @param fromLng The longitude of the start of the segment.
+     * @param fromLat The latitude of the start of the segment.
+     * @param toLng The longitude of the end of the segment.
+     * @param toLat The latitude of the end of the segment.
+     * @return true if a sample between the ends lands in a cell that is not known, false otherwise.
+     */
+    boolean mayTouchEdgeBetween(double fromLng, double fromLat, double toLng, double toLat) {
+        double dLng = toLng - fromLng;
+        double dLat = toLat - fromLat;
+        int steps = Math.max(1, (int) Math.ceil(Math.sqrt(dLng * dLng + dLat * dLat) / cellSize));
+        for (int i = 1; i < steps; i++) {
+            double t = (double) i / steps;
+            if (state(fromLng + dLng * t, fromLat + dLat * t) == UNDECIDED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if every cell overlapping a box is known, so no edge of the regions passes through the box and no
+     * segment within it can touch one. Cells beyond the raster count as known.
+     *
+     * @param west The western edge of the box.
+     * @param south The southern edge of the box.
+     * @param east The eastern edge of the box.
+     * @param north The northern edge of the box.
+     * @return true if every cell the box overlaps is known, false otherwise.
+     */
+    boolean isKnownWithin(double west, double south, double east, double north) {
+        // Truncating a small negative offset gives the first cell, which is padding and always known
+        int firstColumn = Math.max(0, (int) ((west - minLng) / cellSize));
+        int lastColumn = Math.min(columns - 1, (int) ((east - minLng) / cellSize));
+        int firstRow = Math.max(0, (int) ((south - minLat) / cellSize));
+        int lastRow = Math.min(rows - 1, (int) ((north - minLat) / cellSize));
+        if (lastColumn < 0 || firstColumn >= columns || lastRow < 0 || firstRow >= rows) {
+            // The box lies beyond the raster
+            return true;
+        }
+        for (int row = firstRow; row <= lastRow; row++) {
+            int first = row * columns + firstColumn;
+            int last = row * columns + lastColumn;
+            // The cells of a row are consecutive bits, tested a word at a time
+            for (int word = first >>> 6; word <= last >>> 6; word++) {
+                long mask = -1L;
+                if (word == first >>> 6) {
+                    mask &= -1L << first;
+                }
+                if (word == last >>> 6) {
+                    mask &= -1L >>> (63 - (last & 63));
+                }
+                if ((known.get(word) & mask) != mask) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the cell of a point and the eight cells around it are known. Every edge also marks the cells around
+     * the ones it passes through, so no edge of the regions then passes within two cells of the point, and every
+     * point that close has the answer of the point. Cells beyond the raster count as known.
+     *
+     * @param lng The longitude of the point.
+     * @param lat The latitude of the point.
+     * @return true if the nine cells are known, false otherwise.
+     */
+    boolean isKnownAround(double lng, double lat) {
+        double x = (lng - minLng) / cellSize;
+        double y = (lat - minLat) / cellSize;
+        if (!(x >= -1 && y >= -1 && x < columns + 1 && y < rows + 1)) {
+            // Every cell around the point lies beyond the raster
+            return true;
+        }
+        int column = (int) Math.floor(x);
+        int row = (int) Math.floor(y);
+        for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+            for (int c = Math.max(0, column - 1); c <= Math.min(columns - 1, column + 1); c++) {
+                if (!isSet(known, r * columns + c)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the share of cells answered without the exact index.
+     *
+     * @return The number of known cells divided by the number of cells, 1 if the raster is empty.
+     */
+    double knownFraction() {
+        if (columns * rows == 0) {
+            return 1;
+        }
+        int count = 0;
+        for (int i = 0; i < known.limit(); i++) {
+            count += Long.bitCount(known.get(i));
+        }
+        return (double) count / (columns * rows);
+    }
+
+    // Marks the cells an edge passes through as mixed, with one cell to spare around them against rounding
+    private void markEdge(long[] mixed, double lng1, double lat1, double lng2, double lat2) {
+        if (lat1 > lat2) {
+            markEdge(mixed, lng2, lat2, lng1, lat1);
+            return;
+        }
+        int firstRow = (int) ((lat1 - minLat) / cellSize);
+        int lastRow = (int) ((lat2 - minLat) / cellSize);
+        for (int row = firstRow; row <= lastRow; row++) {
+            // Part of the edge within the latitude band of this row
+            double bandLow = Math.max(lat1, minLat + row * cellSize);
+            double bandHigh = Math.min(lat2, minLat + (row + 1) * cellSize);
+            double lngLow = lngAt(lng1, lat1, lng2, lat2, bandLow);
+            double lngHigh = lngAt(lng1, lat1, lng2, lat2, bandHigh);
+            markBox(mixed, Math.min(lngLow, lngHigh), minLat + row * cellSize,
+                    Math.max(lngLow, lngHigh), minLat + row * cellSize);
+        }
+    }
+
+    // Gets the longitude of an edge at a latitude within its latitude range
+    private static double lngAt(double lng1, double lat1, double lng2, double lat2, double lat) {
+        if (lat2 == lat1) {
+            return lat == lat1 ? lng1 : lng2;
+        }
+        return lng1 + (lng2 - lng1) * (lat - lat1) / (lat2 - lat1);
+    }
+
+    // Marks the cells overlapping a box as mixed, widened by one cell on each side
+    private void markBox(long[] mixed, double lowLng, double lowLat, double highLng, double highLat) {
+        int firstColumn = Math.max(0, (int) ((lowLng - minLng) / cellSize) - 1);
+        int lastColumn = Math.min(columns - 1, (int) ((highLng - minLng) / cellSize) + 1);
+        int firstRow = Math.max(0, (int) ((lowLat - minLat) / cellSize) - 1);
+        int lastRow = Math.min(rows - 1, (int) ((highLat - minLat) / cellSize) + 1);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                set(mixed, row * columns + column);
+            }
+        }
+    }
+
+    // Gets the number of longs holding a number of bits
+    static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    private static boolean isSet(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    // Reads a bit with an absolute get, which leaves the buffer untouched so concurrent readers are safe
+    private static boolean isSet(LongBuffer bits, int index) {
+        return (bits.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    private static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+}
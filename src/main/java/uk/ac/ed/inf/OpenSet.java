@@ -0,0 +1,72 @@
+package uk.ac.ed.inf;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Open set of an A* search: the generated nodes waiting to be expanded, taken out cheapest total cost first.
+ * Nodes are indices into the {@link NodeArena} the open set was created for, and each records its own place
+ * in the open set in the arena, so it can be found, moved or removed without a search.
+ *
+ * @author B209981
+ */
+interface OpenSet {
+
+    /**
+     * Adds a node to the open set.
+     *
+     * @param node The node to add, it must not already be in an open set.
+     */
+    void add(int node);
+
+    /**
+     * Removes and returns the node with the lowest total cost.
+     *
+     * @return The node with the lowest total cost, or NodeArena.NONE if the open set is empty.
+     */
+    int poll();
+
+    /**
+     * Gets the node with the lowest total cost without removing it.
+     *
+     * @return The node with the lowest total cost, or NodeArena.NONE if the open set is empty.
+     */
+    int peek();
+
+    /**
+     * Restores the order after the total cost of a node in the open set has been lowered.
+     *
+     * @param node The node whose total cost has decreased.
+     */
+    void decreaseKey(int node);
+
+    /**
+     * Removes a node from the open set.
+     *
+     * @param node The node to remove, it must be in this open set.
+     */
+    void remove(int node);
+
+    /**
+     * Applies an update that may change the total cost to every node in the open set, then restores the order.
+     *
+     * @param update The update to apply to each node.
+     */
+    void updateAll(IntConsumer update);
+
+    /**
+     * Checks if a node is currently in this open set.
+     *
+     * @param node The node to check.
+     * @return true if the node is in the open set, false otherwise.
+     */
+    boolean contains(int node);
+
+    boolean isEmpty();
+
+    int size();
+
+    /**
+     * Removes every node from the open set.
+     */
+    void clear();
+}
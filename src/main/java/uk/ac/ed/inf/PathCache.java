@@ -0,0 +1,227 @@
+package uk.ac.ed.inf;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * File-backed cache of computed paths, so that paths survive between runs of the application.
+ * An entry is keyed by the start, the goal, a fingerprint of the geofence (central area and no-fly zones) it was
+ * computed for, the settings of the planner that found it and the version of the cache. When the geofence changes
+ * its fingerprint changes too, and when the planners change which paths they accept the version is increased, so
+ * old entries are never used.
+ *
+ * @author B209981
+ */
+public class PathCache {
+
+    // Version of the cached paths, increased whenever the planners change which moves a path may take
+    private static final int VERSION = 2;
+
+    // Directory holding the cache files
+    private static Path directory = Paths.get("resultfiles", "pathcache");
+    // Whether paths are read from and written to the cache
+    private static boolean enabled = true;
+
+    /**
+     * A cached path as stored in a cache file.
+     */
+    private static class CacheEntry {
+        int version;
+        String fingerprint;
+        String settings;
+        double[] start;
+        double[] goal;
+        // Longitude, latitude and angle of each node of the path
+        double[][] nodes;
+    }
+
+    /**
+     * Sets the directory the cache files are kept in.
+     *
+     * @param cacheDirectory Path of the cache directory, created when the first path is stored.
+     */
+    public static void setDirectory(String cacheDirectory) {
+        directory = Paths.get(cacheDirectory);
+    }
+
+    /**
+     * Turns the cache on or off.
+     *
+     * @param cacheEnabled true to read and write cached paths, false to always compute them.
+     */
+    public static void setEnabled(boolean cacheEnabled) {
+        enabled = cacheEnabled;
+    }
+
+    /**
+     * Computes a fingerprint of the geofence, covering the names and every vertex of the regions.
+     *
+     * @param noFlyZones Array of no-fly zones.
+     * @param centralArea The central area.
+     * @return Hexadecimal SHA-256 digest of the regions.
+     */
+    public static String fingerprint(NamedRegion[] noFlyZones, NamedRegion centralArea) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            addRegion(digest, centralArea);
+            for (NamedRegion noFlyZone : noFlyZones) {
+                addRegion(digest, noFlyZone);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Adds the name and the exact bits of every vertex of a region to a digest
+    private static void addRegion(MessageDigest digest, NamedRegion region) {
+        digest.update(region.name().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        for (LngLat vertex : region.vertices()) {
+            updateDouble(digest, vertex.lng());
+            updateDouble(digest, vertex.lat());
+        }
+        digest.update((byte) 0);
+    }
+
+    // Adds the bits of an int to a digest
+    private static void updateInt(MessageDigest digest, int value) {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            digest.update((byte) (value >>> shift));
+        }
+    }
+
+    // Adds the bits of a double to a digest
+    private static void updateDouble(MessageDigest digest, double value) {
+        long bits = Double.doubleToLongBits(value);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            digest.update((byte) (bits >>> shift));
+        }
+    }
+
+    /**
+     * Loads a cached path.
+     *
+     * @param start The start of the path.
+     * @param goal The goal of the path.
+     * @param fingerprint Fingerprint of the geofence the path must have been computed for.
+     * @param settings Settings the path must have been computed with, such as the planner and its weights.
+     * @return The cached path, or null if there is no valid entry for the key.
+     */
+    public static List<Node> load(LngLat start, LngLat goal, String fingerprint, String settings) {
+        if (!enabled) {
+            return null;
+        }
+
+        Path file = entryFile(start, goal, fingerprint, settings);
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try {
+            CacheEntry entry = new Gson().fromJson(Files.readString(file), CacheEntry.class);
+            if (entry == null || entry.nodes == null || entry.nodes.length == 0 || entry.version != VERSION
+                    || !fingerprint.equals(entry.fingerprint) || !settings.equals(entry.settings)
+                    || !Arrays.equals(entry.start, toArray(start)) || !Arrays.equals(entry.goal, toArray(goal))) {
+                return null;
+            }
+            return toPath(entry.nodes);
+        } catch (IOException | JsonParseException e) {
+            System.err.println("[Error]: Unable to read cached path " + file + " - " + e.getMessage() + ".");
+            return null;
+        }
+    }
+
+    /**
+     * Stores a path in the cache, replacing any entry with the same key.
+     *
+     * @param start The start of the path.
+     * @param goal The goal of the path.
+     * @param fingerprint Fingerprint of the geofence the path was computed for.
+     * @param settings Settings the path was computed with.
+     * @param path The path to store.
+     */
+    public static void store(LngLat start, LngLat goal, String fingerprint, String settings, List<Node> path) {
+        if (!enabled || path == null || path.isEmpty()) {
+            return;
+        }
+
+        CacheEntry entry = new CacheEntry();
+        entry.version = VERSION;
+        entry.fingerprint = fingerprint;
+        entry.settings = settings;
+        entry.start = toArray(start);
+        entry.goal = toArray(goal);
+        entry.nodes = new double[path.size()][];
+        for (int i = 0; i < path.size(); i++) {
+            Node node = path.get(i);
+            entry.nodes[i] = new double[]{node.coordinates.lng(), node.coordinates.lat(), node.angle};
+        }
+
+        Path file = entryFile(start, goal, fingerprint, settings);
+        try {
+            Files.createDirectories(directory);
+            // Write to a temporary file first so that a concurrent reader never sees a partial entry
+            Path temporary = Files.createTempFile(directory, "path", ".tmp");
+            Files.writeString(temporary, new GsonBuilder().create().toJson(entry));
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("[Error]: Unable to write cached path " + file + " - " + e.getMessage() + ".");
+        }
+    }
+
+    // Gets the file of the cache entry for a key
+    private static Path entryFile(LngLat start, LngLat goal, String fingerprint, String settings) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(settings.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            updateInt(digest, VERSION);
+            updateDouble(digest, start.lng());
+            updateDouble(digest, start.lat());
+            updateDouble(digest, goal.lng());
+            updateDouble(digest, goal.lat());
+            return directory.resolve(HexFormat.of().formatHex(digest.digest()) + ".json");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Converts a position to the array stored in a cache entry
+    private static double[] toArray(LngLat position) {
+        return new double[]{position.lng(), position.lat()};
+    }
+
+    // Rebuilds the nodes of a cached path, linking each node to the one before it
+    private static List<Node> toPath(double[][] nodes) {
+        List<Node> path = new ArrayList<>();
+        Node previous = null;
+        for (double[] values : nodes) {
+            Node node = new Node(new LngLat(values[0], values[1]));
+            node.angle = values[2];
+            node.parent = previous;
+            path.add(node);
+            previous = node;
+        }
+        return path;
+    }
+}
@@ -4,7 +4,6 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.mapbox.geojson.*;
 import uk.ac.ed.inf.ilp.data.LngLat;
-import uk.ac.ed.inf.ilp.data.NamedRegion;
 import uk.ac.ed.inf.ilp.data.Order;
 import uk.ac.ed.inf.ilp.data.Restaurant;
 
@@ -12,6 +11,9 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import static uk.ac.ed.inf.LngLatHandler.HOVER;
 
@@ -24,7 +26,140 @@ public class PathFinding {
 
     private static final LngLat appletonTower = new LngLat(-3.186874, 55.944494);
 
-    private static final ArrayList<Restaurant> visitedRestaurants = new ArrayList<>();
+    // Whether the paths to all restaurants are found with one search backwards from Appleton Tower
+    private static boolean singleReverseSearch = false;
+
+    // Maximum number of restaurants planned at the same time
+    private static int parallelism = Runtime.getRuntime().availableProcessors();
+
+    // Heuristic weights and time budget given to every search
+    private static double[] weightSchedule = {2.0};
+    private static long timeBudgetMillis = 30_000;
+    // Whether searches queue their nodes in a bucket queue rather than a binary heap
+    private static boolean bucketQueue = false;
+    // Whether searches raise their heuristic to the landmark bound of the flight map
+    private static boolean landmarkHeuristic = false;
+    // Whether a restaurant hidden from Appleton Tower by a no-fly zone is searched from both ends
+    private static boolean bidirectionalSearch = false;
+    // Whether found paths are straightened before they are flown
+    private static boolean pathSmoothing = true;
+    // Planner of the path from each restaurant, and the name identifying its paths in the path cache
+    private static PathPlanner planner = AStar::findShortestPath;
+    private static String plannerName = "astar";
+
+    /**
+     * Chooses between one search per restaurant and a single search backwards from Appleton Tower that finds
+     * the paths to all the restaurants of the day at once.
+     *
+     * @param enabled true to use the single backwards search, false to search from each restaurant.
+     */
+    public static void setSingleReverseSearch(boolean enabled) {
+        singleReverseSearch = enabled;
+    }
+
+    /**
+     * Sets the heuristic weights of the searches, see {@link SearchContext#setWeightSchedule}.
+     * A decreasing schedule such as 3, 2, 1.5, 1 finds a path fast and keeps shortening it until the time budget runs out.
+     *
+     * @param weights The weights in the order they are used, each at least 1 and none greater than the one before.
+     * @return true if the schedule was accepted, false otherwise.
+     */
+    public static boolean setWeightSchedule(double... weights) {
+        if (!new SearchContext().setWeightSchedule(weights)) {
+            return false;
+        }
+        weightSchedule = weights.clone();
+        return true;
+    }
+
+    /**
+     * Sets the time each search may take, after which it keeps the best path found so far.
+     *
+     * @param budgetMillis The time budget in milliseconds, greater than 0.
+     * @return true if the budget was accepted, false otherwise.
+     */
+    public static boolean setTimeBudget(long budgetMillis) {
+        if (!new SearchContext().setTimeBudget(budgetMillis)) {
+            return false;
+        }
+        timeBudgetMillis = budgetMillis;
+        return true;
+    }
+
+    /**
+     * Chooses the open set of the searches, see {@link SearchContext#setBucketQueue}.
+     *
+     * @param enabled true to use a bucket queue, false to use a binary heap.
+     */
+    public static void setBucketQueue(boolean enabled) {
+        bucketQueue = enabled;
+    }
+
+    /**
+     * Chooses the heuristic of the searches, see {@link SearchContext#setLandmarks}.
+     *
+     * @param enabled true to use the landmark heuristic, false to use the straight line distance only.
+     */
+    public static void setLandmarkHeuristic(boolean enabled) {
+        landmarkHeuristic = enabled;
+    }
+
+    /**
+     * Chooses the planner of the path from each restaurant, such as {@link AStar#findShortestPath} (the default),
+     * {@link VisibilityPlanner#findShortestPath} or {@link HierarchicalPlanner#findShortestPath}.
+     * Cached paths are only reused by a planner of the same name.
+     *
+     * @param name Name of the planner, such as "astar", "visibility" or "hierarchical".
+     * @param pathPlanner The planner to use.
+     * @return true if the planner was accepted, false if either is missing.
+     */
+    public static boolean setPlanner(String name, PathPlanner pathPlanner) {
+        if (name == null || name.isBlank() || pathPlanner == null) {
+            System.err.println("[Error]: A path planner and its name must be given.");
+            return false;
+        }
+        planner = pathPlanner;
+        plannerName = name;
+        return true;
+    }
+
+    /**
+     * Allows the searches from each restaurant to grow from both ends and meet in the middle, see
+     * {@link AStar#findBidirectionalPath}. It is only used for a restaurant whose straight line to Appleton Tower
+     * crosses a no-fly zone, where a single frontier spreads around the zone; otherwise a forward search flies
+     * almost straight to the goal and a second frontier only adds work.
+     *
+     * @param enabled true to search restaurants behind a no-fly zone from both ends, false to always search forwards.
+     */
+    public static void setBidirectionalSearch(boolean enabled) {
+        bidirectionalSearch = enabled;
+    }
+
+    /**
+     * Chooses whether each path found is straightened by {@link PathSmoother} before it is cached and turned into
+     * flight moves. Smoothing never adds moves to a path.
+     *
+     * @param enabled true to smooth the paths, false to fly them as the planner found them.
+     */
+    public static void setPathSmoothing(boolean enabled) {
+        pathSmoothing = enabled;
+    }
+
+    /**
+     * Sets how many restaurants may be planned at the same time when searching from each restaurant.
+     * A level of 1 plans the restaurants one after another on the calling thread.
+     *
+     * @param level The maximum number of concurrent searches, at least 1.
+     * @return true if the level was accepted, false otherwise.
+     */
+    public static boolean setParallelism(int level) {
+        if (level < 1) {
+            System.err.println("[Error]: The parallelism level must be at least 1.");
+            return false;
+        }
+        parallelism = level;
+        return true;
+    }
 
     /**
      * Creates a list of flight moves for each order based on the provided paths.
@@ -179,13 +314,13 @@ public class PathFinding {
      *
      * @param orders   The list of orders to process.
      * @param visits   The list of restaurants to visit.
-     * @param url  The base URL for relevant data.
+     * @param flightMap The central area and no-fly zones, fetched once for the run.
      * @param date     The date for file naming.
      * @return         Orders without valid flight paths.
      */
-    public static List<Order> processOrders(List<Order> orders, List<Restaurant> visits, String url, String date) {
+    public static List<Order> processOrders(List<Order> orders, List<Restaurant> visits, FlightMap flightMap, String date) {
         // Build flight paths to restaurants
-        List<List<Node>> path = buildPathsForRestaurants(visits, url);
+        List<List<Node>> path = buildPathsForRestaurants(visits, flightMap);
 
         // Find orders without valid paths
         List<Order> ordersValidNoPath = filterOrdersWithoutValidPaths(path, orders);
@@ -223,55 +358,198 @@ public class PathFinding {
 
     /**
      * Iterates through a list of restaurants to visit and builds paths to each restaurant
-     * based on the specified base URL. Returns a list of paths to all the restaurants.
+     * within the given flight map. Returns a list of paths to all the restaurants.
      *
      * @param restaurantsToVisit The list of restaurants to visit.
-     * @param url            The base URL used to build paths.
+     * @param flightMap      The central area and no-fly zones used to build paths.
      * @return                   A list of paths to all the restaurants.
      */
-    public static List<List<Node>> buildPathsForRestaurants(List<Restaurant> restaurantsToVisit, String url) {
-        List<List<Node>> pathsToRestaurants = new ArrayList<>();
+    public static List<List<Node>> buildPathsForRestaurants(List<Restaurant> restaurantsToVisit, FlightMap flightMap) {
+        if (singleReverseSearch) {
+            return buildPathsFromAppletonTower(restaurantsToVisit, flightMap);
+        }
 
+        // Plan each restaurant once, orders from the same restaurant share its path
+        List<Restaurant> distinctRestaurants = new ArrayList<>(new LinkedHashSet<>(restaurantsToVisit));
+        List<List<Node>> distinctPaths = planRestaurants(distinctRestaurants, flightMap);
+
+        List<List<Node>> pathsToRestaurants = new ArrayList<>();
         for (Restaurant restaurant : restaurantsToVisit) {
-            List<Node> pathToAdd = computePathToRestaurant(restaurant, pathsToRestaurants, url);
-            pathsToRestaurants.add(pathToAdd);
+            pathsToRestaurants.add(distinctPaths.get(distinctRestaurants.indexOf(restaurant)));
         }
 
         return pathsToRestaurants;
     }
 
+    // Plans the path to each restaurant, running up to the parallelism level of searches at the same time
+    private static List<List<Node>> planRestaurants(List<Restaurant> restaurants, FlightMap flightMap) {
+        List<List<Node>> paths = new ArrayList<>();
+
+        if (parallelism == 1 || restaurants.size() <= 1) {
+            for (Restaurant restaurant : restaurants) {
+                paths.add(computePathToRestaurant(restaurant, flightMap));
+            }
+            return paths;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, restaurants.size()));
+        try {
+            List<Future<List<Node>>> futures = new ArrayList<>();
+            for (Restaurant restaurant : restaurants) {
+                futures.add(pool.submit(() -> computePathToRestaurant(restaurant, flightMap)));
+            }
+
+            // Collect the results in submission order so each path stays at the index of its restaurant
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    paths.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    System.err.println("[Error]: Path search to " + restaurants.get(i).name() + " failed - "
+                            + e.getCause().getMessage() + ".");
+                    paths.add(null);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    System.err.println("[Error]: Interrupted while planning the path to " + restaurants.get(i).name() + ".");
+                    paths.add(null);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return paths;
+    }
+
+    // Creates the state of one search with the configured weight schedule, time budget, open set and heuristic
+    static SearchContext newSearchContext() {
+        SearchContext context = new SearchContext();
+        context.setWeightSchedule(weightSchedule);
+        context.setTimeBudget(timeBudgetMillis);
+        context.setBucketQueue(bucketQueue);
+        context.setLandmarks(landmarkHeuristic);
+        return context;
+    }
+
+    // Describes the settings that shape the paths found with a context, so that the path cache keeps the paths of
+    // other settings apart. The open set is included as the bucket queue breaks ties differently from the heap. The
+    // time budget is left out because a path found when a search runs out of time is never cached
+    static String cacheSettings(SearchContext context, String search) {
+        return "search=" + search + ";directions=" + context.directions + ";weights=" + Arrays.toString(weightSchedule)
+                + ";openSet=" + (bucketQueue ? "buckets" : "heap") + ";landmarks=" + landmarkHeuristic
+                + ";smoothing=" + pathSmoothing;
+    }
+
     /**
-     * Adds a path to a restaurant to the list of paths, considering the restaurant's location
-     * and using the A* algorithm to find the shortest path to the restaurant.
+     * Finds the path from a restaurant to Appleton Tower, using the A* algorithm unless the path
+     * is already in the path cache. Each call uses its own search state, so calls may run concurrently.
      *
      * @param restaurant  The restaurant to visit.
-     * @param pathList    The list of paths to restaurants.
-     * @param url     The base URL for relevant data.
+     * @param flightMap  The central area and no-fly zones to respect.
      * @return            The path to the restaurant, or null if no path is found.
      */
-    public static List<Node> computePathToRestaurant(Restaurant restaurant, List<List<Node>> pathList, String url) {
-        if (visitedRestaurants.contains(restaurant)) {
-            int index = visitedRestaurants.indexOf(restaurant);
-            return pathList.get(index); // Return the previously computed path
-        } else {
-            LngLat restaurantLocation = restaurant.location();
-            NamedRegion[] noFlyZones = new Client(url).noFlyZones();
-            NamedRegion centralArea = new Client(url).centralArea();
-
-            Node startNode = new Node(restaurantLocation);
-            Node goalNode = new Node(appletonTower);
-
-            AStar.openSet = new PriorityQueue<>(Comparator.comparingDouble(node -> node.total));
-            AStar.closedSet = new HashSet<>();
-
-            if (!AStar.findShortestPath(noFlyZones, startNode, goalNode, centralArea)) {
-                System.err.println("[Error]: No path found to: " + restaurant.name() + ".");
-                visitedRestaurants.add(restaurant);
-                return null;
+    public static List<Node> computePathToRestaurant(Restaurant restaurant, FlightMap flightMap) {
+        LngLat restaurantLocation = restaurant.location();
+        String fingerprint = flightMap.fingerprint();
+        SearchContext context = newSearchContext();
+        boolean bidirectional = bidirectionalSearch && isLineBlocked(restaurantLocation, appletonTower, flightMap);
+        String settings = cacheSettings(context, bidirectional ? "bidirectional" : plannerName);
+
+        // Reuse the path from a previous run if neither the geofence nor the settings have changed since
+        List<Node> cachedPath = PathCache.load(restaurantLocation, appletonTower, fingerprint, settings);
+        if (cachedPath != null) {
+            return cachedPath;
+        }
+
+        Node startNode = new Node(restaurantLocation);
+        Node goalNode = new Node(appletonTower);
+
+        boolean found = bidirectional
+                ? AStar.findBidirectionalPath(context, flightMap, startNode, goalNode)
+                : planner.findShortestPath(context, flightMap, startNode, goalNode);
+
+        if (!found) {
+            System.err.println("[Error]: No path found to: " + restaurant.name() + ".");
+            return null;
+        }
+
+        List<Node> path = smoothPath(context, flightMap, context.getPath());
+        // A path found when the time ran out may be improved on by a later run with more time
+        if (!context.ranOutOfTime()) {
+            PathCache.store(restaurantLocation, appletonTower, fingerprint, settings, path);
+        }
+        return path;
+    }
+
+    // Straightens a path to Appleton Tower if path smoothing is on
+    private static List<Node> smoothPath(SearchContext context, FlightMap flightMap, List<Node> path) {
+        return pathSmoothing ? PathSmoother.smooth(context, flightMap, path, appletonTower) : path;
+    }
+
+    /**
+     * Checks if the straight line between two positions passes through a no-fly zone, sampled at the lattice resolution.
+     *
+     * @param from The first end of the line.
+     * @param to The other end of the line.
+     * @param flightMap The no-fly zones to check.
+     * @return true if a point of the line is in a no-fly zone, false otherwise.
+     */
+    static boolean isLineBlocked(LngLat from, LngLat to, FlightMap flightMap) {
+        double length = Math.hypot(to.lng() - from.lng(), to.lat() - from.lat());
+        int samples = (int) Math.ceil(length / Lattice.RESOLUTION);
+        for (int i = 0; i <= samples; i++) {
+            double t = samples == 0 ? 0 : (double) i / samples;
+            if (flightMap.isInNoFlyZone(from.lng() + t * (to.lng() - from.lng()), from.lat() + t * (to.lat() - from.lat()))) {
+                return true;
             }
+        }
+        return false;
+    }
 
-            visitedRestaurants.add(restaurant);
-            return AStar.path;
+    /**
+     * Builds the paths to every restaurant to visit with a single search backwards from Appleton Tower,
+     * instead of one search per restaurant. Each path starts close to its restaurant and ends at Appleton Tower.
+     *
+     * @param restaurantsToVisit The list of restaurants to visit, one per order.
+     * @param flightMap      The central area and no-fly zones to respect.
+     * @return                   A list of paths to all the restaurants, with null for restaurants without a path.
+     */
+    static List<List<Node>> buildPathsFromAppletonTower(List<Restaurant> restaurantsToVisit, FlightMap flightMap) {
+        List<Restaurant> distinctRestaurants = new ArrayList<>(new LinkedHashSet<>(restaurantsToVisit));
+        String fingerprint = flightMap.fingerprint();
+        SearchContext context = newSearchContext();
+        String settings = cacheSettings(context, "reverse");
+
+        // Take what the cache has and search only for the remaining restaurants
+        List<List<Node>> paths = new ArrayList<>();
+        List<Restaurant> uncachedRestaurants = new ArrayList<>();
+        List<LngLat> uncachedLocations = new ArrayList<>();
+        for (Restaurant restaurant : distinctRestaurants) {
+            List<Node> cachedPath = PathCache.load(restaurant.location(), appletonTower, fingerprint, settings);
+            paths.add(cachedPath);
+            if (cachedPath == null) {
+                uncachedRestaurants.add(restaurant);
+                uncachedLocations.add(restaurant.location());
+            }
+        }
+
+        if (!uncachedRestaurants.isEmpty()) {
+            List<List<Node>> foundPaths = AStar.findPathsToGoal(context, flightMap, uncachedLocations, new Node(appletonTower));
+            for (int i = 0; i < uncachedRestaurants.size(); i++) {
+                Restaurant restaurant = uncachedRestaurants.get(i);
+                List<Node> path = smoothPath(context, flightMap, foundPaths.get(i));
+                if (path == null) {
+                    System.err.println("[Error]: No path found to: " + restaurant.name() + ".");
+                } else if (!context.ranOutOfTime()) {
+                    PathCache.store(restaurant.location(), appletonTower, fingerprint, settings, path);
+                }
+                paths.set(distinctRestaurants.indexOf(restaurant), path);
+            }
         }
+
+        // Orders from the same restaurant share its path
+        List<List<Node>> pathsToRestaurants = new ArrayList<>();
+        for (Restaurant restaurant : restaurantsToVisit) {
+            pathsToRestaurants.add(paths.get(distinctRestaurants.indexOf(restaurant)));
+        }
+        return pathsToRestaurants;
     }
 }
\ No newline at end of file
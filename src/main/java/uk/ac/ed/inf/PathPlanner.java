@@ -0,0 +1,25 @@
+package uk.ac.ed.inf;
+
+/**
+ * Plans the flight path of the drone between two positions, moving only in the compass directions.
+ * {@link AStar#findShortestPath}, {@link VisibilityPlanner#findShortestPath} and
+ * {@link HierarchicalPlanner#findShortestPath} all fit this interface, so the planner used for the restaurants
+ * can be chosen in {@link PathFinding#setPlanner}.
+ *
+ * @author B209981
+ */
+@FunctionalInterface
+public interface PathPlanner {
+
+    /**
+     * Finds a path from the start that ends within DRONE_IS_CLOSE_DISTANCE of the goal, avoiding no-fly zones
+     * and never leaving the central area once inside it.
+     *
+     * @param context Search context holding the settings of the search and, once found, the path
+     * @param flightMap Central area and no-fly zones to respect
+     * @param start Start node
+     * @param goal Goal node
+     * @return true if a path is found, false otherwise
+     */
+    boolean findShortestPath(SearchContext context, FlightMap flightMap, Node start, Node goal);
+}
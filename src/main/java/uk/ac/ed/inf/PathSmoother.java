@@ -0,0 +1,173 @@
+package uk.ac.ed.inf;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Straightens the zig-zags of a path found on the move lattice. The path is first pulled taut: from each kept node
+ * it jumps to the furthest later node that can be reached in a straight line, so only the nodes where the path has to
+ * bend around a zone or the central area remain. Each straight line is then flown again with the fewest moves that
+ * reach its end, using only the two compass directions either side of the line: all the moves of one direction
+ * followed by all of the other where that stays clear of the zones, or spread evenly along the line where it does not.
+ *
+ * @author B209981
+ */
+public class PathSmoother {
+
+    // Extra moves tried beyond the straight line length before a line is given up
+    private static final int EXTRA_MOVES = 2;
+
+    /**
+     * Smooths a path. The smoothed path is kept if it needs fewer moves than the original, or as many moves with
+     * fewer changes of heading; otherwise the original path is returned.
+     *
+     * @param context Search context holding the directions the drone may move in.
+     * @param flightMap Central area and no-fly zones to respect.
+     * @param path The path to smooth, from its start to close to the goal.
+     * @param goal The goal the path must end close to.
+     * @return The smoothed path, or the original path if smoothing does not improve it.
+     */
+    public static List<Node> smooth(SearchContext context, FlightMap flightMap, List<Node> path, LngLat goal) {
+        if (path == null || path.size() < 3) {
+            return path;
+        }
+
+        List<LngLat> corners = pullTaut(flightMap, path);
+        corners.set(corners.size() - 1, goal);
+        List<Node> smoothed = new ArrayList<>();
+        Node current = new Node(path.get(0).coordinates);
+        smoothed.add(current);
+        for (int c = 1; c < corners.size(); c++) {
+            current = flyLine(context, flightMap, current, corners.get(c), smoothed);
+            if (current == null || smoothed.size() > path.size()) {
+                return path;
+            }
+        }
+
+        if (smoothed.size() < path.size() || countTurns(smoothed) < countTurns(path)) {
+            return smoothed;
+        }
+        return path;
+    }
+
+    /**
+     * Counts the changes of heading along a path.
+     *
+     * @param path The path.
+     * @return The number of moves whose direction differs from the move before.
+     */
+    static int countTurns(List<Node> path) {
+        int turns = 0;
+        for (int i = 2; i < path.size(); i++) {
+            if (path.get(i).angle != path.get(i - 1).angle) {
+                turns++;
+            }
+        }
+        return turns;
+    }
+
+    // Gets the nodes of a path the straight lines between them must bend at, starting with the start and ending
+    // with the last node of the path
+    private static List<LngLat> pullTaut(FlightMap flightMap, List<Node> path) {
+        List<LngLat> corners = new ArrayList<>();
+        LngLat anchor = path.get(0).coordinates;
+        corners.add(anchor);
+        for (int i = 2; i < path.size(); i++) {
+            LngLat candidate = path.get(i).coordinates;
+            if (!VisibilityPlanner.isVisible(anchor.lng(), anchor.lat(), candidate.lng(), candidate.lat(), flightMap)) {
+                // The line to this node is blocked, so the path bends at the node before it
+                anchor = path.get(i - 1).coordinates;
+                corners.add(anchor);
+            }
+        }
+        corners.add(path.get(path.size() - 1).coordinates);
+        return corners;
+    }
+
+    // Flies from a node to close to a target with the fewest moves in the two directions either side of the line
+    // between them, adding the moves to the path. Returns the last node, or null if no order of the moves is valid.
+    private static Node flyLine(SearchContext context, FlightMap flightMap, Node from, LngLat target, List<Node> path) {
+        double dLng = target.lng() - from.coordinates.lng();
+        double dLat = target.lat() - from.coordinates.lat();
+        double distance = Math.hypot(dLng, dLat);
+        if (distance < SystemConstants.DRONE_IS_CLOSE_DISTANCE) {
+            return from;
+        }
+
+        // The allowed directions either side of the bearing of the line
+        int step = LngLatHandler.COMPASS_DIRECTIONS / context.directions;
+        double bearing = (Math.toDegrees(Math.atan2(dLat, dLng)) + 360) % 360;
+        int first = ((int) (bearing / (LngLatHandler.ANGLE_STEP * step)) * step) % LngLatHandler.COMPASS_DIRECTIONS;
+        int second = (first + step) % LngLatHandler.COMPASS_DIRECTIONS;
+
+        // Fewest moves, and how many of them go the first way, that end close to the target
+        int moves = -1;
+        int firstMoves = 0;
+        int fewest = (int) Math.floor(distance / SystemConstants.DRONE_MOVE_DISTANCE);
+        for (int n = Math.max(1, fewest); n <= fewest + EXTRA_MOVES && moves < 0; n++) {
+            double nearest = SystemConstants.DRONE_IS_CLOSE_DISTANCE;
+            for (int k = 0; k <= n; k++) {
+                double endLng = k * LngLatHandler.MOVE_LNG[first] + (n - k) * LngLatHandler.MOVE_LNG[second];
+                double endLat = k * LngLatHandler.MOVE_LAT[first] + (n - k) * LngLatHandler.MOVE_LAT[second];
+                double error = Math.hypot(endLng - dLng, endLat - dLat);
+                if (error < nearest) {
+                    nearest = error;
+                    moves = n;
+                    firstMoves = k;
+                }
+            }
+        }
+        if (moves < 0) {
+            return null;
+        }
+
+        // One turn, in either order, if that stays clear, otherwise the moves spread evenly along the line
+        int[] directions = new int[moves];
+        for (int order = 0; order < 3; order++) {
+            for (int i = 0; i < moves; i++) {
+                if (order == 0) {
+                    directions[i] = i < firstMoves ? first : second;
+                } else if (order == 1) {
+                    directions[i] = i < moves - firstMoves ? second : first;
+                } else {
+                    // Take the first direction whenever its share of the moves so far goes up
+                    long before = (long) firstMoves * i / moves;
+                    long after = (long) firstMoves * (i + 1) / moves;
+                    directions[i] = after > before ? first : second;
+                }
+            }
+            Node last = addMoves(flightMap, from, directions, path);
+            if (last != null) {
+                return last;
+            }
+        }
+        return null;
+    }
+
+    // Adds the nodes reached by a sequence of moves to the path if every move is valid. Returns the last node added,
+    // or null, leaving the path unchanged, if a move is not valid.
+    private static Node addMoves(FlightMap flightMap, Node from, int[] directions, List<Node> path) {
+        double[] next = new double[2];
+        List<Node> added = new ArrayList<>();
+        Node current = from;
+        for (int direction : directions) {
+            double lng = current.coordinates.lng();
+            double lat = current.coordinates.lat();
+            LngLatHandler.nextPosition(lng, lat, direction, next);
+            if (!AStar.isValidMove(next[0], next[1], flightMap, lng, lat)) {
+                return null;
+            }
+            Node node = new Node(new LngLat(next[0], next[1]));
+            node.parent = current;
+            node.cost = current.cost + SystemConstants.DRONE_MOVE_DISTANCE;
+            node.angle = direction * LngLatHandler.ANGLE_STEP;
+            added.add(node);
+            current = node;
+        }
+        path.addAll(added);
+        return current;
+    }
+}
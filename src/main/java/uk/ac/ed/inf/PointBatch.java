@@ -0,0 +1,100 @@
+package uk.ac.ed.inf;
+
+import java.util.Arrays;
+
+/**
+ * Points tested against the regions of a flight map in one call, such as the neighbours of a node in a search.
+ * It holds the positions, the answer for each point and the scratch arrays of the test, so a search reuses one
+ * batch for every node it expands without allocating.
+ *
+ * @author B209981
+ */
+final class PointBatch {
+
+    // Most points a batch holds, one per compass direction
+    static final int CAPACITY = LngLatHandler.COMPASS_DIRECTIONS;
+
+    final double[] lng = new double[CAPACITY];
+    final double[] lat = new double[CAPACITY];
+    int count;
+
+    // Whether each point is inside a no-fly zone and inside the central area, filled by the flight map
+    final boolean[] noFly = new boolean[CAPACITY];
+    final boolean[] central = new boolean[CAPACITY];
+
+    // Points the rasters could not answer, passed on to the polygon test together, and their place in the batch
+    final double[] pendingLng = new double[CAPACITY];
+    final double[] pendingLat = new double[CAPACITY];
+    final int[] pendingIndex = new int[CAPACITY];
+    final boolean[] pendingInside = new boolean[CAPACITY];
+
+    // Bounding box of the points, widened as they are added
+    double west = Double.MAX_VALUE;
+    double south = Double.MAX_VALUE;
+    double east = -Double.MAX_VALUE;
+    double north = -Double.MAX_VALUE;
+
+    // Edges of the no-fly zones near the moves to the points, as the ends of each edge, grown as needed
+    double[] edgeLng1 = new double[CAPACITY];
+    double[] edgeLat1 = new double[CAPACITY];
+    double[] edgeLng2 = new double[CAPACITY];
+    double[] edgeLat2 = new double[CAPACITY];
+    int edgeCount;
+
+    /**
+     * Empties the batch.
+     */
+    void clear() {
+        count = 0;
+        west = south = Double.MAX_VALUE;
+        east = north = -Double.MAX_VALUE;
+    }
+
+    /**
+     * Adds a point to the batch.
+     *
+     * @param lng The longitude of the point.
+     * @param lat The latitude of the point.
+     */
+    void add(double lng, double lat) {
+        this.lng[count] = lng;
+        this.lat[count] = lat;
+        count++;
+        // Plain comparisons, the positions are never NaN
+        if (lng < west) {
+            west = lng;
+        }
+        if (lng > east) {
+            east = lng;
+        }
+        if (lat < south) {
+            south = lat;
+        }
+        if (lat > north) {
+            north = lat;
+        }
+    }
+
+    /**
+     * Adds an edge near the moves to the points, growing the edge arrays when they are full.
+     *
+     * @param lng1 The longitude of one end of the edge.
+     * @param lat1 The latitude of one end of the edge.
+     * @param lng2 The longitude of the other end of the edge.
+     * @param lat2 The latitude of the other end of the edge.
+     */
+    void addEdge(double lng1, double lat1, double lng2, double lat2) {
+        if (edgeCount == edgeLng1.length) {
+            int capacity = 2 * edgeCount;
+            edgeLng1 = Arrays.copyOf(edgeLng1, capacity);
+            edgeLat1 = Arrays.copyOf(edgeLat1, capacity);
+            edgeLng2 = Arrays.copyOf(edgeLng2, capacity);
+            edgeLat2 = Arrays.copyOf(edgeLat2, capacity);
+        }
+        edgeLng1[edgeCount] = lng1;
+        edgeLat1[edgeCount] = lat1;
+        edgeLng2[edgeCount] = lng2;
+        edgeLat2[edgeCount] = lat2;
+        edgeCount++;
+    }
+}
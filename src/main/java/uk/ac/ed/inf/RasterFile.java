@@ -0,0 +1,225 @@
+package uk.ac.ed.inf;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File holding the occupancy rasters and landmark distances of a geofence, so a restart can map them instead of
+ * building them again. The file starts with a version and the fingerprint of the geofence it was built for, and is
+ * only used when both match; otherwise the data is rebuilt and the file is replaced. The landmark distances are only
+ * present once a run has used them. The bits and distances are read straight from the mapped file.
+ *
+ * @author B209981
+ */
+public class RasterFile {
+
+    // Marks a raster file, "PDRF" in ASCII
+    private static final int MAGIC = 0x50445246;
+    // Version of the file layout, increased whenever the layout or the rasterization changes
+    private static final int VERSION = 3;
+    // Length of a fingerprint, a hexadecimal SHA-256 digest
+    private static final int FINGERPRINT_LENGTH = 64;
+
+    // Path of the raster file
+    private static Path file = Paths.get("resultfiles", "geofence.raster");
+    // Whether rasters are read from and written to the file
+    private static boolean enabled = true;
+
+    /**
+     * Sets the path of the raster file.
+     *
+     * @param rasterFile Path of the file, its directory is created when the rasters are first stored.
+     */
+    public static void setPath(String rasterFile) {
+        file = Paths.get(rasterFile);
+    }
+
+    /**
+     * Turns the raster file on or off.
+     *
+     * @param fileEnabled true to read and write the file, false to always build the rasters.
+     */
+    public static void setEnabled(boolean fileEnabled) {
+        enabled = fileEnabled;
+    }
+
+    /**
+     * Data precomputed for a geofence and kept in the file.
+     *
+     * @param central The central area raster.
+     * @param noFly The no-fly zone raster.
+     * @param landmarks The landmark distances, null if they have not been built.
+     */
+    record Contents(OccupancyRaster central, OccupancyRaster noFly, LandmarkTable landmarks) {
+    }
+
+    /**
+     * Loads the rasters and landmark distances of a geofence from the file.
+     *
+     * @param fingerprint Fingerprint of the geofence the data must have been built for.
+     * @param centralIndex Exact index of the central area, used by the central area raster.
+     * @param noFlyIndex Exact index of the no-fly zones, used by the no-fly zone raster.
+     * @return The contents of the file, or null if the file is missing or was built for another geofence or version.
+     */
+    static Contents load(String fingerprint, RegionIndex centralIndex, RegionIndex noFlyIndex) {
+        if (!enabled || !Files.exists(file)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getDouble() != Lattice.RESOLUTION) {
+                return null;
+            }
+            byte[] stored = new byte[FINGERPRINT_LENGTH];
+            buffer.get(stored);
+            if (!fingerprint.equals(new String(stored, StandardCharsets.US_ASCII))) {
+                return null;
+            }
+            OccupancyRaster central = readRaster(buffer, centralIndex);
+            OccupancyRaster noFly = central == null ? null : readRaster(buffer, noFlyIndex);
+            if (noFly == null) {
+                return null;
+            }
+            boolean hasLandmarks = buffer.getLong() != 0;
+            LandmarkTable landmarks = hasLandmarks ? readLandmarks(buffer) : null;
+            if (hasLandmarks && landmarks == null) {
+                return null;
+            }
+            System.out.println("[Info]: Geofence raster loaded from " + file + ".");
+            return new Contents(central, noFly, landmarks);
+        } catch (IOException | BufferUnderflowException e) {
+            System.err.println("[Error]: Unable to read geofence raster " + file + " - " + e.getMessage() + ".");
+            return null;
+        }
+    }
+
+    /**
+     * Stores the data of a geofence in the file, replacing the data of any other geofence.
+     *
+     * @param fingerprint Fingerprint of the geofence the data was built for.
+     * @param contents The rasters and landmark distances of the geofence.
+     */
+    static void store(String fingerprint, Contents contents) {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            // Write to a temporary file first so that a concurrent reader never maps a partial file
+            Path temporary = Files.createTempFile(directory, "geofence", ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeDouble(Lattice.RESOLUTION);
+                output.write(fingerprint.getBytes(StandardCharsets.US_ASCII));
+                writeRaster(output, contents.central());
+                writeRaster(output, contents.noFly());
+                // A whole word flags the landmark distances, keeping them aligned in the file
+                output.writeLong(contents.landmarks() == null ? 0 : 1);
+                if (contents.landmarks() != null) {
+                    writeLandmarks(output, contents.landmarks());
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("[Error]: Unable to write geofence raster " + file + " - " + e.getMessage() + ".");
+        }
+    }
+
+    // Reads one raster, its bits left in the mapped buffer; null if its size does not fit the file
+    private static OccupancyRaster readRaster(ByteBuffer buffer, RegionIndex index) {
+        double minLng = buffer.getDouble();
+        double minLat = buffer.getDouble();
+        double cellSize = buffer.getDouble();
+        int columns = buffer.getInt();
+        int rows = buffer.getInt();
+        if (columns < 0 || rows < 0 || (long) columns * rows > Integer.MAX_VALUE || !(cellSize > 0)) {
+            return null;
+        }
+        int words = OccupancyRaster.words(columns * rows);
+        if (buffer.remaining() < 2L * words * Long.BYTES) {
+            return null;
+        }
+        LongBuffer known = buffer.slice(buffer.position(), words * Long.BYTES).asLongBuffer();
+        buffer.position(buffer.position() + words * Long.BYTES);
+        LongBuffer inside = buffer.slice(buffer.position(), words * Long.BYTES).asLongBuffer();
+        buffer.position(buffer.position() + words * Long.BYTES);
+        return new OccupancyRaster(index, minLng, minLat, cellSize, columns, rows, known, inside);
+    }
+
+    // Reads the landmark distances, left in the mapped buffer; null if their size does not fit the file
+    private static LandmarkTable readLandmarks(ByteBuffer buffer) {
+        double minLng = buffer.getDouble();
+        double minLat = buffer.getDouble();
+        double cellSize = buffer.getDouble();
+        int columns = buffer.getInt();
+        int rows = buffer.getInt();
+        int landmarks = buffer.getInt();
+        buffer.getInt();
+        long values = (long) columns * rows * landmarks;
+        if (columns < 0 || rows < 0 || landmarks < 0 || values > Integer.MAX_VALUE / Float.BYTES || !(cellSize > 0)) {
+            return null;
+        }
+        int bytes = paddedLength((int) values * Float.BYTES);
+        if (buffer.remaining() < bytes) {
+            return null;
+        }
+        FloatBuffer distances = buffer.slice(buffer.position(), (int) values * Float.BYTES).asFloatBuffer();
+        buffer.position(buffer.position() + bytes);
+        return new LandmarkTable(minLng, minLat, cellSize, columns, rows, landmarks, distances);
+    }
+
+    // Writes the landmark distances, padded to a multiple of 8 bytes
+    private static void writeLandmarks(DataOutputStream output, LandmarkTable landmarks) throws IOException {
+        output.writeDouble(landmarks.minLng);
+        output.writeDouble(landmarks.minLat);
+        output.writeDouble(landmarks.cellSize);
+        output.writeInt(landmarks.columns);
+        output.writeInt(landmarks.rows);
+        output.writeInt(landmarks.landmarks);
+        output.writeInt(0);
+        int values = landmarks.distances.limit();
+        for (int i = 0; i < values; i++) {
+            output.writeFloat(landmarks.distances.get(i));
+        }
+        for (int i = values * Float.BYTES; i < paddedLength(values * Float.BYTES); i++) {
+            output.writeByte(0);
+        }
+    }
+
+    // Rounds a length in bytes up to a multiple of 8
+    private static int paddedLength(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    // Writes one raster, every field a multiple of 8 bytes long so the bits stay aligned in the file
+    private static void writeRaster(DataOutputStream output, OccupancyRaster raster) throws IOException {
+        output.writeDouble(raster.minLng);
+        output.writeDouble(raster.minLat);
+        output.writeDouble(raster.cellSize);
+        output.writeInt(raster.columns);
+        output.writeInt(raster.rows);
+        for (int i = 0; i < raster.words(); i++) {
+            output.writeLong(raster.known.get(i));
+        }
+        for (int i = 0; i < raster.words(); i++) {
+            output.writeLong(raster.inside.get(i));
+        }
+    }
+}
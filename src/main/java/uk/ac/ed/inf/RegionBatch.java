@@ -0,0 +1,66 @@
+package uk.ac.ed.inf;
+
+/**
+ * Batch point-in-polygon test over a set of regions, answering for many points in one call whether each lies inside
+ * any of the regions. Every point gets the same answer as {@link CompiledRegion#contains}, whose sorted edge arrays
+ * it walks. This class tests one point at a time; {@link VectorRegionBatch} tests the points in the SIMD lanes of
+ * the JDK Vector API with the same arithmetic, and is used by {@link #of} whenever the incubator module is loaded.
+ *
+ * @author B209981
+ */
+class RegionBatch {
+
+    // Whether the JVM was started with the jdk.incubator.vector module, which the vectorized test needs
+    static final boolean VECTOR_API = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    final CompiledRegion[] regions;
+
+    /**
+     * Creates the test for a set of regions.
+     *
+     * @param regions The compiled regions.
+     */
+    RegionBatch(CompiledRegion[] regions) {
+        this.regions = regions.clone();
+    }
+
+    /**
+     * Creates the test for a set of regions, vectorized when the Vector API is available.
+     *
+     * @param regions The compiled regions.
+     * @return The fastest test the JVM supports.
+     */
+    static RegionBatch of(CompiledRegion[] regions) {
+        return VECTOR_API ? new VectorRegionBatch(regions) : new RegionBatch(regions);
+    }
+
+    /**
+     * Checks which of a batch of points are inside any of the regions.
+     *
+     * @param lng The longitudes of the points.
+     * @param lat The latitudes of the points.
+     * @param count The number of points, the first count entries of the arrays.
+     * @param inside Set for each point to true if it is inside a region, false otherwise.
+     */
+    void contains(double[] lng, double[] lat, int count, boolean[] inside) {
+        for (int i = 0; i < count; i++) {
+            inside[i] = contains(lng[i], lat[i]);
+        }
+    }
+
+    /**
+     * Checks if a point is inside any of the regions.
+     *
+     * @param lng The longitude of the point.
+     * @param lat The latitude of the point.
+     * @return true if the point is inside a region, false otherwise.
+     */
+    boolean contains(double lng, double lat) {
+        for (CompiledRegion region : regions) {
+            if (region.contains(lng, lat)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
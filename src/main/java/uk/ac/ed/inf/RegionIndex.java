@@ -0,0 +1,368 @@
+package uk.ac.ed.inf;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Spatial index answering whether a point is inside any of a set of regions, touching only the edges near the point.
+ * The bounding box of the regions is divided into a uniform grid, and each cell lists the edges that may cross it
+ * and whether its centre is inside each region. A point is inside a region when the centre of its cell is, unless
+ * the segment from the point to the centre crosses an odd number of the region's edges, which can only be edges
+ * listed in that cell. Inside the bounding box of a region the answer is the same as {@link CompiledRegion#contains}:
+ * points where the two could disagree, on an edge or at the latitude of a vertex, are checked with the ray cast itself.
+ * Points outside the bounding box of every region are never inside.
+ *
+ * @author B209981
+ */
+class RegionIndex {
+
+    // Largest number of cells along each axis of the grid
+    private static final int MAX_CELLS_PER_AXIS = 256;
+    // Distance from an edge, in degrees, below which a point is checked with the ray cast,
+    // well above the rounding error of either test so both always agree
+    private static final double EDGE_TOLERANCE = 1e-12;
+
+    private final CompiledRegion[] regions;
+
+    // Bounding box of all regions and the size of a grid cell
+    private final double minLng;
+    private final double minLat;
+    private final double maxLng;
+    private final double maxLat;
+    private final double cellWidth;
+    private final double cellHeight;
+    private final int columns;
+    private final int rows;
+
+    // Bounding box of each region, as minimum longitude, minimum latitude, maximum longitude, maximum latitude
+    private final double[][] regionBounds;
+
+    // End points of every edge and the region it belongs to
+    private final double[] edgeLng1;
+    private final double[] edgeLat1;
+    private final double[] edgeLng2;
+    private final double[] edgeLat2;
+    private final int[] edgeRegion;
+    private final double[] edgeLength;
+
+    // Edges that may cross each cell, sorted by region: those of cell c are cellEdges[cellStart[c]] to cellEdges[cellStart[c + 1] - 1]
+    private final int[] cellStart;
+    private final int[] cellEdges;
+    // Bit cell * regions.length + region is set when the centre of the cell is inside the region
+    private final BitSet centreInside;
+    // Cells whose centre is inside a region none of whose edges may cross the cell, so every point of the cell is inside
+    private final BitSet cellInside;
+    // Cells whose centre lies on or next to an edge or at the latitude of a vertex, checked with the ray cast
+    private final BitSet exactCells;
+    // Sorted latitudes of all vertices, where the ray cast does not count a crossing
+    private final double[] vertexLats;
+
+    /**
+     * Builds the index of a set of regions.
+     *
+     * @param regions The regions to index, each a closed polygon.
+     */
+    RegionIndex(NamedRegion[] regions) {
+        this(CompiledRegion.compileAll(regions));
+    }
+
+    /**
+     * Builds the index of a set of regions compiled earlier.
+     *
+     * @param regions The compiled regions to index.
+     */
+    RegionIndex(CompiledRegion[] regions) {
+        this.regions = regions.clone();
+
+        // Collect the edges of every region, skipping regions the ray cast treats as empty and edges of zero length
+        List<double[]> edges = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        List<Double> lats = new ArrayList<>();
+        regionBounds = new double[regions.length][];
+        double lowLng = Double.MAX_VALUE, lowLat = Double.MAX_VALUE, highLng = -Double.MAX_VALUE, highLat = -Double.MAX_VALUE;
+
+        for (int r = 0; r < regions.length; r++) {
+            LngLat[] corners = regions[r].source.vertices();
+            regionBounds[r] = bounds(corners);
+            int n = corners.length;
+            if (n < 3) {
+                continue;
+            }
+            lowLng = Math.min(lowLng, regionBounds[r][0]);
+            lowLat = Math.min(lowLat, regionBounds[r][1]);
+            highLng = Math.max(highLng, regionBounds[r][2]);
+            highLat = Math.max(highLat, regionBounds[r][3]);
+            for (int i = 0; i < n; i++) {
+                LngLat a = corners[i];
+                LngLat b = corners[(i + 1) % n];
+                lats.add(a.lat());
+                if (a.lng() != b.lng() || a.lat() != b.lat()) {
+                    edges.add(new double[]{a.lng(), a.lat(), b.lng(), b.lat()});
+                    owners.add(r);
+                }
+            }
+        }
+
+        int edgeCount = edges.size();
+        edgeLng1 = new double[edgeCount];
+        edgeLat1 = new double[edgeCount];
+        edgeLng2 = new double[edgeCount];
+        edgeLat2 = new double[edgeCount];
+        edgeRegion = new int[edgeCount];
+        edgeLength = new double[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            double[] edge = edges.get(e);
+            edgeLng1[e] = edge[0];
+            edgeLat1[e] = edge[1];
+            edgeLng2[e] = edge[2];
+            edgeLat2[e] = edge[3];
+            edgeRegion[e] = owners.get(e);
+            edgeLength[e] = Math.hypot(edge[2] - edge[0], edge[3] - edge[1]);
+        }
+        vertexLats = lats.stream().mapToDouble(Double::doubleValue).sorted().distinct().toArray();
+
+        if (edgeCount == 0) {
+            // Nothing to index, every point is outside
+            minLng = minLat = 0;
+            maxLng = maxLat = -1;
+            cellWidth = cellHeight = 1;
+            columns = rows = 1;
+            cellStart = new int[2];
+            cellEdges = new int[0];
+            centreInside = new BitSet();
+            cellInside = new BitSet();
+            exactCells = new BitSet();
+            return;
+        }
+
+        minLng = lowLng;
+        minLat = lowLat;
+        maxLng = highLng;
+        maxLat = highLat;
+        // About one cell per edge along each axis, so a cell holds only a few edges
+        columns = rows = Math.max(1, Math.min(MAX_CELLS_PER_AXIS, 2 * (int) Math.ceil(Math.sqrt(edgeCount))));
+        cellWidth = Math.max((maxLng - minLng) / columns, Double.MIN_NORMAL);
+        cellHeight = Math.max((maxLat - minLat) / rows, Double.MIN_NORMAL);
+
+        // Bucket every edge into the cells its bounding box overlaps, in edge order so each cell is sorted by region
+        int cells = columns * rows;
+        int[] counts = new int[cells];
+        for (int e = 0; e < edgeCount; e++) {
+            for (int c : cellsOf(e)) {
+                counts[c]++;
+            }
+        }
+        cellStart = new int[cells + 1];
+        for (int c = 0; c < cells; c++) {
+            cellStart[c + 1] = cellStart[c] + counts[c];
+        }
+        cellEdges = new int[cellStart[cells]];
+        int[] fill = Arrays.copyOf(cellStart, cells);
+        for (int e = 0; e < edgeCount; e++) {
+            for (int c : cellsOf(e)) {
+                cellEdges[fill[c]++] = e;
+            }
+        }
+
+        // Classify the centre of every cell with the ray cast
+        centreInside = new BitSet(cells * regions.length);
+        cellInside = new BitSet(cells);
+        exactCells = new BitSet(cells);
+        for (int c = 0; c < cells; c++) {
+            double centreLng = centreLng(c % columns);
+            double centreLat = centreLat(c / columns);
+            if (isVertexLatitude(centreLat) || centreOnEdge(c, centreLng, centreLat)) {
+                exactCells.set(c);
+                continue;
+            }
+            for (int r = 0; r < regions.length; r++) {
+                if (regions[r].contains(centreLng, centreLat)) {
+                    centreInside.set(c * regions.length + r);
+                    if (!hasEdgesOf(c, r)) {
+                        cellInside.set(c);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if a point is inside any of the indexed regions.
+     *
+     * @param lng The longitude of the point.
+     * @param lat The latitude of the point.
+     * @return true if the point is inside a region, false otherwise.
+     */
+    boolean contains(double lng, double lat) {
+        if (lng < minLng || lng > maxLng || lat < minLat || lat > maxLat) {
+            return false;
+        }
+        int cell = row(lat) * columns + column(lng);
+        if (exactCells.get(cell) || isVertexLatitude(lat)) {
+            return containsExact(lng, lat);
+        }
+        if (cellInside.get(cell)) {
+            return true;
+        }
+
+        double centreLng = centreLng(cell % columns);
+        double centreLat = centreLat(cell / columns);
+        int end = cellStart[cell + 1];
+        int i = cellStart[cell];
+        while (i < end) {
+            // Count the crossings of the segment to the centre with the edges of one region
+            int region = edgeRegion[cellEdges[i]];
+            boolean inside = centreInside.get(cell * regions.length + region);
+            for (; i < end && edgeRegion[cellEdges[i]] == region; i++) {
+                int crossing = crosses(lng, lat, centreLng, centreLat, cellEdges[i]);
+                if (crossing < 0) {
+                    return containsExact(lng, lat);
+                }
+                if (crossing > 0) {
+                    inside = !inside;
+                }
+            }
+            if (inside) {
+                return true;
+            }
+        }
+        // Regions with no edge in the cell and the centre inside were already answered by cellInside
+        return false;
+    }
+
+    /**
+     * Checks if a point is inside any of the indexed regions.
+     *
+     * @param position The point to check.
+     * @return true if the point is inside a region, false otherwise.
+     */
+    boolean contains(LngLat position) {
+        return contains(position.lng(), position.lat());
+    }
+
+    // Checks a point against every region whose bounding box holds it, with the ray cast
+    private boolean containsExact(double lng, double lat) {
+        for (int r = 0; r < regions.length; r++) {
+            double[] box = regionBounds[r];
+            if (lng >= box[0] && lat >= box[1] && lng <= box[2] && lat <= box[3] && regions[r].contains(lng, lat)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Tests the segment from a point to a cell centre against an edge:
+    // 1 if they cross, 0 if they do not, -1 if they touch so the crossing cannot be counted reliably
+    private int crosses(double lng, double lat, double centreLng, double centreLat, int edge) {
+        double tolerance = EDGE_TOLERANCE * edgeLength[edge];
+        double o3 = orientation(edgeLng1[edge], edgeLat1[edge], edgeLng2[edge], edgeLat2[edge], lng, lat);
+        if (Math.abs(o3) <= tolerance && nearEdgeBounds(lng, lat, edge)) {
+            return -1;
+        }
+        double o1 = orientation(lng, lat, centreLng, centreLat, edgeLng1[edge], edgeLat1[edge]);
+        double o2 = orientation(lng, lat, centreLng, centreLat, edgeLng2[edge], edgeLat2[edge]);
+        if ((o1 > 0 && o2 > 0) || (o1 < 0 && o2 < 0)) {
+            return 0;
+        }
+        double o4 = orientation(edgeLng1[edge], edgeLat1[edge], edgeLng2[edge], edgeLat2[edge], centreLng, centreLat);
+        if ((o3 > 0 && o4 > 0) || (o3 < 0 && o4 < 0)) {
+            return 0;
+        }
+        if (o1 == 0 || o2 == 0 || Math.abs(o3) <= tolerance || Math.abs(o4) <= tolerance) {
+            return -1;
+        }
+        return 1;
+    }
+
+    // Checks if a point is inside the bounding box of an edge widened by the edge tolerance
+    private boolean nearEdgeBounds(double lng, double lat, int edge) {
+        return lng >= Math.min(edgeLng1[edge], edgeLng2[edge]) - EDGE_TOLERANCE
+                && lng <= Math.max(edgeLng1[edge], edgeLng2[edge]) + EDGE_TOLERANCE
+                && lat >= Math.min(edgeLat1[edge], edgeLat2[edge]) - EDGE_TOLERANCE
+                && lat <= Math.max(edgeLat1[edge], edgeLat2[edge]) + EDGE_TOLERANCE;
+    }
+
+    // Twice the signed area of the triangle a, b, c: positive when c is left of the line from a to b
+    private static double orientation(double aLng, double aLat, double bLng, double bLat, double cLng, double cLat) {
+        return (bLng - aLng) * (cLat - aLat) - (bLat - aLat) * (cLng - aLng);
+    }
+
+    // Gets the cells overlapped by the bounding box of an edge
+    private int[] cellsOf(int edge) {
+        int firstColumn = column(Math.min(edgeLng1[edge], edgeLng2[edge]));
+        int lastColumn = column(Math.max(edgeLng1[edge], edgeLng2[edge]));
+        int firstRow = row(Math.min(edgeLat1[edge], edgeLat2[edge]));
+        int lastRow = row(Math.max(edgeLat1[edge], edgeLat2[edge]));
+        int[] cells = new int[(lastColumn - firstColumn + 1) * (lastRow - firstRow + 1)];
+        int i = 0;
+        for (int y = firstRow; y <= lastRow; y++) {
+            for (int x = firstColumn; x <= lastColumn; x++) {
+                cells[i++] = y * columns + x;
+            }
+        }
+        return cells;
+    }
+
+    // Checks if the centre of a cell lies on one of the edges crossing the cell
+    private boolean centreOnEdge(int cell, double centreLng, double centreLat) {
+        for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+            int e = cellEdges[i];
+            if (Math.abs(orientation(edgeLng1[e], edgeLat1[e], edgeLng2[e], edgeLat2[e], centreLng, centreLat)) <= EDGE_TOLERANCE * edgeLength[e]
+                    && centreLng >= Math.min(edgeLng1[e], edgeLng2[e]) && centreLng <= Math.max(edgeLng1[e], edgeLng2[e])
+                    && centreLat >= Math.min(edgeLat1[e], edgeLat2[e]) && centreLat <= Math.max(edgeLat1[e], edgeLat2[e])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Checks if any edge of a region may cross a cell
+    private boolean hasEdgesOf(int cell, int region) {
+        for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+            if (edgeRegion[cellEdges[i]] == region) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Checks if a latitude is that of a vertex, where the ray cast skips the edges meeting at the vertex
+    private boolean isVertexLatitude(double lat) {
+        return Arrays.binarySearch(vertexLats, lat) >= 0;
+    }
+
+    // Gets the grid column of a longitude inside the bounding box
+    private int column(double lng) {
+        return Math.min(columns - 1, (int) ((lng - minLng) / cellWidth));
+    }
+
+    // Gets the grid row of a latitude inside the bounding box
+    private int row(double lat) {
+        return Math.min(rows - 1, (int) ((lat - minLat) / cellHeight));
+    }
+
+    private double centreLng(int column) {
+        return minLng + (column + 0.5) * cellWidth;
+    }
+
+    private double centreLat(int row) {
+        return minLat + (row + 0.5) * cellHeight;
+    }
+
+    // Computes the bounding box of a polygon
+    private static double[] bounds(LngLat[] vertices) {
+        double[] bounds = {Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (LngLat vertex : vertices) {
+            bounds[0] = Math.min(bounds[0], vertex.lng());
+            bounds[1] = Math.min(bounds[1], vertex.lat());
+            bounds[2] = Math.max(bounds[2], vertex.lng());
+            bounds[3] = Math.max(bounds[3], vertex.lat());
+        }
+        return bounds;
+    }
+}
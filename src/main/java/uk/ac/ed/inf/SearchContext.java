@@ -0,0 +1,334 @@
+package uk.ac.ed.inf;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+import java.util.*;
+
+/**
+ * Holds the state of a single A* search, so that several searches can run at the same time.
+ * A context belongs to one search at a time and can be reused once that search has finished.
+ *
+ * @author B209981
+ */
+public class SearchContext {
+
+    // Nodes generated by the search, kept allocated from one search to the next
+    final NodeArena arena = new NodeArena();
+    // Open set for the nodes to be evaluated
+    OpenSet openSet = new IndexedHeap(arena);
+    // Latest node generated in each lattice cell, open or not, for constant time lookup of an existing neighbour
+    final LongIntMap nodeIndex = new LongIntMap();
+    // Lattice keys of the nodes already evaluated in the current iteration
+    final LongHashSet closedSet = new LongHashSet();
+    // Nodes reached more cheaply after their cell was closed, queued again by the next iteration
+    int[] inconsistent = new int[16];
+    int inconsistentCount;
+    // Path found by the search, null until a path is found
+    List<Node> path;
+
+    // Number of compass directions the drone may move in, 8 or 16
+    int directions = LngLatHandler.COMPASS_DIRECTIONS;
+    // Scratch space receiving each neighbour position, so that generating a neighbour does not allocate
+    final double[] nextPosition = new double[2];
+    // Whether the scratch position is inside the central area
+    boolean nextCentral;
+    // Neighbour positions of the node being expanded, checked against the regions in one batch
+    final PointBatch neighbours = new PointBatch();
+
+    // Heuristic weight of each iteration of an anytime search, the first finds a path fast and later ones improve it
+    private double[] weights = {2.0};
+    // Time allowed for a search, after which it returns the best path found so far
+    private long budgetNanos = 30_000_000_000L;
+    // Whether searches bound their heuristic below by the landmark distances of the flight map
+    private boolean landmarks;
+    // Landmark distances and the landmark distances of the goal for the current search, null when not used
+    LandmarkTable landmarkTable;
+    float[] landmarkGoal;
+
+    // Box the searches may not leave, unbounded unless a planner confines its searches to part of the map
+    double minLng = -Double.MAX_VALUE;
+    double minLat = -Double.MAX_VALUE;
+    double maxLng = Double.MAX_VALUE;
+    double maxLat = Double.MAX_VALUE;
+
+    // Weight of the current iteration
+    double weight;
+    // Index of the current iteration
+    int iteration;
+
+    // Number of nodes taken from the open set and expanded
+    int expandedNodes;
+    // Number of neighbours skipped because their cell had already been expanded
+    int skippedClosedNodes;
+    // Number of iterations of the weight schedule that ran to completion
+    int completedIterations;
+    // Whether the last search stopped at its time budget instead of finishing
+    boolean timedOut;
+
+    // Origin of the lattice, the start position of the current search
+    private double originLng;
+    private double originLat;
+
+    // State of the frontier searched backwards from the goal by a bidirectional search, created when first needed
+    private SearchContext backward;
+    // State of the searches for the routes between cluster entrances kept by the flight map, created when first needed
+    private SearchContext entranceRoutes;
+
+    /**
+     * Clears the state left by a previous search so the context can be used again.
+     */
+    public void reset() {
+        openSet.clear();
+        arena.clear();
+        nodeIndex.clear();
+        closedSet.clear();
+        inconsistentCount = 0;
+        path = null;
+        expandedNodes = 0;
+        skippedClosedNodes = 0;
+        completedIterations = 0;
+        timedOut = false;
+        iteration = 0;
+        weight = weights[0];
+        landmarkTable = null;
+        landmarkGoal = null;
+    }
+
+    /**
+     * Places the lattice origin of the current search at the given position.
+     *
+     * @param origin The start position of the search.
+     */
+    void setOrigin(LngLat origin) {
+        originLng = origin.lng();
+        originLat = origin.lat();
+    }
+
+    /**
+     * Gets the lattice key of a position relative to the origin of the current search.
+     *
+     * @param position The position to key.
+     * @return The packed lattice key of the position.
+     */
+    long keyOf(LngLat position) {
+        return keyOf(position.lng(), position.lat());
+    }
+
+    // Gets the lattice key of a position given as a longitude and latitude
+    long keyOf(double lng, double lat) {
+        return Lattice.key(lng, lat, originLng, originLat);
+    }
+
+    // Gets the key of the node at a position with the given central area state
+    long keyOf(double lng, double lat, boolean central) {
+        return Lattice.withCentral(keyOf(lng, lat), central);
+    }
+
+    /**
+     * Sets how many compass directions searches with this context may move in.
+     * 16 directions gives shorter routes, 8 directions expands fewer neighbours per node.
+     *
+     * @param directions The number of directions, either 8 or 16.
+     * @return true if the number of directions was accepted, false otherwise.
+     */
+    public boolean setDirections(int directions) {
+        if (directions != 8 && directions != LngLatHandler.COMPASS_DIRECTIONS) {
+            System.err.println("[Error]: The drone can only move in 8 or 16 directions.");
+            return false;
+        }
+        this.directions = directions;
+        return true;
+    }
+
+    /**
+     * Chooses the open set of searches with this context. The bucket queue adds and moves nodes in constant time
+     * and suits long searches, the binary heap orders nodes exactly by their total cost.
+     *
+     * @param enabled true to use a bucket queue, false to use a binary heap.
+     */
+    public void setBucketQueue(boolean enabled) {
+        openSet.clear();
+        openSet = enabled ? new BucketQueue(arena, SystemConstants.DRONE_MOVE_DISTANCE) : new IndexedHeap(arena);
+    }
+
+    /**
+     * Sets the heuristic weights of an anytime search. The search runs one iteration per weight, each reusing the
+     * work of the previous one, and keeps the cheapest path found. A single weight gives a plain weighted A* search,
+     * a final weight of 1 makes the last iteration find the shortest path.
+     *
+     * @param weights The weights in the order they are used, each at least 1 and none greater than the one before.
+     * @return true if the schedule was accepted, false otherwise.
+     */
+    public boolean setWeightSchedule(double... weights) {
+        if (weights.length == 0) {
+            System.err.println("[Error]: The weight schedule needs at least one weight.");
+            return false;
+        }
+        for (int i = 0; i < weights.length; i++) {
+            if (!(weights[i] >= 1) || (i > 0 && weights[i] > weights[i - 1])) {
+                System.err.println("[Error]: Weights must be at least 1 and must not increase.");
+                return false;
+            }
+        }
+        this.weights = weights.clone();
+        return true;
+    }
+
+    /**
+     * Confines the searches with this context to a box, used by {@link HierarchicalPlanner} to search within a cluster.
+     *
+     * @param minLng The western edge of the box.
+     * @param minLat The southern edge of the box.
+     * @param maxLng The eastern edge of the box.
+     * @param maxLat The northern edge of the box.
+     */
+    void setBounds(double minLng, double minLat, double maxLng, double maxLat) {
+        this.minLng = minLng;
+        this.minLat = minLat;
+        this.maxLng = maxLng;
+        this.maxLat = maxLat;
+    }
+
+    /**
+     * Lets the searches with this context reach any position again.
+     */
+    void clearBounds() {
+        setBounds(-Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
+    }
+
+    // Checks if a position lies within the box the searches are confined to
+    boolean isInBounds(double lng, double lat) {
+        return lng >= minLng && lng <= maxLng && lat >= minLat && lat <= maxLat;
+    }
+
+    /**
+     * Chooses the heuristic of searches with this context. Landmark distances give a larger estimate than the straight
+     * line when a no-fly zone lies between a node and the goal, so fewer nodes on the wrong side of it are expanded.
+     * The straight line distance is used where the landmark grid does not reach.
+     *
+     * @param enabled true to use the landmark heuristic, false to use the straight line distance only.
+     */
+    public void setLandmarks(boolean enabled) {
+        landmarks = enabled;
+    }
+
+    // Checks if searches use the landmark heuristic
+    boolean usesLandmarks() {
+        return landmarks;
+    }
+
+    /**
+     * Sets the time a search may take. When it runs out the search stops and keeps the best path found so far.
+     *
+     * @param budgetMillis The time budget in milliseconds, greater than 0.
+     * @return true if the budget was accepted, false otherwise.
+     */
+    public boolean setTimeBudget(long budgetMillis) {
+        if (budgetMillis <= 0) {
+            System.err.println("[Error]: The time budget must be greater than 0.");
+            return false;
+        }
+        this.budgetNanos = budgetMillis * 1_000_000L;
+        return true;
+    }
+
+    // Gets the context of the backward frontier of a bidirectional search, with the same settings as this one
+    SearchContext backward() {
+        if (backward == null) {
+            backward = new SearchContext();
+        }
+        backward.directions = directions;
+        backward.weights = weights;
+        backward.budgetNanos = budgetNanos;
+        boolean buckets = openSet instanceof BucketQueue;
+        if (buckets != backward.openSet instanceof BucketQueue) {
+            backward.setBucketQueue(buckets);
+        }
+        return backward;
+    }
+
+    // Gets the context of the searches for the routes between cluster entrances, whose costs are kept for every later
+    // search on the flight map. They find the cheapest route whatever this context asks for: weight 1 and no time
+    // budget, only the number of directions follows this context since it changes which routes exist.
+    SearchContext entranceRoutes() {
+        if (entranceRoutes == null) {
+            entranceRoutes = new SearchContext();
+            entranceRoutes.weights = new double[]{1.0};
+            // Far enough ahead never to be reached, yet not overflowing when added to the current time
+            entranceRoutes.budgetNanos = Long.MAX_VALUE / 4;
+        }
+        entranceRoutes.directions = directions;
+        return entranceRoutes;
+    }
+
+    // Records a node reached more cheaply after its cell was closed
+    void addInconsistent(int node) {
+        if (inconsistentCount == inconsistent.length) {
+            inconsistent = Arrays.copyOf(inconsistent, inconsistentCount * 2);
+        }
+        inconsistent[inconsistentCount++] = node;
+    }
+
+    // Gets the weight schedule of the searches
+    double[] weights() {
+        return weights;
+    }
+
+    // Gets the time budget of a search in nanoseconds
+    long budgetNanos() {
+        return budgetNanos;
+    }
+
+    // Checks if the current iteration is followed by another one, which needs the nodes improved after being closed
+    boolean hasLaterIteration() {
+        return iteration < weights.length - 1;
+    }
+
+    /**
+     * Gets the number of iterations of the weight schedule completed by the last search run with this context.
+     * It is less than the number of weights when the time budget ran out.
+     *
+     * @return The number of completed iterations.
+     */
+    public int getCompletedIterations() {
+        return completedIterations;
+    }
+
+    /**
+     * Checks if the last search run with this context stopped at its time budget, so its path is only the best one
+     * found by then and not the one its settings would give with more time.
+     *
+     * @return true if the search ran out of time, false if it finished.
+     */
+    public boolean ranOutOfTime() {
+        return timedOut;
+    }
+
+    /**
+     * Gets the number of nodes expanded by the last search run with this context.
+     *
+     * @return The number of expanded nodes.
+     */
+    public int getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    /**
+     * Gets the number of re-expansions the closed set prevented in the last search run with this context.
+     *
+     * @return The number of neighbours skipped because their cell was already closed.
+     */
+    public int getSkippedClosedNodes() {
+        return skippedClosedNodes;
+    }
+
+    /**
+     * Gets the path found by the last search run with this context.
+     *
+     * @return The path from the start to the goal, or null if no path was found.
+     */
+    public List<Node> getPath() {
+        return path;
+    }
+}
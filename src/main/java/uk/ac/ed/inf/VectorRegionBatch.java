@@ -0,0 +1,66 @@
+package uk.ac.ed.inf;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Batch point-in-polygon test running the points in the SIMD lanes of the JDK Vector API. Each edge is loaded once
+ * per group of lanes and compared against all of their points together, with the same arithmetic as
+ * {@link CompiledRegion#contains}, so every point gets the same answer. The walk along the sorted edges of a region
+ * stops at the first edge starting north of every lane. Needs the JVM to be started with {@code --add-modules jdk.incubator.vector};
+ * {@link RegionBatch#of} only creates it then.
+ *
+ * @author B209981
+ */
+final class VectorRegionBatch extends RegionBatch {
+
+    // Widest vector of doubles the processor supports
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    /**
+     * Creates the vectorized test for a set of regions.
+     *
+     * @param regions The compiled regions.
+     */
+    VectorRegionBatch(CompiledRegion[] regions) {
+        super(regions);
+    }
+
+    @Override
+    void contains(double[] lng, double[] lat, int count, boolean[] inside) {
+        int lanes = SPECIES.length();
+        int i = 0;
+        for (; i < SPECIES.loopBound(count); i += lanes) {
+            DoubleVector x = DoubleVector.fromArray(SPECIES, lng, i);
+            DoubleVector y = DoubleVector.fromArray(SPECIES, lat, i);
+            double southmost = y.reduceLanes(VectorOperators.MIN);
+            double northmost = y.reduceLanes(VectorOperators.MAX);
+            VectorMask<Double> any = SPECIES.maskAll(false);
+            for (CompiledRegion region : regions) {
+                if (northmost <= region.minLat || southmost >= region.maxLat) {
+                    continue;
+                }
+                VectorMask<Double> odd = SPECIES.maskAll(false);
+                for (int e = 0; e < region.edgeCount && region.lowLat[e] < northmost; e++) {
+                    VectorMask<Double> band = y.compare(VectorOperators.GT, region.lowLat[e])
+                            .and(y.compare(VectorOperators.LT, region.highLat[e]));
+                    if (!band.anyTrue()) {
+                        continue;
+                    }
+                    VectorMask<Double> east = y.sub(region.lowLat[e]).mul(region.inverseSlope[e]).add(region.lowLng[e])
+                            .compare(VectorOperators.GT, x);
+                    // Flip the parity of the lanes whose ray crosses the edge
+                    odd = odd.eq(band.and(east)).not();
+                }
+                any = any.or(odd);
+            }
+            any.intoArray(inside, i);
+        }
+        // Points left over after the last full vector
+        for (; i < count; i++) {
+            inside[i] = contains(lng[i], lat[i]);
+        }
+    }
+}
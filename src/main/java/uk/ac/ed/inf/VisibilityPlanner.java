@@ -0,0 +1,271 @@
+package uk.ac.ed.inf;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Plans paths on a visibility graph instead of the move lattice.
+ * The graph joins the start, the goal and the corners of the regions, each pushed a little outwards, wherever the
+ * straight line between two of them is clear. The shortest route through the graph is then flown as compass
+ * moves, each heading for the next corner, so the search only expands a few dozen corners however far the
+ * lattice search would have had to spread around a zone. If a route cannot be flown the planner falls back to
+ * {@link AStar#findShortestPath}.
+ *
+ * @author B209981
+ */
+public class VisibilityPlanner {
+
+    // Distance the corners are pushed out from their region, so moves heading past a corner stay clear of it
+    static final double INFLATION = 2 * SystemConstants.DRONE_MOVE_DISTANCE;
+    // Furthest a corner is pushed out, for corners so sharp that the full offset would reach far from the region
+    private static final double MAX_OFFSET = 4 * INFLATION;
+
+    /**
+     * Finds a path from the start to the goal through the visibility graph of the flight map, with the same
+     * contract as {@link AStar#findShortestPath}. The expanded node count of the context is the number of graph
+     * vertices expanded, plus the nodes of the lattice search if the planner had to fall back to it.
+     *
+     * @param context Search context holding the directions the drone may move in and the resulting path
+     * @param flightMap Central area and no-fly zones to respect
+     * @param start Start node
+     * @param goal Goal node
+     * @return true if a path is found, false otherwise
+     */
+    public static boolean findShortestPath(SearchContext context, FlightMap flightMap, Node start, Node goal) {
+        context.reset();
+        double[] corners = flightMap.visibilityCorners();
+        int count = 2 + corners.length / 2;
+        double[] lng = new double[count];
+        double[] lat = new double[count];
+        lng[0] = start.coordinates.lng();
+        lat[0] = start.coordinates.lat();
+        lng[1] = goal.coordinates.lng();
+        lat[1] = goal.coordinates.lat();
+        for (int i = 2; i < count; i++) {
+            lng[i] = corners[2 * (i - 2)];
+            lat[i] = corners[2 * (i - 2) + 1];
+        }
+
+        int[] route = shortestRoute(context, flightMap, lng, lat);
+        List<Node> path = route == null ? null : flyRoute(context, flightMap, route, lng, lat);
+        if (path == null) {
+            int graphExpansions = context.expandedNodes;
+            boolean found = AStar.findShortestPath(context, flightMap, start, goal);
+            context.expandedNodes += graphExpansions;
+            return found;
+        }
+        context.path = path;
+        context.completedIterations = 1;
+        return true;
+    }
+
+    /**
+     * Pushes the convex corners of a set of regions outwards so that both edges meeting at a corner are at least
+     * INFLATION away from it. Reflex corners are left out, as a shortest route never bends around them, and so are
+     * corners that end up inside a no-fly zone.
+     *
+     * @param regions The regions whose corners are used.
+     * @param noFlyRaster The occupancy raster of the no-fly zones.
+     * @return The pushed out corners as longitude and latitude pairs.
+     */
+    static double[] inflatedCorners(NamedRegion[] regions, OccupancyRaster noFlyRaster) {
+        List<double[]> corners = new ArrayList<>();
+        for (NamedRegion region : regions) {
+            LngLat[] vertices = distinctVertices(region.vertices());
+            int n = vertices.length;
+            if (n < 3) {
+                continue;
+            }
+            double orientation = Math.signum(signedArea(vertices));
+            for (int i = 0; i < n; i++) {
+                LngLat previous = vertices[(i + n - 1) % n];
+                LngLat vertex = vertices[i];
+                LngLat next = vertices[(i + 1) % n];
+                double inX = vertex.lng() - previous.lng(), inY = vertex.lat() - previous.lat();
+                double outX = next.lng() - vertex.lng(), outY = next.lat() - vertex.lat();
+                if ((inX * outY - inY * outX) * orientation <= 0) {
+                    // Reflex or straight corner
+                    continue;
+                }
+                // Outward normals of the two edges, to the right of a counter-clockwise boundary
+                double inLength = Math.hypot(inX, inY), outLength = Math.hypot(outX, outY);
+                double n1x = orientation * inY / inLength, n1y = -orientation * inX / inLength;
+                double n2x = orientation * outY / outLength, n2y = -orientation * outX / outLength;
+                // Mitre offset, at INFLATION from the lines of both edges
+                double scale = INFLATION / (1 + n1x * n2x + n1y * n2y);
+                double offsetX = (n1x + n2x) * scale, offsetY = (n1y + n2y) * scale;
+                double offset = Math.hypot(offsetX, offsetY);
+                if (offset > MAX_OFFSET) {
+                    offsetX *= MAX_OFFSET / offset;
+                    offsetY *= MAX_OFFSET / offset;
+                }
+                double cornerLng = vertex.lng() + offsetX;
+                double cornerLat = vertex.lat() + offsetY;
+                if (!noFlyRaster.contains(cornerLng, cornerLat)) {
+                    corners.add(new double[]{cornerLng, cornerLat});
+                }
+            }
+        }
+
+        double[] flat = new double[2 * corners.size()];
+        for (int i = 0; i < corners.size(); i++) {
+            flat[2 * i] = corners.get(i)[0];
+            flat[2 * i + 1] = corners.get(i)[1];
+        }
+        return flat;
+    }
+
+    /**
+     * Checks if the drone may fly the straight line between two positions: no point of it lies in a no-fly zone,
+     * and once a point is in the central area every later point is too. Points are checked at the lattice resolution.
+     *
+     * @param fromLng The longitude of the start of the line.
+     * @param fromLat The latitude of the start of the line.
+     * @param toLng The longitude of the end of the line.
+     * @param toLat The latitude of the end of the line.
+     * @param flightMap Central area and no-fly zones to respect.
+     * @return true if the line can be flown, false otherwise.
+     */
+    static boolean isVisible(double fromLng, double fromLat, double toLng, double toLat, FlightMap flightMap) {
+        int samples = (int) Math.ceil(Math.hypot(toLng - fromLng, toLat - fromLat) / Lattice.RESOLUTION);
+        boolean central = false;
+        for (int i = 0; i <= samples; i++) {
+            double t = samples == 0 ? 0 : (double) i / samples;
+            double lng = fromLng + t * (toLng - fromLng);
+            double lat = fromLat + t * (toLat - fromLat);
+            if (flightMap.isInNoFlyZone(lng, lat)) {
+                return false;
+            }
+            boolean inside = flightMap.isInCentralArea(lng, lat);
+            if (central && !inside) {
+                return false;
+            }
+            central = inside;
+        }
+        return true;
+    }
+
+    // Finds the shortest route from vertex 0 to vertex 1 with A* over the graph, testing each line only when it
+    // would shorten the route to its end. Returns the vertices of the route in order, or null if there is none.
+    private static int[] shortestRoute(SearchContext context, FlightMap flightMap, double[] lng, double[] lat) {
+        int count = lng.length;
+        double[] cost = new double[count];
+        int[] parent = new int[count];
+        boolean[] closed = new boolean[count];
+        Arrays.fill(cost, Double.MAX_VALUE);
+        Arrays.fill(parent, NodeArena.NONE);
+        cost[0] = 0;
+
+        while (true) {
+            // The graph holds a few dozen corners, so a scan finds the cheapest open vertex fast enough
+            int current = NodeArena.NONE;
+            double best = Double.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                if (!closed[i] && cost[i] != Double.MAX_VALUE) {
+                    double total = cost[i] + Math.hypot(lng[i] - lng[1], lat[i] - lat[1]);
+                    if (total < best) {
+                        best = total;
+                        current = i;
+                    }
+                }
+            }
+            if (current == NodeArena.NONE) {
+                return null;
+            }
+            if (current == 1) {
+                break;
+            }
+            closed[current] = true;
+            context.expandedNodes++;
+
+            for (int i = 0; i < count; i++) {
+                if (closed[i]) {
+                    continue;
+                }
+                double tentative = cost[current] + Math.hypot(lng[i] - lng[current], lat[i] - lat[current]);
+                if (tentative < cost[i] && isVisible(lng[current], lat[current], lng[i], lat[i], flightMap)) {
+                    cost[i] = tentative;
+                    parent[i] = current;
+                }
+            }
+        }
+
+        int length = 0;
+        for (int i = 1; i != NodeArena.NONE; i = parent[i]) {
+            length++;
+        }
+        int[] route = new int[length];
+        for (int i = 1, j = length - 1; i != NodeArena.NONE; i = parent[i], j--) {
+            route[j] = i;
+        }
+        return route;
+    }
+
+    // Flies a route as compass moves, each move taken in the allowed direction that gets closest to the next vertex.
+    // Returns the path, or null if no allowed move gets closer to a vertex.
+    private static List<Node> flyRoute(SearchContext context, FlightMap flightMap, int[] route, double[] lng, double[] lat) {
+        int step = LngLatHandler.COMPASS_DIRECTIONS / context.directions;
+        double[] next = context.nextPosition;
+        List<Node> path = new ArrayList<>();
+        Node current = new Node(new LngLat(lng[0], lat[0]));
+        path.add(current);
+
+        for (int r = 1; r < route.length; r++) {
+            double targetLng = lng[route[r]];
+            double targetLat = lat[route[r]];
+            // Corners are passed once the drone is within one move of them, the goal once it is close to it
+            while (Math.hypot(current.coordinates.lng() - targetLng, current.coordinates.lat() - targetLat)
+                    >= SystemConstants.DRONE_IS_CLOSE_DISTANCE) {
+                double currentLng = current.coordinates.lng();
+                double currentLat = current.coordinates.lat();
+                double nearest = Math.hypot(currentLng - targetLng, currentLat - targetLat);
+                int bestDirection = -1;
+                for (int direction = 0; direction < LngLatHandler.COMPASS_DIRECTIONS; direction += step) {
+                    LngLatHandler.nextPosition(currentLng, currentLat, direction, next);
+                    double distance = Math.hypot(next[0] - targetLng, next[1] - targetLat);
+                    if (distance < nearest && AStar.isValidMove(next[0], next[1], flightMap, currentLng, currentLat)) {
+                        nearest = distance;
+                        bestDirection = direction;
+                    }
+                }
+                if (bestDirection < 0) {
+                    return null;
+                }
+
+                LngLatHandler.nextPosition(currentLng, currentLat, bestDirection, next);
+                Node node = new Node(new LngLat(next[0], next[1]));
+                node.parent = current;
+                node.cost = current.cost + SystemConstants.DRONE_MOVE_DISTANCE;
+                node.angle = bestDirection * LngLatHandler.ANGLE_STEP;
+                path.add(node);
+                current = node;
+            }
+        }
+        return path;
+    }
+
+    // Gets the vertices of a region without the closing vertex that repeats the first one
+    private static LngLat[] distinctVertices(LngLat[] vertices) {
+        int n = vertices.length;
+        if (n > 1 && vertices[0].equals(vertices[n - 1])) {
+            return Arrays.copyOf(vertices, n - 1);
+        }
+        return vertices;
+    }
+
+    // Gets twice the signed area of a polygon, positive when its vertices run counter-clockwise
+    private static double signedArea(LngLat[] vertices) {
+        double area = 0;
+        for (int i = 0; i < vertices.length; i++) {
+            LngLat a = vertices[i];
+            LngLat b = vertices[(i + 1) % vertices.length];
+            area += a.lng() * b.lat() - b.lng() * a.lat();
+        }
+        return area;
+    }
+}
@@ -3,9 +3,14 @@ package uk.ac.ed.inf;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
 import uk.ac.ed.inf.ilp.data.LngLat;
 import uk.ac.ed.inf.ilp.data.NamedRegion;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
 /**
  * Unit test for A star
  *
@@ -16,6 +21,7 @@ public class AStarTest {
 
     private NamedRegion[] noFlyZones;
     private NamedRegion centralArea;
+    private FlightMap flightMap;
 
     @Before
     public void setUp() {
@@ -64,6 +70,7 @@ public class AStarTest {
                 new LngLat(-3.184319, 55.942617),
                 new LngLat(-3.184319, 55.946233)
         });
+        flightMap = new FlightMap(centralArea, noFlyZones);
     }
 
     @Test
@@ -73,12 +80,277 @@ public class AStarTest {
         Node start = new Node(new LngLat(-3.1870, 55.9444)); // Appleton Tower
         Node goal = new Node(new LngLat(-3.1912869215011597, 55.945535152517735)); // Civerinos Slice
 
+        SearchContext context = new SearchContext();
+
         // Act
-        boolean result = AStar.findShortestPath(noFlyZones, start, goal, centralArea);
+        boolean result = AStar.findShortestPath(context, flightMap, start, goal);
 
         // Assert
         Assert.assertTrue("Path should be found when it exists", result);
-        Assert.assertNotNull("Path list should not be null", AStar.path);
+        Assert.assertNotNull("Path list should not be null", context.getPath());
+    }
+
+    @Test
+    public void findShortestPathShouldUseFewerMovesWithSixteenDirections() {
+
+        // Arrange
+        LngLat start = new LngLat(-3.202541470527649, 55.943284737579376); // Sora Lella Vegan Restaurant
+        LngLat goal = new LngLat(-3.186874, 55.944494); // Appleton Tower
+        SearchContext eightDirections = new SearchContext();
+        eightDirections.setDirections(8);
+        SearchContext sixteenDirections = new SearchContext();
+
+        // Act
+        boolean eightResult = AStar.findShortestPath(eightDirections, flightMap, new Node(start), new Node(goal));
+        boolean sixteenResult = AStar.findShortestPath(sixteenDirections, flightMap, new Node(start), new Node(goal));
+
+        // Assert
+        Assert.assertTrue(eightResult);
+        Assert.assertTrue(sixteenResult);
+        Assert.assertTrue("16 directions should not need more moves than 8",
+                sixteenDirections.getPath().size() <= eightDirections.getPath().size());
+    }
+
+    @Test
+    public void findShortestPathShouldNotExpandAnyCellTwice() {
+
+        // Arrange
+        Node start = new Node(new LngLat(-3.202541470527649, 55.943284737579376)); // Sora Lella Vegan Restaurant
+        Node goal = new Node(new LngLat(-3.186874, 55.944494)); // Appleton Tower
+        SearchContext context = new SearchContext();
+
+        // Act
+        boolean result = AStar.findShortestPath(context, flightMap, start, goal);
+
+        // Assert
+        Assert.assertTrue("Path should be found when it exists", result);
+        Assert.assertEquals("Each expanded node should close a different cell", context.closedSet.size(), context.getExpandedNodes());
+        Assert.assertTrue("Neighbours in closed cells should be skipped", context.getSkippedClosedNodes() > 0);
+    }
+
+    @Test
+    public void findPathsToGoalShouldFindEveryTargetInOneSearch() {
+
+        // Arrange
+        LngLat appletonTower = new LngLat(-3.186874, 55.944494);
+        List<LngLat> restaurants = List.of(
+                new LngLat(-3.1912869215011597, 55.945535152517735), // Civerinos Slice
+                new LngLat(-3.202541470527649, 55.943284737579376), // Sora Lella Vegan Restaurant
+                new LngLat(-3.1838572025299072, 55.94449876875712)); // Domino's
+        SearchContext context = new SearchContext();
+        LngLatHandler handler = new LngLatHandler();
+
+        // Act
+        List<List<Node>> paths = AStar.findPathsToGoal(context, flightMap, restaurants, new Node(appletonTower));
+
+        // Assert
+        Assert.assertEquals(restaurants.size(), paths.size());
+        for (int i = 0; i < restaurants.size(); i++) {
+            List<Node> path = paths.get(i);
+            Assert.assertNotNull("Every restaurant should have a path", path);
+            Assert.assertTrue("Path should start close to the restaurant", handler.isCloseTo(path.get(0).coordinates, restaurants.get(i)));
+            Assert.assertEquals("Path should end at the goal", appletonTower, path.get(path.size() - 1).coordinates);
+            for (int j = 1; j < path.size(); j++) {
+                Assert.assertEquals("Each step should be a single move", SystemConstants.DRONE_MOVE_DISTANCE,
+                        handler.distanceTo(path.get(j - 1).coordinates, path.get(j).coordinates), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void findShortestPathShouldRunConcurrentlyWithSeparateContexts() throws Exception {
+
+        // Arrange
+        LngLat civerinos = new LngLat(-3.1912869215011597, 55.945535152517735);
+        SearchContext reference = new SearchContext();
+        AStar.findShortestPath(reference, flightMap, new Node(civerinos), new Node(new LngLat(-3.1870, 55.9444)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<List<Node>>> results = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 4; i++) {
+            results.add(executor.submit(() -> {
+                SearchContext context = new SearchContext();
+                AStar.findShortestPath(context, flightMap, new Node(civerinos), new Node(new LngLat(-3.1870, 55.9444)));
+                return context.getPath();
+            }));
+        }
+
+        // Assert
+        for (Future<List<Node>> result : results) {
+            Assert.assertEquals("Concurrent searches should find the same path", reference.getPath(), result.get(60, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void findShortestPathShouldImprovePathWithWeightSchedule() {
+
+        // Arrange
+        LngLat start = new LngLat(-3.202541470527649, 55.943284737579376); // Sora Lella Vegan Restaurant
+        LngLat goal = new LngLat(-3.186874, 55.944494); // Appleton Tower
+        SearchContext greedy = new SearchContext();
+        greedy.setWeightSchedule(3.0);
+        SearchContext anytime = new SearchContext();
+        anytime.setWeightSchedule(3.0, 2.0, 1.5, 1.0);
+        LngLatHandler handler = new LngLatHandler();
+
+        // Act
+        boolean greedyResult = AStar.findShortestPath(greedy, flightMap, new Node(start), new Node(goal));
+        boolean anytimeResult = AStar.findShortestPath(anytime, flightMap, new Node(start), new Node(goal));
+
+        // Assert
+        Assert.assertTrue(greedyResult);
+        Assert.assertTrue(anytimeResult);
+        Assert.assertEquals("Every iteration should complete within the budget", 4, anytime.getCompletedIterations());
+        List<Node> path = anytime.getPath();
+        Assert.assertTrue("Later iterations should not lengthen the path", path.size() <= greedy.getPath().size());
+        Assert.assertEquals("Path should start at the start", start, path.get(0).coordinates);
+        for (int j = 1; j < path.size(); j++) {
+            Assert.assertEquals("Each step should be a single move", SystemConstants.DRONE_MOVE_DISTANCE,
+                    handler.distanceTo(path.get(j - 1).coordinates, path.get(j).coordinates), 1e-12);
+            Assert.assertFalse("Path should avoid the no-fly zones", flightMap.isInNoFlyZone(path.get(j).coordinates));
+        }
+    }
+
+    @Test
+    public void findShortestPathShouldFindValidPathWithBucketQueue() {
+
+        // Arrange
+        LngLat start = new LngLat(-3.202541470527649, 55.943284737579376); // Sora Lella Vegan Restaurant
+        LngLat goal = new LngLat(-3.186874, 55.944494); // Appleton Tower
+        SearchContext heap = new SearchContext();
+        SearchContext buckets = new SearchContext();
+        buckets.setBucketQueue(true);
+        LngLatHandler handler = new LngLatHandler();
+
+        // Act
+        boolean heapResult = AStar.findShortestPath(heap, flightMap, new Node(start), new Node(goal));
+        boolean bucketResult = AStar.findShortestPath(buckets, flightMap, new Node(start), new Node(goal));
+
+        // Assert
+        Assert.assertTrue(heapResult);
+        Assert.assertTrue(bucketResult);
+        List<Node> path = buckets.getPath();
+        Assert.assertTrue("Bucket order should give a path of about the same length",
+                path.size() <= heap.getPath().size() + 2);
+        Assert.assertTrue("Path should end close to the goal", handler.isCloseTo(path.get(path.size() - 1).coordinates, goal));
+        for (int j = 1; j < path.size(); j++) {
+            Assert.assertEquals("Each step should be a single move", SystemConstants.DRONE_MOVE_DISTANCE,
+                    handler.distanceTo(path.get(j - 1).coordinates, path.get(j).coordinates), 1e-12);
+        }
+    }
+
+    @Test
+    public void findBidirectionalPathShouldFindValidPathEndingCloseToGoal() {
+
+        // Arrange
+        LngLat start = new LngLat(-3.1912869215011597, 55.945535152517735); // Civerinos Slice
+        LngLat goal = new LngLat(-3.186874, 55.944494); // Appleton Tower
+        SearchContext forward = new SearchContext();
+        forward.setWeightSchedule(1.0);
+        SearchContext bidirectional = new SearchContext();
+        bidirectional.setWeightSchedule(1.0);
+        LngLatHandler handler = new LngLatHandler();
+
+        // Act
+        boolean forwardResult = AStar.findShortestPath(forward, flightMap, new Node(start), new Node(goal));
+        boolean bidirectionalResult = AStar.findBidirectionalPath(bidirectional, flightMap, new Node(start), new Node(goal));
+
+        // Assert
+        Assert.assertTrue(forwardResult);
+        Assert.assertTrue(bidirectionalResult);
+        List<Node> path = bidirectional.getPath();
+        Assert.assertEquals("Meeting frontiers should give a shortest path", forward.getPath().size(), path.size());
+        Assert.assertEquals("Path should start at the start", start, path.get(0).coordinates);
+        Assert.assertTrue("Path should end close to the goal", handler.isCloseTo(path.get(path.size() - 1).coordinates, goal));
+        for (int j = 1; j < path.size(); j++) {
+            Assert.assertEquals("Each step should be a single move", SystemConstants.DRONE_MOVE_DISTANCE,
+                    handler.distanceTo(path.get(j - 1).coordinates, path.get(j).coordinates), 1e-12);
+            Assert.assertSame(path.get(j - 1), path.get(j).parent);
+            Assert.assertFalse("Path should avoid the no-fly zones", flightMap.isInNoFlyZone(path.get(j).coordinates));
+            Assert.assertFalse("Path should not leave the central area once inside",
+                    flightMap.isInCentralArea(path.get(j - 1).coordinates) && !flightMap.isInCentralArea(path.get(j).coordinates));
+        }
+    }
+
+    @Test
+    public void findShortestPathShouldNotCutAcrossNoFlyZoneCorners() {
+
+        // Arrange
+        LngLat start = new LngLat(-3.202541470527649, 55.943284737579376); // Sora Lella Vegan Restaurant
+        LngLat goal = new LngLat(-3.186874, 55.944494); // Appleton Tower
+        CompiledRegion[] zones = CompiledRegion.compileAll(noFlyZones);
+        SearchContext context = new SearchContext();
+
+        // Act
+        boolean result = AStar.findShortestPath(context, flightMap, new Node(start), new Node(goal));
+
+        // Assert
+        Assert.assertTrue(result);
+        List<Node> path = context.getPath();
+        for (int j = 1; j < path.size(); j++) {
+            LngLat from = path.get(j - 1).coordinates;
+            LngLat to = path.get(j).coordinates;
+            for (CompiledRegion zone : zones) {
+                Assert.assertFalse("No move should touch a no-fly zone",
+                        zone.touchesSegment(from.lng(), from.lat(), to.lng(), to.lat()));
+            }
+        }
     }
 
+    @Test
+    public void searchNodesShouldKeepWhetherTheyAreInsideTheCentralArea() {
+
+        // Arrange
+        LngLat restaurant = new LngLat(-3.202541470527649, 55.943284737579376); // Sora Lella Vegan Restaurant
+        Node appletonTower = new Node(new LngLat(-3.186874, 55.944494));
+        SearchContext forward = new SearchContext();
+        SearchContext backward = new SearchContext();
+
+        // Act
+        boolean forwardResult = AStar.findShortestPath(forward, flightMap, new Node(restaurant), appletonTower);
+        List<List<Node>> paths = AStar.findPathsToGoal(backward, flightMap, List.of(restaurant), appletonTower);
+
+        // Assert
+        Assert.assertTrue(forwardResult);
+        Assert.assertNotNull(paths.get(0));
+        for (SearchContext context : List.of(forward, backward)) {
+            NodeArena arena = context.arena;
+            for (int node = 0; node < arena.size(); node++) {
+                Assert.assertEquals("Each node should hold whether it is inside the central area",
+                        flightMap.isInCentralArea(arena.lng[node], arena.lat[node]), arena.central[node]);
+                Assert.assertEquals("Each node key should hold the same central area state",
+                        arena.central[node], Lattice.isCentral(arena.key[node]));
+            }
+        }
+        List<Node> path = forward.getPath();
+        for (int j = 1; j < path.size(); j++) {
+            Assert.assertFalse("Path should not leave the central area once inside",
+                    flightMap.isInCentralArea(path.get(j - 1).coordinates) && !flightMap.isInCentralArea(path.get(j).coordinates));
+        }
+    }
+
+    @Test
+    public void findShortestPathShouldNotLetInsideNodesHideOutsideNodesInTheSameCell() {
+
+        // Arrange a start and goal on either side of the south-west corner of the central area, whose straight line
+        // cuts the corner: nodes inside the area reach the cells on its boundary first, but cannot leave it again
+        LngLat start = new LngLat(-3.19292102454499, 55.94323989582995);
+        Node goal = new Node(new LngLat(-3.1916739725696424, 55.942299995221596));
+        SearchContext context = new SearchContext();
+        context.setWeightSchedule(1.0);
+
+        // Act
+        boolean result = AStar.findShortestPath(context, flightMap, new Node(start), goal);
+
+        // Assert
+        Assert.assertTrue(result);
+        List<Node> path = context.getPath();
+        Assert.assertEquals("Path round the corner should be as short as the straight line, ten moves", 10, path.size() - 1);
+        for (Node node : path) {
+            Assert.assertFalse("Path should stay outside the central area", flightMap.isInCentralArea(node.coordinates));
+        }
+    }
 }
@@ -0,0 +1,163 @@
+package uk.ac.ed.inf;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Unit test for the bucket queue
+ *
+ *  @author B209981
+ */
+
+public class BucketQueueTest {
+
+    private static final double MOVE = 0.00015;
+    private static final double WIDTH = MOVE / BucketQueue.BUCKETS_PER_MOVE;
+
+    private final NodeArena arena = new NodeArena();
+
+    // Creates a node with the given total cost
+    private int nodeWithTotal(double total) {
+        int node = arena.add(total, total);
+        arena.total[node] = total;
+        return node;
+    }
+
+    @Test
+    public void whenNodesAddedThenPolledInOrderOfBucket() {
+        // Arrange
+        BucketQueue queue = new BucketQueue(arena, MOVE);
+        for (int i = 0; i < 500; i++) {
+            queue.add(nodeWithTotal(ThreadLocalRandom.current().nextDouble(0, 100 * MOVE)));
+        }
+
+        // Act and Assert
+        double previous = -1;
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            assertTrue("Totals should be polled in increasing order up to one bucket", arena.total[node] > previous - WIDTH);
+            assertFalse("Polled node should no longer be in the queue", queue.contains(node));
+            previous = arena.total[node];
+        }
+        assertEquals("Polling an empty queue should return NONE", NodeArena.NONE, queue.poll());
+    }
+
+    @Test
+    public void whenKeyDecreasedThenNodeMovesToFront() {
+        // Arrange
+        BucketQueue queue = new BucketQueue(arena, MOVE);
+        int first = nodeWithTotal(10 * MOVE);
+        int second = nodeWithTotal(20 * MOVE);
+        int third = nodeWithTotal(30 * MOVE);
+        queue.add(first);
+        queue.add(second);
+        queue.add(third);
+
+        // Act
+        arena.total[third] = 5 * MOVE;
+        queue.decreaseKey(third);
+
+        // Assert
+        assertTrue("Node should still be in the queue", queue.contains(third));
+        assertEquals("Node with decreased key should be polled first", third, queue.poll());
+        assertEquals(first, queue.poll());
+        assertEquals(second, queue.poll());
+    }
+
+    @Test
+    public void whenNodesShareBucketThenLastAddedIsPolledFirst() {
+        // Arrange
+        BucketQueue queue = new BucketQueue(arena, MOVE);
+        int shallow = nodeWithTotal(10 * MOVE);
+        int deep = nodeWithTotal(10 * MOVE);
+        queue.add(shallow);
+        queue.add(deep);
+
+        // Act and Assert
+        assertEquals(deep, queue.peek());
+        assertEquals(deep, queue.poll());
+        assertEquals(shallow, queue.poll());
+    }
+
+    @Test
+    public void whenNodesRemovedThenRemainingArePolled() {
+        // Arrange
+        BucketQueue queue = new BucketQueue(arena, MOVE);
+        int[] nodes = new int[100];
+        for (int i = 0; i < 100; i++) {
+            nodes[i] = nodeWithTotal(ThreadLocalRandom.current().nextDouble(0, 10 * MOVE));
+            queue.add(nodes[i]);
+        }
+
+        // Act
+        for (int i = 0; i < nodes.length; i += 2) {
+            queue.remove(nodes[i]);
+        }
+
+        // Assert
+        assertEquals(50, queue.size());
+        assertFalse(queue.contains(nodes[0]));
+        assertTrue(queue.contains(nodes[1]));
+        int count = 0;
+        while (queue.poll() != NodeArena.NONE) {
+            count++;
+        }
+        assertEquals(50, count);
+    }
+
+    @Test
+    public void whenTotalsLoweredByUpdateThenOrderIsRestored() {
+        // Arrange
+        BucketQueue queue = new BucketQueue(arena, MOVE);
+        for (int i = 0; i < 100; i++) {
+            queue.add(nodeWithTotal(50 * MOVE + i * WIDTH));
+        }
+
+        // Act
+        queue.updateAll(node -> arena.total[node] = 100 * MOVE - arena.total[node]);
+
+        // Assert
+        assertEquals(100, queue.size());
+        double previous = -1;
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            assertTrue("Totals should be polled in increasing order up to one bucket", arena.total[node] > previous - WIDTH);
+            previous = arena.total[node];
+        }
+    }
+
+    @Test
+    public void whenNodeAddedBelowFirstBucketThenItIsPolledFirst() {
+        // Arrange
+        BucketQueue queue = new BucketQueue(arena, MOVE);
+        int high = nodeWithTotal(100 * MOVE);
+        int low = nodeWithTotal(MOVE);
+        queue.add(high);
+
+        // Act
+        queue.add(low);
+
+        // Assert
+        assertTrue(queue.contains(high));
+        assertEquals(low, queue.poll());
+        assertEquals(high, queue.poll());
+    }
+
+    @Test
+    public void whenClearedThenNodesAreNoLongerContained() {
+        // Arrange
+        BucketQueue queue = new BucketQueue(arena, MOVE);
+        int node = nodeWithTotal(MOVE);
+        queue.add(node);
+
+        // Act
+        queue.clear();
+
+        // Assert
+        assertTrue("Queue should be empty", queue.isEmpty());
+        assertFalse("Node should not be in the queue", queue.contains(node));
+        assertEquals(IndexedHeap.NOT_IN_HEAP, arena.queueIndex[node]);
+    }
+}
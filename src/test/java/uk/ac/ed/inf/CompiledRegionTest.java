@@ -0,0 +1,166 @@
+package uk.ac.ed.inf;
+
+import org.junit.Test;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for CompiledRegion
+ *
+ *  @author B209981
+ */
+public class CompiledRegionTest {
+
+    private final NamedRegion bristoSquare = new NamedRegion("Bristo Square Open Area", new LngLat[]{
+            new LngLat(-3.189543485641479, 55.94552313663306),
+            new LngLat(-3.189382553100586, 55.94553214854692),
+            new LngLat(-3.189259171485901, 55.94544803726933),
+            new LngLat(-3.1892001628875732, 55.94533688994374),
+            new LngLat(-3.189194798469543, 55.94519570234043),
+            new LngLat(-3.189135789871216, 55.94511759833873),
+            new LngLat(-3.188138008117676, 55.9452738061846),
+            new LngLat(-3.1885510683059692, 55.946105902745614),
+            new LngLat(-3.1895381212234497, 55.94555918109299),
+            new LngLat(-3.189543485641479, 55.94552313663306)
+    });
+
+    private final NamedRegion central = new NamedRegion("central", new LngLat[]{
+            new LngLat(-3.192473, 55.946233),
+            new LngLat(-3.192473, 55.942617),
+            new LngLat(-3.184319, 55.942617),
+            new LngLat(-3.184319, 55.946233)
+    });
+
+    @Test
+    public void whenRandomPointsCheckedThenResultsMatchPlainRayCast() {
+        // Arrange
+        Random random = new Random(5);
+        CompiledRegion compiled = new CompiledRegion(bristoSquare);
+
+        for (int i = 0; i < 50_000; i++) {
+            double lng = -3.1898 + random.nextDouble() * 0.002;
+            double lat = 55.9450 + random.nextDouble() * 0.0012;
+
+            // Act and Assert
+            assertEquals(rayCast(bristoSquare, lng, lat), compiled.contains(lng, lat));
+        }
+    }
+
+    @Test
+    public void whenCompiledThenEdgesAreSortedAndBoxHoldsVertices() {
+        // Act
+        CompiledRegion compiled = new CompiledRegion(bristoSquare);
+
+        // Assert
+        // The closing vertex repeats the first, so that edge has zero length and is left out
+        assertEquals(9, compiled.edgeCount);
+        for (int e = 1; e < compiled.edgeCount; e++) {
+            assertTrue(compiled.lowLat[e - 1] <= compiled.lowLat[e]);
+        }
+        for (int e = 0; e < compiled.edgeCount; e++) {
+            assertTrue(compiled.lowLat[e] < compiled.highLat[e]);
+        }
+        for (LngLat vertex : bristoSquare.vertices()) {
+            assertTrue(vertex.lng() >= compiled.minLng && vertex.lng() <= compiled.maxLng);
+            assertTrue(vertex.lat() >= compiled.minLat && vertex.lat() <= compiled.maxLat);
+        }
+    }
+
+    @Test
+    public void whenRectangleCompiledThenOnlyNorthSouthEdgesAreKept() {
+        // Act
+        CompiledRegion compiled = new CompiledRegion(central);
+
+        // Assert
+        assertEquals(2, compiled.edgeCount);
+        assertTrue(compiled.contains(-3.188, 55.944));
+        assertFalse(compiled.contains(-3.193, 55.944));
+        assertFalse(compiled.contains(-3.188, 55.947));
+    }
+
+    @Test
+    public void whenRegionHasFewerThanThreeVerticesThenNothingContained() {
+        // Arrange
+        NamedRegion line = new NamedRegion("line", new LngLat[]{
+                new LngLat(-3.19, 55.94),
+                new LngLat(-3.18, 55.95)
+        });
+
+        // Act
+        CompiledRegion compiled = new CompiledRegion(line);
+
+        // Assert
+        assertEquals(0, compiled.edgeCount);
+        assertFalse(compiled.contains(-3.185, 55.945));
+    }
+
+    @Test
+    public void whenSegmentCutsCornerThenItTouchesWithBothEndsOutside() {
+        // Arrange
+        CompiledRegion compiled = new CompiledRegion(central);
+
+        // Act
+        // West of the western edge to north of the northern edge, across the north-west corner
+        boolean touches = compiled.touchesSegment(-3.1926, 55.9460, -3.1922, 55.9464);
+
+        // Assert
+        assertFalse(compiled.contains(-3.1926, 55.9460));
+        assertFalse(compiled.contains(-3.1922, 55.9464));
+        assertTrue(touches);
+        assertFalse(compiled.touchesSegment(-3.1926, 55.9460, -3.1926, 55.9464));
+        assertFalse(compiled.touchesSegment(-3.188, 55.944, -3.187, 55.945));
+    }
+
+    @Test
+    public void whenRandomSegmentsCheckedThenResultsMatchEveryEdge() {
+        // Arrange
+        Random random = new Random(11);
+        CompiledRegion compiled = new CompiledRegion(bristoSquare);
+        LngLat[] corners = bristoSquare.vertices();
+
+        for (int i = 0; i < 20_000; i++) {
+            double fromLng = -3.1898 + random.nextDouble() * 0.002;
+            double fromLat = 55.9450 + random.nextDouble() * 0.0012;
+            double toLng = fromLng + (random.nextDouble() - 0.5) * 0.0006;
+            double toLat = fromLat + (random.nextDouble() - 0.5) * 0.0006;
+            boolean expected = false;
+            for (int v = 0; v < corners.length; v++) {
+                LngLat a = corners[v];
+                LngLat b = corners[(v + 1) % corners.length];
+                expected |= CompiledRegion.segmentsTouch(fromLng, fromLat, toLng, toLat, a.lng(), a.lat(), b.lng(), b.lat());
+            }
+
+            // Act and Assert
+            assertEquals(expected, compiled.touchesSegment(fromLng, fromLat, toLng, toLat));
+        }
+    }
+
+    @Test
+    public void whenSegmentsMeetOnlyAtAnEndThenTheyTouch() {
+        // Act and Assert
+        assertTrue(CompiledRegion.segmentsTouch(0, 0, 2, 2, 2, 2, 3, 0));
+        assertTrue(CompiledRegion.segmentsTouch(0, 0, 2, 0, 1, 0, 1, 1));
+        assertTrue(CompiledRegion.segmentsTouch(0, 0, 2, 0, 1, 0, 3, 0));
+        assertFalse(CompiledRegion.segmentsTouch(0, 0, 2, 0, 3, 0, 4, 0));
+        assertFalse(CompiledRegion.segmentsTouch(0, 0, 2, 0, 0, 1, 2, 1));
+    }
+
+    // Checks a point with the textbook ray cast, recomputing every edge
+    private static boolean rayCast(NamedRegion region, double lng, double lat) {
+        LngLat[] corners = region.vertices();
+        boolean inside = false;
+        for (int i = 0; i < corners.length; i++) {
+            LngLat a = corners[i];
+            LngLat b = corners[(i + 1) % corners.length];
+            if ((a.lat() > lat) != (b.lat() > lat)
+                    && lng < a.lng() + (lat - a.lat()) * (b.lng() - a.lng()) / (b.lat() - a.lat())) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+}
@@ -0,0 +1,149 @@
+package uk.ac.ed.inf;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the flight map
+ *
+ *  @author B209981
+ */
+public class FlightMapTest {
+
+    private NamedRegion[] noFlyZones;
+    private NamedRegion centralArea;
+
+    @Before
+    public void setUp() {
+        noFlyZones = new NamedRegion[]{
+                new NamedRegion("George Square Area", new LngLat[]{
+                        new LngLat(-3.190578818321228, 55.94402412577528),
+                        new LngLat(-3.1899887323379517, 55.94284650540911),
+                        new LngLat(-3.187097311019897, 55.94328811724263),
+                        new LngLat(-3.187682032585144, 55.944477740393744),
+                        new LngLat(-3.190578818321228, 55.94402412577528)
+                }),
+                new NamedRegion("Dr Elsie Inglis Quadrangle", new LngLat[]{
+                        new LngLat(-3.1907182931900024, 55.94519570234043),
+                        new LngLat(-3.1906163692474365, 55.94498241796357),
+                        new LngLat(-3.1900262832641597, 55.94507554227258),
+                        new LngLat(-3.190133571624756, 55.94529783810495),
+                        new LngLat(-3.1907182931900024, 55.94519570234043)
+                })
+        };
+        centralArea = new NamedRegion("central", new LngLat[]{
+                new LngLat(-3.192473, 55.946233),
+                new LngLat(-3.192473, 55.942617),
+                new LngLat(-3.184319, 55.942617),
+                new LngLat(-3.184319, 55.946233)
+        });
+    }
+
+    @Test
+    public void whenConstructedThenSnapshotIsNotAffectedByTheInputArray() {
+        // Arrange
+        FlightMap flightMap = new FlightMap(centralArea, noFlyZones);
+
+        // Act
+        noFlyZones[0] = noFlyZones[1];
+        flightMap.noFlyZones()[1] = noFlyZones[0];
+
+        // Assert
+        assertEquals("George Square Area", flightMap.noFlyZones()[0].name());
+        assertEquals("Dr Elsie Inglis Quadrangle", flightMap.noFlyZones()[1].name());
+    }
+
+    @Test
+    public void whenConstructedThenFingerprintMatchesPathCache() {
+        FlightMap flightMap = new FlightMap(centralArea, noFlyZones);
+        assertEquals(PathCache.fingerprint(noFlyZones, centralArea), flightMap.fingerprint());
+    }
+
+    @Test
+    public void whenPositionsCheckedThenResultsMatchRegionTests() {
+        // Arrange
+        FlightMap flightMap = new FlightMap(centralArea, noFlyZones);
+        LngLatHandler handler = new LngLatHandler();
+
+        for (int i = 0; i < 10_000; i++) {
+            LngLat position = new LngLat(ThreadLocalRandom.current().nextDouble(-3.194, -3.183),
+                    ThreadLocalRandom.current().nextDouble(55.942, 55.947));
+
+            // Act
+            boolean inNoFlyZone = flightMap.isInNoFlyZone(position);
+            boolean inCentralArea = flightMap.isInCentralArea(position);
+
+            // Assert
+            assertEquals(handler.isInRegion(position, noFlyZones[0]) || handler.isInRegion(position, noFlyZones[1]), inNoFlyZone);
+            assertEquals(handler.isInRegion(position, centralArea), inCentralArea);
+        }
+    }
+
+    @Test
+    public void whenMovesCheckedThenCrossingsMatchEdgeTests() {
+        // Arrange
+        FlightMap flightMap = new FlightMap(centralArea, noFlyZones);
+        CompiledRegion[] zones = CompiledRegion.compileAll(noFlyZones);
+        PointBatch batch = new PointBatch();
+        double move = SystemConstants.DRONE_MOVE_DISTANCE;
+
+        for (int round = 0; round < 5_000; round++) {
+            double fromLng = ThreadLocalRandom.current().nextDouble(-3.192, -3.186);
+            double fromLat = ThreadLocalRandom.current().nextDouble(55.942, 55.946);
+            batch.clear();
+            for (int d = 0; d < PointBatch.CAPACITY; d++) {
+                double angle = Math.toRadians(22.5 * d);
+                batch.add(fromLng + move * Math.cos(angle), fromLat + move * Math.sin(angle));
+            }
+
+            // Act
+            boolean gathered = flightMap.gatherNoFlyEdges(batch, fromLng, fromLat);
+
+            // Assert
+            for (int i = 0; i < batch.count; i++) {
+                boolean expected = false;
+                for (CompiledRegion zone : zones) {
+                    expected |= zone.touchesSegment(fromLng, fromLat, batch.lng[i], batch.lat[i]);
+                }
+                assertEquals(expected, flightMap.crossesNoFlyZone(fromLng, fromLat, batch.lng[i], batch.lat[i]));
+                assertEquals(expected, gathered && flightMap.crossesGatheredEdge(batch, i, fromLng, fromLat));
+            }
+        }
+    }
+
+    @Test
+    public void whenBoundaryCannotBeCrossedThenNeighboursShareCentralState() {
+        // Arrange
+        FlightMap flightMap = new FlightMap(centralArea, noFlyZones);
+        double move = SystemConstants.DRONE_MOVE_DISTANCE;
+        int away = 0;
+
+        for (int round = 0; round < 5_000; round++) {
+            // Around the whole central area, so many positions are one move from its boundary
+            double fromLng = ThreadLocalRandom.current().nextDouble(-3.1930, -3.1838);
+            double fromLat = ThreadLocalRandom.current().nextDouble(55.9421, 55.9467);
+
+            // Act
+            boolean mayCross = flightMap.mayCrossCentralBoundary(fromLng, fromLat);
+
+            // Assert
+            if (mayCross) {
+                continue;
+            }
+            away++;
+            boolean fromCentral = flightMap.isInCentralArea(fromLng, fromLat);
+            for (int d = 0; d < LngLatHandler.COMPASS_DIRECTIONS; d++) {
+                double angle = Math.toRadians(22.5 * d);
+                assertEquals(fromCentral, flightMap.isInCentralArea(fromLng + move * Math.cos(angle), fromLat + move * Math.sin(angle)));
+            }
+        }
+        assertTrue("Most positions should be away from the boundary", away > 2_500);
+    }
+}
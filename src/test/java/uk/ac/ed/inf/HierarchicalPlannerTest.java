@@ -0,0 +1,149 @@
+package uk.ac.ed.inf;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+import java.util.List;
+
+/**
+ * Unit test for the hierarchical planner
+ *
+ *  @author B209981
+ */
+
+public class HierarchicalPlannerTest {
+
+    private FlightMap flightMap;
+
+    @Before
+    public void setUp() {
+        flightMap = TestGeofence.edinburgh();
+    }
+
+    @Test
+    public void findShortestPathShouldFindValidPathAndReuseCachedRoutes() {
+
+        // Arrange
+        LngLat start = new LngLat(-3.202541470527649, 55.943284737579376); // Sora Lella Vegan Restaurant
+        LngLat goal = new LngLat(-3.186874, 55.944494); // Appleton Tower
+        SearchContext lattice = new SearchContext();
+        lattice.setWeightSchedule(1.0);
+        SearchContext hierarchical = new SearchContext();
+        hierarchical.setWeightSchedule(1.0);
+        LngLatHandler handler = new LngLatHandler();
+
+        // Act
+        boolean latticeResult = AStar.findShortestPath(lattice, flightMap, new Node(start), new Node(goal));
+        boolean firstResult = HierarchicalPlanner.findShortestPath(hierarchical, flightMap, new Node(start), new Node(goal));
+        int firstExpansions = hierarchical.getExpandedNodes();
+        boolean secondResult = HierarchicalPlanner.findShortestPath(hierarchical, flightMap, new Node(start), new Node(goal));
+
+        // Assert
+        Assert.assertTrue(latticeResult);
+        Assert.assertTrue(firstResult);
+        Assert.assertTrue(secondResult);
+        List<Node> path = hierarchical.getPath();
+        Assert.assertTrue("Hierarchical search should expand fewer nodes", firstExpansions < lattice.getExpandedNodes());
+        Assert.assertTrue("Cached routes should not be searched again", hierarchical.getExpandedNodes() <= firstExpansions);
+        Assert.assertTrue("Path should be close to the shortest", path.size() <= lattice.getPath().size() * 1.1);
+        Assert.assertEquals("Path should start at the start", start, path.get(0).coordinates);
+        Assert.assertTrue("Path should end close to the goal", handler.isCloseTo(path.get(path.size() - 1).coordinates, goal));
+        for (int j = 1; j < path.size(); j++) {
+            Assert.assertEquals("Each step should be a single move", SystemConstants.DRONE_MOVE_DISTANCE,
+                    handler.distanceTo(path.get(j - 1).coordinates, path.get(j).coordinates), 1e-12);
+            Assert.assertSame(path.get(j - 1), path.get(j).parent);
+            Assert.assertEquals(j * SystemConstants.DRONE_MOVE_DISTANCE, path.get(j).cost, 1e-12);
+            Assert.assertFalse("Path should avoid the no-fly zones", flightMap.isInNoFlyZone(path.get(j).coordinates));
+            Assert.assertFalse("Path should not leave the central area once inside",
+                    flightMap.isInCentralArea(path.get(j - 1).coordinates) && !flightMap.isInCentralArea(path.get(j).coordinates));
+        }
+    }
+
+    @Test
+    public void cachedRouteCostsShouldNotDependOnTheSettingsOfTheFirstSearch() {
+
+        // Arrange
+        LngLat start = new LngLat(-3.202541470527649, 55.943284737579376); // Sora Lella Vegan Restaurant
+        LngLat goal = new LngLat(-3.186874, 55.944494); // Appleton Tower
+        FlightMap greedyMap = TestGeofence.edinburgh();
+        SearchContext greedy = new SearchContext();
+        greedy.setWeightSchedule(5.0);
+        greedy.setDirections(8);
+        SearchContext optimal = new SearchContext();
+        optimal.setWeightSchedule(1.0);
+
+        // Act
+        boolean greedyResult = HierarchicalPlanner.findShortestPath(greedy, greedyMap, new Node(start), new Node(goal));
+        boolean laterResult = HierarchicalPlanner.findShortestPath(optimal, greedyMap, new Node(start), new Node(goal));
+        boolean optimalResult = HierarchicalPlanner.findShortestPath(optimal, flightMap, new Node(start), new Node(goal));
+
+        // Assert
+        Assert.assertTrue(greedyResult);
+        Assert.assertTrue(laterResult);
+        Assert.assertTrue(optimalResult);
+        ClusterGraph greedyGraph = greedyMap.clusterGraph();
+        ClusterGraph optimalGraph = flightMap.clusterGraph();
+        int searchedIn8 = 0;
+        int compared = 0;
+        for (int c = 0; c < optimalGraph.clusterEntrances.length; c++) {
+            int count = optimalGraph.clusterEntrances[c].length;
+            for (int from = 0; from < count; from++) {
+                for (int to = 0; to < count; to++) {
+                    Assert.assertTrue("Routes in 8 directions should only be searched for the 8 direction search",
+                            Float.isNaN(optimalGraph.routeCost(c, from, to, 8)));
+                    if (!Float.isNaN(greedyGraph.routeCost(c, from, to, 8))) {
+                        searchedIn8++;
+                    }
+                    Assert.assertEquals("Routes in 16 directions should be the same whoever searched first",
+                            optimalGraph.routeCost(c, from, to, 16), greedyGraph.routeCost(c, from, to, 16), 0);
+                    if (!Float.isNaN(optimalGraph.routeCost(c, from, to, 16))) {
+                        compared++;
+                    }
+                }
+            }
+        }
+        Assert.assertTrue(searchedIn8 > 0);
+        Assert.assertTrue(compared > 0);
+    }
+
+    @Test
+    public void findShortestPathShouldFallBackToLatticeSearchOutsideTheClusters() {
+
+        // Arrange
+        LngLat start = new LngLat(-3.25, 55.944); // Far west of every cluster
+        LngLat goal = new LngLat(-3.25, 55.945);
+        SearchContext context = new SearchContext();
+
+        // Act
+        boolean result = HierarchicalPlanner.findShortestPath(context, flightMap, new Node(start), new Node(goal));
+
+        // Assert
+        Assert.assertEquals(-1, flightMap.clusterGraph().clusterOf(start.lng(), start.lat()));
+        Assert.assertTrue(result);
+        Assert.assertTrue(new LngLatHandler().isCloseTo(context.getPath().get(context.getPath().size() - 1).coordinates, goal));
+    }
+
+    @Test
+    public void entrancesShouldLieOnTheBorderOfBothTheirClustersAndOutsideNoFlyZones() {
+
+        // Act
+        ClusterGraph graph = flightMap.clusterGraph();
+
+        // Assert
+        Assert.assertTrue(graph.entranceLng.length > 0);
+        for (int e = 0; e < graph.entranceLng.length; e++) {
+            Assert.assertFalse(flightMap.isInNoFlyZone(graph.entranceLng[e], graph.entranceLat[e]));
+            int first = graph.entranceClusters[2 * e];
+            int second = graph.entranceClusters[2 * e + 1];
+            Assert.assertTrue("Clusters of an entrance should be neighbours",
+                    second - first == 1 || second - first == graph.columns);
+            double borderLng = graph.minLng + (second % graph.columns) * ClusterGraph.CLUSTER_SIZE;
+            double borderLat = graph.minLat + (second / graph.columns) * ClusterGraph.CLUSTER_SIZE;
+            Assert.assertEquals(second - first == 1 ? borderLng : borderLat,
+                    second - first == 1 ? graph.entranceLng[e] : graph.entranceLat[e], 1e-12);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package uk.ac.ed.inf;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit test for the incremental planner
+ *
+ *  @author B209981
+ */
+
+public class IncrementalPlannerTest {
+
+    private NamedRegion[] noFlyZones;
+    private NamedRegion centralArea;
+    private FlightMap flightMap;
+
+    @Before
+    public void setUp() {
+        noFlyZones = TestGeofence.noFlyZones();
+        centralArea = TestGeofence.centralArea();
+        flightMap = new FlightMap(centralArea, noFlyZones);
+    }
+
+    private static final LngLat APPLETON_TOWER = new LngLat(-3.186874, 55.944494);
+    private static final LngLat SORA_LELLA = new LngLat(-3.202541470527649, 55.943284737579376);
+    private static final LngLat CIVERINOS = new LngLat(-3.1912869215011597, 55.945535152517735);
+
+    // Adds a rectangular no-fly zone to the geofence of the test
+    private FlightMap withZone(double minLng, double minLat, double maxLng, double maxLat) {
+        NamedRegion[] zones = Arrays.copyOf(noFlyZones, noFlyZones.length + 1);
+        zones[noFlyZones.length] = new NamedRegion("Closure", new LngLat[]{
+                new LngLat(minLng, minLat),
+                new LngLat(maxLng, minLat),
+                new LngLat(maxLng, maxLat),
+                new LngLat(minLng, maxLat),
+                new LngLat(minLng, minLat)
+        });
+        return new FlightMap(centralArea, zones);
+    }
+
+    @Test
+    public void whenZoneAddedFarFromSearchesThenNoPathIsRepaired() {
+
+        // Arrange
+        IncrementalPlanner planner = new IncrementalPlanner(flightMap);
+        List<Node> soraLella = planner.findPath(SORA_LELLA, APPLETON_TOWER);
+        List<Node> civerinos = planner.findPath(CIVERINOS, APPLETON_TOWER);
+
+        // Act
+        int repaired = planner.updateGeofence(withZone(-3.25, 55.93, -3.24, 55.931));
+
+        // Assert
+        Assert.assertEquals(0, repaired);
+        Assert.assertSame(soraLella, planner.findPath(SORA_LELLA, APPLETON_TOWER));
+        Assert.assertSame(civerinos, planner.findPath(CIVERINOS, APPLETON_TOWER));
+    }
+
+    @Test
+    public void whenZoneAddedAcrossPathThenOnlyTheRestOfThatPathIsSearchedAgain() {
+
+        // Arrange
+        IncrementalPlanner planner = new IncrementalPlanner(flightMap);
+        List<Node> before = planner.findPath(SORA_LELLA, APPLETON_TOWER);
+        List<Node> civerinos = planner.findPath(CIVERINOS, APPLETON_TOWER);
+        FlightMap updated = withZone(-3.197, 55.9425, -3.196, 55.945);
+        LngLatHandler handler = new LngLatHandler();
+
+        // Act
+        int repaired = planner.updateGeofence(updated);
+
+        // Assert
+        List<Node> path = planner.findPath(SORA_LELLA, APPLETON_TOWER);
+        Assert.assertEquals(1, repaired);
+        Assert.assertSame("Path clear of the new zone should be kept", civerinos, planner.findPath(CIVERINOS, APPLETON_TOWER));
+        Assert.assertSame("Part before the new zone should be kept", before.get(0), path.get(0));
+        Assert.assertTrue("Path should end close to the goal", handler.isCloseTo(path.get(path.size() - 1).coordinates, APPLETON_TOWER));
+        for (int j = 1; j < path.size(); j++) {
+            Assert.assertEquals("Each step should be a single move", SystemConstants.DRONE_MOVE_DISTANCE,
+                    handler.distanceTo(path.get(j - 1).coordinates, path.get(j).coordinates), 1e-12);
+            Assert.assertSame(path.get(j - 1), path.get(j).parent);
+            Assert.assertEquals(j * SystemConstants.DRONE_MOVE_DISTANCE, path.get(j).cost, 1e-12);
+            Assert.assertFalse("Path should avoid the new zone", updated.isInNoFlyZone(path.get(j).coordinates));
+        }
+    }
+
+    @Test
+    public void whenCheapestDetourLeavesPathLongBeforeNewZoneThenPathIsSearchedAgainInFull() {
+
+        // Arrange a long wall whose cheapest way around turns off the old path well before the back-off
+        IncrementalPlanner planner = new IncrementalPlanner(flightMap);
+        List<Node> before = planner.findPath(SORA_LELLA, APPLETON_TOWER);
+        FlightMap updated = withZone(-3.197, 55.941, -3.1967, 55.9475);
+        SearchContext fresh = PathFinding.newSearchContext();
+        AStar.findShortestPath(fresh, updated, new Node(SORA_LELLA), new Node(APPLETON_TOWER));
+
+        // Act
+        int repaired = planner.updateGeofence(updated);
+
+        // Assert
+        List<Node> path = planner.findPath(SORA_LELLA, APPLETON_TOWER);
+        Assert.assertEquals(1, repaired);
+        Assert.assertNotSame("Path should not be spliced onto the old one", before.get(0), path.get(0));
+        Assert.assertEquals(fresh.getPath().size(), path.size());
+    }
+
+    @Test
+    public void whenZoneRemovedNextToSearchThenPathIsSearchedAgainInFull() {
+
+        // Arrange
+        IncrementalPlanner planner = new IncrementalPlanner(withZone(-3.197, 55.9425, -3.196, 55.945));
+        List<Node> detour = planner.findPath(SORA_LELLA, APPLETON_TOWER);
+        SearchContext fresh = new SearchContext();
+        AStar.findShortestPath(fresh, flightMap, new Node(SORA_LELLA), new Node(APPLETON_TOWER));
+
+        // Act
+        int repaired = planner.updateGeofence(flightMap);
+
+        // Assert
+        List<Node> path = planner.findPath(SORA_LELLA, APPLETON_TOWER);
+        Assert.assertEquals(1, repaired);
+        Assert.assertTrue("Path should be shorter without the zone", path.size() < detour.size());
+        Assert.assertEquals(fresh.getPath().size(), path.size());
+    }
+
+    @Test
+    public void whenZoneRemovedNextToKeptPartOfSplicedPathThenPathIsSearchedAgainInFull() {
+
+        // Arrange a wall near the start the first path goes around, then a closure that splices the path after it
+        FlightMap wall = withZone(-3.2015, 55.9428, -3.2012, 55.9438);
+        IncrementalPlanner planner = new IncrementalPlanner(wall);
+        List<Node> detour = planner.findPath(SORA_LELLA, APPLETON_TOWER);
+        NamedRegion closure = withZone(-3.197, 55.9425, -3.196, 55.945).noFlyZones()[noFlyZones.length];
+        NamedRegion[] withClosure = Arrays.copyOf(wall.noFlyZones(), noFlyZones.length + 2);
+        withClosure[noFlyZones.length + 1] = closure;
+        Assert.assertEquals(1, planner.updateGeofence(new FlightMap(centralArea, withClosure)));
+        Assert.assertSame("Part before the closure should be kept", detour.get(0), planner.findPath(SORA_LELLA, APPLETON_TOWER).get(0));
+        NamedRegion[] withoutWall = Arrays.copyOf(noFlyZones, noFlyZones.length + 1);
+        withoutWall[noFlyZones.length] = closure;
+        FlightMap updated = new FlightMap(centralArea, withoutWall);
+        SearchContext fresh = PathFinding.newSearchContext();
+        AStar.findShortestPath(fresh, updated, new Node(SORA_LELLA), new Node(APPLETON_TOWER));
+
+        // Act
+        int repaired = planner.updateGeofence(updated);
+
+        // Assert
+        List<Node> path = planner.findPath(SORA_LELLA, APPLETON_TOWER);
+        Assert.assertEquals("Freeing the area the kept part was searched in should repair the path", 1, repaired);
+        Assert.assertEquals(fresh.getPath().size(), path.size());
+    }
+
+    @Test
+    public void whenGeofenceUnchangedThenChangeIsEmpty() {
+
+        // Act
+        IncrementalPlanner.GeofenceChange same = IncrementalPlanner.GeofenceChange.between(flightMap, new FlightMap(centralArea, noFlyZones));
+        IncrementalPlanner.GeofenceChange added = IncrementalPlanner.GeofenceChange.between(flightMap, withZone(-3.25, 55.93, -3.24, 55.931));
+
+        // Assert
+        Assert.assertTrue(same.blocked.isEmpty());
+        Assert.assertTrue(same.freed.isEmpty());
+        Assert.assertEquals(1, added.blocked.size());
+        Assert.assertArrayEquals(new double[]{-3.25, 55.93, -3.24, 55.931}, added.blocked.get(0), 0);
+        Assert.assertTrue(added.freed.isEmpty());
+    }
+}
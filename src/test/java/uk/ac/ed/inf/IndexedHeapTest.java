@@ -0,0 +1,134 @@
+package uk.ac.ed.inf;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Unit test for the indexed heap
+ *
+ *  @author B209981
+ */
+
+public class IndexedHeapTest {
+
+    private final NodeArena arena = new NodeArena();
+
+    // Creates a node with the given total cost
+    private int nodeWithTotal(double total) {
+        int node = arena.add(total, total);
+        arena.total[node] = total;
+        return node;
+    }
+
+    @Test
+    public void whenNodesAddedThenPolledInOrderOfTotal() {
+        // Arrange
+        IndexedHeap heap = new IndexedHeap(arena);
+        for (int i = 0; i < 500; i++) {
+            heap.add(nodeWithTotal(ThreadLocalRandom.current().nextDouble()));
+        }
+
+        // Act and Assert
+        double previous = -1;
+        while (!heap.isEmpty()) {
+            int node = heap.poll();
+            assertTrue("Totals should be polled in increasing order", arena.total[node] >= previous);
+            assertFalse("Polled node should no longer be in the heap", heap.contains(node));
+            previous = arena.total[node];
+        }
+        assertEquals("Polling an empty heap should return NONE", NodeArena.NONE, heap.poll());
+    }
+
+    @Test
+    public void whenKeyDecreasedThenNodeMovesToFront() {
+        // Arrange
+        IndexedHeap heap = new IndexedHeap(arena);
+        int first = nodeWithTotal(1.0);
+        int second = nodeWithTotal(2.0);
+        int third = nodeWithTotal(3.0);
+        heap.add(first);
+        heap.add(second);
+        heap.add(third);
+
+        // Act
+        arena.total[third] = 0.5;
+        heap.decreaseKey(third);
+
+        // Assert
+        assertTrue("Node should still be in the heap", heap.contains(third));
+        assertEquals("Node with decreased key should be polled first", third, heap.poll());
+        assertEquals(first, heap.poll());
+        assertEquals(second, heap.poll());
+    }
+
+    @Test
+    public void whenTotalsChangedAndRebuiltThenOrderIsRestored() {
+        // Arrange
+        IndexedHeap heap = new IndexedHeap(arena);
+        for (int i = 0; i < 100; i++) {
+            heap.add(nodeWithTotal(i));
+        }
+
+        // Act
+        for (int i = 0; i < heap.size(); i++) {
+            int node = heap.get(i);
+            arena.total[node] = 1000 - arena.total[node];
+        }
+        heap.rebuild();
+
+        // Assert
+        double previous = -1;
+        while (!heap.isEmpty()) {
+            int node = heap.poll();
+            assertTrue("Totals should be polled in increasing order", arena.total[node] >= previous);
+            previous = arena.total[node];
+        }
+    }
+
+    @Test
+    public void whenClearedThenNodesAreNoLongerContained() {
+        // Arrange
+        IndexedHeap heap = new IndexedHeap(arena);
+        int node = nodeWithTotal(1.0);
+        heap.add(node);
+
+        // Act
+        heap.clear();
+
+        // Assert
+        assertTrue("Heap should be empty", heap.isEmpty());
+        assertFalse("Node should not be in the heap", heap.contains(node));
+        assertEquals(IndexedHeap.NOT_IN_HEAP, arena.queueIndex[node]);
+    }
+
+    @Test
+    public void whenNodesRemovedThenRemainingArePolledInOrder() {
+        // Arrange
+        IndexedHeap heap = new IndexedHeap(arena);
+        int[] nodes = new int[200];
+        for (int i = 0; i < 200; i++) {
+            nodes[i] = nodeWithTotal(ThreadLocalRandom.current().nextDouble());
+            heap.add(nodes[i]);
+        }
+
+        // Act
+        for (int i = 0; i < nodes.length; i += 3) {
+            heap.remove(nodes[i]);
+        }
+
+        // Assert
+        assertFalse(heap.contains(nodes[0]));
+        assertEquals(heap.peek(), heap.peek());
+        double previous = -1;
+        int count = 0;
+        while (!heap.isEmpty()) {
+            int node = heap.poll();
+            assertTrue("Totals should be polled in increasing order", arena.total[node] >= previous);
+            previous = arena.total[node];
+            count++;
+        }
+        assertEquals(200 - 67, count);
+    }
+}
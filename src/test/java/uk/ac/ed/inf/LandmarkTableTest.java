@@ -0,0 +1,122 @@
+package uk.ac.ed.inf;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the landmark table
+ *
+ *  @author B209981
+ */
+public class LandmarkTableTest {
+
+    private FlightMap flightMap;
+
+    @Before
+    public void setUp() {
+        NamedRegion[] noFlyZones = new NamedRegion[]{
+                new NamedRegion("George Square Area", new LngLat[]{
+                        new LngLat(-3.190578818321228, 55.94402412577528),
+                        new LngLat(-3.1899887323379517, 55.94284650540911),
+                        new LngLat(-3.187097311019897, 55.94328811724263),
+                        new LngLat(-3.187682032585144, 55.944477740393744),
+                        new LngLat(-3.190578818321228, 55.94402412577528)
+                })
+        };
+        NamedRegion centralArea = new NamedRegion("central", new LngLat[]{
+                new LngLat(-3.192473, 55.946233),
+                new LngLat(-3.192473, 55.942617),
+                new LngLat(-3.184319, 55.942617),
+                new LngLat(-3.184319, 55.946233)
+        });
+        flightMap = new FlightMap(centralArea, noFlyZones);
+    }
+
+    @Test
+    public void whenZoneLiesBetweenThenBoundStaysBelowPathCostAndSavesExpansions() {
+        // Arrange
+        LngLat start = new LngLat(-3.1912, 55.9436); // West of George Square
+        LngLat goal = new LngLat(-3.1862, 55.9436); // East of George Square
+        SearchContext straight = new SearchContext();
+        straight.setWeightSchedule(new double[]{1.0});
+        SearchContext landmarks = new SearchContext();
+        landmarks.setWeightSchedule(new double[]{1.0});
+        landmarks.setLandmarks(true);
+        LandmarkTable table = flightMap.landmarks();
+
+        // Act
+        assertTrue(AStar.findShortestPath(straight, flightMap, new Node(start), new Node(goal)));
+        assertTrue(AStar.findShortestPath(landmarks, flightMap, new Node(start), new Node(goal)));
+
+        // Assert
+        List<Node> path = straight.getPath();
+        double pathCost = path.get(path.size() - 1).cost;
+        float[] goalDistances = table.distancesTo(goal.lng(), goal.lat());
+        assertNotNull(goalDistances);
+        for (Node node : path) {
+            double bound = table.lowerBound(node.coordinates.lng(), node.coordinates.lat(), goalDistances);
+            // The path stops within close distance of the goal, so like the straight line the bound may exceed
+            // the cost left by up to that distance
+            assertTrue("Bound should not exceed the cost left on the path",
+                    bound <= pathCost - node.cost + SystemConstants.DRONE_IS_CLOSE_DISTANCE);
+        }
+        assertEquals("Landmarks should not lengthen the path", path.size(), landmarks.getPath().size());
+        assertTrue("Landmarks should not expand more nodes",
+                landmarks.getExpandedNodes() <= straight.getExpandedNodes());
+    }
+
+    @Test
+    public void whenManyStartsSearchedThenBoundNeverExceedsPathCost() {
+        // Arrange
+        LngLat goal = new LngLat(-3.186874, 55.944494); // Appleton Tower
+        LandmarkTable table = flightMap.landmarks();
+        float[] goalDistances = table.distancesTo(goal.lng(), goal.lat());
+        assertNotNull(goalDistances);
+        Random random = new Random(17);
+        int checked = 0;
+
+        for (int i = 0; i < 60; i++) {
+            // Starts all around the goal, including runs along the headings between the grid steps
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double range = 0.001 + random.nextDouble() * 0.006;
+            LngLat start = new LngLat(goal.lng() + range * Math.cos(angle), goal.lat() + range * Math.sin(angle));
+            if (flightMap.isInNoFlyZone(start)) {
+                continue;
+            }
+            SearchContext context = new SearchContext();
+            context.setWeightSchedule(new double[]{1.0});
+
+            // Act
+            assertTrue(AStar.findShortestPath(context, flightMap, new Node(start), new Node(goal)));
+
+            // Assert
+            List<Node> path = context.getPath();
+            double pathCost = path.get(path.size() - 1).cost;
+            for (Node node : path) {
+                double bound = table.lowerBound(node.coordinates.lng(), node.coordinates.lat(), goalDistances);
+                assertTrue("Bound should not exceed the cost left on the path",
+                        bound <= pathCost - node.cost + SystemConstants.DRONE_IS_CLOSE_DISTANCE);
+                checked++;
+            }
+        }
+        assertTrue(checked > 1000);
+    }
+
+    @Test
+    public void whenNoRegionsThenTableHasNoLandmarks() {
+        // Act
+        LandmarkTable table = LandmarkTable.build(new NamedRegion[0], null);
+
+        // Assert
+        assertEquals(0, table.landmarks);
+        assertNull(table.distancesTo(-3.19, 55.94));
+    }
+}
@@ -0,0 +1,58 @@
+package uk.ac.ed.inf;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the search lattice
+ *
+ *  @author B209981
+ */
+
+public class LatticeTest {
+
+    @Test
+    public void whenPackedThenColumnAndRowAreRecovered() {
+        int[] columns = {0, 1, -1, 12345, -98765, Integer.MAX_VALUE, Integer.MIN_VALUE + 1};
+        int[] rows = {0, 1, -1, 12345, -98765, Lattice.MAX_ROW, -Lattice.MAX_ROW - 1};
+
+        for (int column : columns) {
+            for (int row : rows) {
+                long key = Lattice.pack(column, row);
+                assertEquals("Column should be recovered", column, Lattice.column(key));
+                assertEquals("Row should be recovered", row, Lattice.row(key));
+                assertFalse("A packed key should be outside the central area", Lattice.isCentral(key));
+            }
+        }
+    }
+
+    @Test
+    public void whenCentralBitSetThenCellIsKeptAndKeyDiffers() {
+        // Arrange
+        long key = Lattice.pack(-7, 42);
+
+        // Act
+        long central = Lattice.withCentral(key, true);
+
+        // Assert
+        assertNotEquals(key, central);
+        assertTrue(Lattice.isCentral(central));
+        assertEquals(-7, Lattice.column(central));
+        assertEquals(42, Lattice.row(central));
+        assertEquals(key, Lattice.withCentral(central, false));
+    }
+
+    @Test
+    public void whenPositionIsWholeStepsFromOriginThenKeyCountsSteps() {
+        // Arrange
+        double originLng = -3.186874;
+        double originLat = 55.944494;
+
+        // Act
+        long key = Lattice.key(originLng - 3 * Lattice.RESOLUTION, originLat + 5 * Lattice.RESOLUTION, originLng, originLat);
+
+        // Assert
+        assertEquals(-3, Lattice.column(key));
+        assertEquals(5, Lattice.row(key));
+    }
+}
@@ -2,6 +2,7 @@ package uk.ac.ed.inf;
 
 import static org.junit.Assert.*;
 import org.junit.Test;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
 import uk.ac.ed.inf.ilp.data.LngLat;
 import uk.ac.ed.inf.ilp.data.NamedRegion;
 
@@ -87,4 +88,60 @@ public class LngLatHandlerTest
         LngLat nextPosition = lngLatHandler.nextPosition(appletonTower, 999);
         assertTrue(approxEqualPoints(nextPosition, appletonTower));
     }
+
+    @Test
+    public void testAllSixteenDirections(){
+        for (int direction = 0; direction < LngLatHandler.COMPASS_DIRECTIONS; direction++) {
+            double angle = direction * LngLatHandler.ANGLE_STEP;
+            LngLat nextPosition = lngLatHandler.nextPosition(appletonTower, angle);
+            LngLat calculatedPosition = new LngLat(
+                    appletonTower.lng() + SystemConstants.DRONE_MOVE_DISTANCE * Math.cos(Math.toRadians(angle)),
+                    appletonTower.lat() + SystemConstants.DRONE_MOVE_DISTANCE * Math.sin(Math.toRadians(angle)));
+            assertTrue("Move at " + angle + " degrees", approxEqualPoints(nextPosition, calculatedPosition));
+        }
+    }
+
+    @Test
+    public void testPrimitiveNextPositionMatchesLngLat(){
+        double[] next = new double[2];
+        for (int direction = 0; direction < LngLatHandler.COMPASS_DIRECTIONS; direction++) {
+            LngLatHandler.nextPosition(appletonTower.lng(), appletonTower.lat(), direction, next);
+            LngLat expected = lngLatHandler.nextPosition(appletonTower, direction * LngLatHandler.ANGLE_STEP);
+            assertEquals(expected.lng(), next[0], 0);
+            assertEquals(expected.lat(), next[1], 0);
+        }
+    }
+
+    @Test
+    public void testAngleNotCompassDirection(){
+        // An angle in range that is not one of the 16 directions leaves the position unchanged
+        LngLat nextPosition = lngLatHandler.nextPosition(appletonTower, 10);
+        assertTrue(approxEqualPoints(nextPosition, appletonTower));
+    }
+
+    @Test
+    public void testIsInRegionAlternatingRegions(){
+        // Each answer must be for the region asked about
+        NamedRegion farAway = new NamedRegion("airport", new LngLat[]{
+                new LngLat(-3.37, 55.94), new LngLat(-3.35, 55.94), new LngLat(-3.35, 55.96), new LngLat(-3.37, 55.96)});
+        for (int i = 0; i < 20; i++) {
+            assertTrue(lngLatHandler.isInRegion(appletonTower, central));
+            assertFalse(lngLatHandler.isInRegion(appletonTower, farAway));
+            assertTrue(lngLatHandler.isInRegion(edinburghAirport, farAway));
+            assertFalse(lngLatHandler.isInRegion(edinburghAirport, central));
+        }
+    }
+
+    @Test
+    public void testIsInRegionAfterVerticesChangeInPlace(){
+        LngLat[] corners = {
+                new LngLat(-3.37, 55.94), new LngLat(-3.35, 55.94), new LngLat(-3.35, 55.96), new LngLat(-3.37, 55.96)};
+        NamedRegion region = new NamedRegion("moving", corners);
+        assertTrue(lngLatHandler.isInRegion(edinburghAirport, region));
+
+        // Move the region onto the central area by changing its vertex array
+        System.arraycopy(central.vertices(), 0, corners, 0, 4);
+        assertTrue(lngLatHandler.isInRegion(appletonTower, region));
+        assertFalse(lngLatHandler.isInRegion(edinburghAirport, region));
+    }
 }
@@ -0,0 +1,54 @@
+package uk.ac.ed.inf;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Unit test for the primitive long hash set
+ *
+ *  @author B209981
+ */
+
+public class LongHashSetTest {
+
+    @Test
+    public void whenKeysAddedThenSetMatchesHashSet() {
+        // Arrange
+        LongHashSet set = new LongHashSet();
+        HashSet<Long> expected = new HashSet<>();
+
+        // Act
+        for (int i = 0; i < 10_000; i++) {
+            long key = Lattice.pack(ThreadLocalRandom.current().nextInt(-200, 200), ThreadLocalRandom.current().nextInt(-200, 200));
+            assertEquals("Add should report whether the key is new", expected.add(key), set.add(key));
+        }
+
+        // Assert
+        assertEquals(expected.size(), set.size());
+        for (int column = -200; column < 200; column += 7) {
+            for (int row = -200; row < 200; row += 7) {
+                long key = Lattice.pack(column, row);
+                assertEquals(expected.contains(key), set.contains(key));
+            }
+        }
+    }
+
+    @Test
+    public void whenClearedThenKeysAreRemoved() {
+        // Arrange
+        LongHashSet set = new LongHashSet();
+        set.add(0L);
+        set.add(42L);
+
+        // Act
+        set.clear();
+
+        // Assert
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(0L));
+        assertFalse(set.contains(42L));
+    }
+}
@@ -0,0 +1,50 @@
+package uk.ac.ed.inf;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Unit test for the primitive long to int map
+ *
+ *  @author B209981
+ */
+
+public class LongIntMapTest {
+
+    @Test
+    public void whenEntriesAddedAndRemovedThenMapMatchesHashMap() {
+        // Arrange
+        LongIntMap map = new LongIntMap();
+        HashMap<Long, Integer> expected = new HashMap<>();
+
+        // Act
+        for (int i = 0; i < 20_000; i++) {
+            long key = Lattice.pack(ThreadLocalRandom.current().nextInt(-50, 50), ThreadLocalRandom.current().nextInt(-50, 50));
+            if (ThreadLocalRandom.current().nextBoolean()) {
+                map.put(key, i);
+                expected.put(key, i);
+            } else {
+                map.remove(key);
+                expected.remove(key);
+            }
+        }
+
+        // Assert
+        assertEquals(expected.size(), map.size());
+        for (int column = -50; column < 50; column++) {
+            for (int row = -50; row < 50; row++) {
+                long key = Lattice.pack(column, row);
+                assertEquals((int) expected.getOrDefault(key, NodeArena.NONE), map.get(key));
+            }
+        }
+    }
+
+    @Test
+    public void whenKeyMissingThenGetReturnsNone() {
+        LongIntMap map = new LongIntMap();
+        assertEquals(NodeArena.NONE, map.get(Lattice.pack(1, 2)));
+    }
+}
@@ -0,0 +1,93 @@
+package uk.ac.ed.inf;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+/**
+ * Unit test for the node arena
+ *
+ *  @author B209981
+ */
+
+public class NodeArenaTest {
+
+    @Test
+    public void whenMoreNodesAddedThanCapacityThenArraysGrowAndKeepValues() {
+        // Arrange
+        NodeArena arena = new NodeArena();
+        int capacity = arena.lng.length;
+
+        // Act
+        for (int i = 0; i < 3 * capacity; i++) {
+            int node = arena.add(i, -i);
+            arena.cost[node] = i * 2;
+        }
+
+        // Assert
+        assertEquals(3 * capacity, arena.size());
+        assertEquals("Arrays should grow by doubling", 4 * capacity, arena.lng.length);
+        for (int i = 0; i < 3 * capacity; i++) {
+            assertEquals(i, arena.lng[i], 0);
+            assertEquals(-i, arena.lat[i], 0);
+            assertEquals(i * 2, arena.cost[i], 0);
+        }
+    }
+
+    @Test
+    public void whenClearedThenArraysAreReusedAndNodesAreReset() {
+        // Arrange
+        NodeArena arena = new NodeArena();
+        for (int i = 0; i < 1000; i++) {
+            arena.add(i, i);
+        }
+        double[] lng = arena.lng;
+        int node = arena.size() - 1;
+        arena.parent[0] = node;
+        arena.expanded[0] = true;
+
+        // Act
+        arena.clear();
+        int first = arena.add(1, 2);
+
+        // Assert
+        assertEquals(0, first);
+        assertEquals(1, arena.size());
+        assertSame("Arrays should be kept for the next search", lng, arena.lng);
+        assertEquals(NodeArena.NONE, arena.parent[first]);
+        assertFalse(arena.expanded[first]);
+        assertEquals(IndexedHeap.NOT_IN_HEAP, arena.queueIndex[first]);
+    }
+
+    @Test
+    public void whenPathTakenFromRootThenNodesFollowParentLinks() {
+        // Arrange
+        NodeArena arena = new NodeArena();
+        int root = arena.add(0, 0);
+        int middle = arena.add(1, 0);
+        arena.parent[middle] = root;
+        arena.direction[middle] = 0;
+        arena.add(5, 5); // Node off the path
+        int last = arena.add(1, 1);
+        arena.parent[last] = middle;
+        arena.direction[last] = 4;
+        arena.cost[last] = 2;
+
+        // Act
+        List<Node> path = arena.pathFromRoot(last);
+        List<Node> reversed = arena.pathToRoot(last);
+
+        // Assert
+        assertEquals(3, path.size());
+        assertEquals(0, path.get(0).coordinates.lng(), 0);
+        assertEquals(1, path.get(2).coordinates.lat(), 0);
+        assertNull(path.get(0).parent);
+        assertSame(path.get(1), path.get(2).parent);
+        assertEquals(4 * LngLatHandler.ANGLE_STEP, path.get(2).angle, 0);
+        assertEquals(2, path.get(2).cost, 0);
+        assertEquals(3, reversed.size());
+        assertEquals(1, reversed.get(0).coordinates.lat(), 0);
+        assertEquals(0, reversed.get(2).coordinates.lng(), 0);
+    }
+}
@@ -0,0 +1,146 @@
+package uk.ac.ed.inf;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for OccupancyRaster
+ *
+ *  @author B209981
+ */
+public class OccupancyRasterTest {
+
+    private NamedRegion[] regions;
+    private RegionIndex index;
+    private OccupancyRaster raster;
+
+    @Before
+    public void setUp() {
+        regions = new NamedRegion[]{
+                new NamedRegion("George Square Area", new LngLat[]{
+                        new LngLat(-3.190578818321228, 55.94402412577528),
+                        new LngLat(-3.1899887323379517, 55.94284650540911),
+                        new LngLat(-3.187097311019897, 55.94328811724263),
+                        new LngLat(-3.187682032585144, 55.944477740393744),
+                        new LngLat(-3.190578818321228, 55.94402412577528)
+                }),
+                new NamedRegion("Bristo Square Open Area", new LngLat[]{
+                        new LngLat(-3.189543485641479, 55.94552313663306),
+                        new LngLat(-3.189382553100586, 55.94553214854692),
+                        new LngLat(-3.189259171485901, 55.94544803726933),
+                        new LngLat(-3.1892001628875732, 55.94533688994374),
+                        new LngLat(-3.189194798469543, 55.94519570234043),
+                        new LngLat(-3.189135789871216, 55.94511759833873),
+                        new LngLat(-3.188138008117676, 55.9452738061846),
+                        new LngLat(-3.1885510683059692, 55.946105902745614),
+                        new LngLat(-3.1895381212234497, 55.94555918109299),
+                        new LngLat(-3.189543485641479, 55.94552313663306)
+                })
+        };
+        index = new RegionIndex(regions);
+        raster = new OccupancyRaster(regions, index);
+    }
+
+    @Test
+    public void whenRandomPointsCheckedThenResultsMatchIndex() {
+        // Arrange
+        Random random = new Random(7);
+
+        for (int i = 0; i < 50_000; i++) {
+            double lng = -3.192 + random.nextDouble() * 0.006;
+            double lat = 55.942 + random.nextDouble() * 0.005;
+
+            // Act and Assert
+            assertEquals(index.contains(lng, lat), raster.contains(lng, lat));
+        }
+    }
+
+    @Test
+    public void whenPointsOnVerticesCheckedThenResultsMatchIndex() {
+        for (NamedRegion region : regions) {
+            for (LngLat vertex : region.vertices()) {
+                assertEquals(index.contains(vertex), raster.contains(vertex.lng(), vertex.lat()));
+            }
+        }
+    }
+
+    @Test
+    public void whenBuiltThenMostCellsAreKnown() {
+        assertTrue(raster.knownFraction() > 0.5);
+    }
+
+    @Test
+    public void whenMoveTouchesEdgeThenRasterDoesNotRuleItOut() {
+        // Arrange
+        Random random = new Random(13);
+        CompiledRegion[] compiled = CompiledRegion.compileAll(regions);
+        double move = SystemConstants.DRONE_MOVE_DISTANCE;
+        int touching = 0;
+
+        for (int i = 0; i < 50_000; i++) {
+            double fromLng = -3.192 + random.nextDouble() * 0.006;
+            double fromLat = 55.942 + random.nextDouble() * 0.005;
+            double angle = Math.toRadians(22.5 * random.nextInt(16));
+            double toLng = fromLng + move * Math.cos(angle);
+            double toLat = fromLat + move * Math.sin(angle);
+            boolean touches = false;
+            for (CompiledRegion region : compiled) {
+                touches |= region.touchesSegment(fromLng, fromLat, toLng, toLat);
+            }
+            if (!touches) {
+                continue;
+            }
+            touching++;
+
+            // Act and Assert
+            assertTrue(raster.mayTouchEdge(fromLng, fromLat, toLng, toLat));
+            assertFalse(raster.isKnownWithin(Math.min(fromLng, toLng), Math.min(fromLat, toLat),
+                    Math.max(fromLng, toLng), Math.max(fromLat, toLat)));
+        }
+        assertTrue(touching > 0);
+    }
+
+    @Test
+    public void whenBoxIsFarFromEdgesThenEveryCellIsKnown() {
+        // Act and Assert
+        // Middle of George Square, and outside the raster altogether
+        assertTrue(raster.isKnownWithin(-3.1890, 55.9435, -3.1888, 55.9437));
+        assertTrue(raster.isKnownWithin(-3.20, 55.90, -3.199, 55.901));
+        assertFalse(raster.mayTouchEdge(-3.1890, 55.9435, -3.1889, 55.9436));
+    }
+
+    @Test
+    public void whenBoxIsBeyondRasterThenEveryCellIsKnown() {
+        // Arrange
+        double west = raster.minLng;
+        double south = raster.minLat;
+        double east = raster.minLng + raster.columns * raster.cellSize;
+        double north = raster.minLat + raster.rows * raster.cellSize;
+        double cell = raster.cellSize;
+
+        // Act and Assert
+        // Boxes more than a cell beyond each side of the raster, the first in its bottom row
+        assertTrue(raster.isKnownWithin(west - 5 * cell, south, west - 3 * cell, south + cell / 2));
+        assertTrue(raster.isKnownWithin(east + 3 * cell, south, east + 5 * cell, north));
+        assertTrue(raster.isKnownWithin(west, south - 5 * cell, east, south - 3 * cell));
+        assertTrue(raster.isKnownWithin(west, north + 3 * cell, east, north + 5 * cell));
+    }
+
+    @Test
+    public void whenNoRegionsThenNothingContained() {
+        // Arrange
+        NamedRegion[] none = new NamedRegion[0];
+        OccupancyRaster empty = new OccupancyRaster(none, new RegionIndex(none));
+
+        // Act and Assert
+        assertFalse(empty.contains(-3.189, 55.944));
+        assertEquals(1.0, empty.knownFraction(), 0);
+    }
+}
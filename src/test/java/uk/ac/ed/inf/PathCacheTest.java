@@ -0,0 +1,157 @@
+package uk.ac.ed.inf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the path cache
+ *
+ *  @author B209981
+ */
+public class PathCacheTest {
+
+    private static final LngLat appletonTower = new LngLat(-3.186874, 55.944494);
+    private static final String SETTINGS = "search=astar;directions=16";
+    private static final LngLat civerinos = new LngLat(-3.1912869215011597, 55.945535152517735);
+
+    private Path cacheDirectory;
+    private NamedRegion[] noFlyZones;
+    private NamedRegion centralArea;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheDirectory = Files.createTempDirectory("pathcache");
+        PathCache.setDirectory(cacheDirectory.toString());
+        noFlyZones = new NamedRegion[]{
+                new NamedRegion("Dr Elsie Inglis Quadrangle", new LngLat[]{
+                        new LngLat(-3.1907182931900024, 55.94519570234043),
+                        new LngLat(-3.1906163692474365, 55.94498241796357),
+                        new LngLat(-3.1900262832641597, 55.94507554227258),
+                        new LngLat(-3.190133571624756, 55.94529783810495)
+                })
+        };
+        centralArea = new NamedRegion("central", new LngLat[]{
+                new LngLat(-3.192473, 55.946233),
+                new LngLat(-3.192473, 55.942617),
+                new LngLat(-3.184319, 55.942617),
+                new LngLat(-3.184319, 55.946233)
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        PathCache.setDirectory("resultfiles/pathcache");
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(cacheDirectory);
+    }
+
+    // Builds a short path of linked nodes starting at Civerinos
+    private List<Node> samplePath() {
+        List<Node> path = new ArrayList<>();
+        Node previous = null;
+        for (int i = 0; i < 3; i++) {
+            Node node = new Node(new LngLat(civerinos.lng() + i * 0.00015, civerinos.lat()));
+            node.parent = previous;
+            path.add(node);
+            previous = node;
+        }
+        return path;
+    }
+
+    @Test
+    public void whenPathStoredThenSameKeyLoadsIt() {
+        // Arrange
+        String fingerprint = PathCache.fingerprint(noFlyZones, centralArea);
+        List<Node> path = samplePath();
+
+        // Act
+        PathCache.store(civerinos, appletonTower, fingerprint, SETTINGS, path);
+        List<Node> loaded = PathCache.load(civerinos, appletonTower, fingerprint, SETTINGS);
+
+        // Assert
+        assertNotNull("Stored path should be found", loaded);
+        assertEquals("Loaded path should have the same nodes", path, loaded);
+        assertSame("Nodes should be linked to the previous node", loaded.get(0), loaded.get(1).parent);
+    }
+
+    @Test
+    public void whenGeofenceChangesThenEntryIsNotUsed() {
+        // Arrange
+        String fingerprint = PathCache.fingerprint(noFlyZones, centralArea);
+        PathCache.store(civerinos, appletonTower, fingerprint, SETTINGS, samplePath());
+        LngLat[] vertices = noFlyZones[0].vertices().clone();
+        vertices[0] = new LngLat(vertices[0].lng() + 1e-9, vertices[0].lat());
+        NamedRegion[] movedZones = {new NamedRegion(noFlyZones[0].name(), vertices)};
+
+        // Act
+        String changedFingerprint = PathCache.fingerprint(movedZones, centralArea);
+
+        // Assert
+        assertNotEquals("Moving a vertex should change the fingerprint", fingerprint, changedFingerprint);
+        assertNull("Entry for the old geofence should not be used", PathCache.load(civerinos, appletonTower, changedFingerprint, SETTINGS));
+        assertNull("Entry for another start should not be used", PathCache.load(appletonTower, appletonTower, fingerprint, SETTINGS));
+    }
+
+    @Test
+    public void whenSettingsChangeThenEntryIsNotUsed() {
+        // Arrange
+        String fingerprint = PathCache.fingerprint(noFlyZones, centralArea);
+        PathCache.store(civerinos, appletonTower, fingerprint, SETTINGS, samplePath());
+
+        // Act
+        List<Node> eightDirections = PathCache.load(civerinos, appletonTower, fingerprint, "search=astar;directions=8");
+        List<Node> sameSettings = PathCache.load(civerinos, appletonTower, fingerprint, SETTINGS);
+
+        // Assert
+        assertNull("Entry found with other settings should not be used", eightDirections);
+        assertNotNull(sameSettings);
+    }
+
+    @Test
+    public void whenEntryHasAnotherVersionThenLoadReturnsNull() throws IOException {
+        // Arrange
+        String fingerprint = PathCache.fingerprint(noFlyZones, centralArea);
+        PathCache.store(civerinos, appletonTower, fingerprint, SETTINGS, samplePath());
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            for (Path file : files.toList()) {
+                String entry = Files.readString(file);
+                assertTrue(entry.contains("\"version\":2"));
+                Files.writeString(file, entry.replace("\"version\":2", "\"version\":1"));
+            }
+        }
+
+        // Act and Assert
+        assertNull("Entry written by an older version should not be used", PathCache.load(civerinos, appletonTower, fingerprint, SETTINGS));
+    }
+
+    @Test
+    public void whenCacheFileIsCorruptThenLoadReturnsNull() throws IOException {
+        // Arrange
+        String fingerprint = PathCache.fingerprint(noFlyZones, centralArea);
+        PathCache.store(civerinos, appletonTower, fingerprint, SETTINGS, samplePath());
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            for (Path file : files.toList()) {
+                Files.writeString(file, "{ not json");
+            }
+        }
+
+        // Act and Assert
+        assertNull(PathCache.load(civerinos, appletonTower, fingerprint, SETTINGS));
+    }
+}
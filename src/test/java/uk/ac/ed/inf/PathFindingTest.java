@@ -8,6 +8,12 @@ import uk.ac.ed.inf.ilp.constant.OrderStatus;
 import uk.ac.ed.inf.ilp.constant.OrderValidationCode;
 import uk.ac.ed.inf.ilp.data.Order;
 import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.ilp.data.Pizza;
+import uk.ac.ed.inf.ilp.data.Restaurant;
+import java.time.DayOfWeek;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import org.junit.Test;
 
 /**
@@ -138,4 +144,164 @@ public class PathFindingTest {
         assertNotNull(droneFile);
     }
 
+    @Test
+    public void testParallelPlanningKeepsOrderAlignment() {
+
+        // Prepare test data
+        NamedRegion centralArea = new NamedRegion("central", new LngLat[]{
+                new LngLat(-3.192473, 55.946233),
+                new LngLat(-3.192473, 55.942617),
+                new LngLat(-3.184319, 55.942617),
+                new LngLat(-3.184319, 55.946233)
+        });
+        FlightMap flightMap = new FlightMap(centralArea, new NamedRegion[0]);
+
+        Restaurant first = new Restaurant("First", new LngLat(-3.1912869215011597, 55.945535152517735),
+                new DayOfWeek[0], new Pizza[0]);
+        Restaurant second = new Restaurant("Second", new LngLat(-3.1838572025299072, 55.94470378183593),
+                new DayOfWeek[0], new Pizza[0]);
+        Restaurant third = new Restaurant("Third", new LngLat(-3.1862, 55.9431),
+                new DayOfWeek[0], new Pizza[0]);
+        List<Restaurant> restaurants = Arrays.asList(first, second, first, third, second);
+
+        // Call the method sequentially and in parallel, without touching the path cache
+        PathCache.setEnabled(false);
+        List<List<Node>> sequentialPaths;
+        List<List<Node>> parallelPaths;
+        try {
+            PathFinding.setParallelism(1);
+            sequentialPaths = PathFinding.buildPathsForRestaurants(restaurants, flightMap);
+            PathFinding.setParallelism(4);
+            parallelPaths = PathFinding.buildPathsForRestaurants(restaurants, flightMap);
+        } finally {
+            PathCache.setEnabled(true);
+            PathFinding.setParallelism(Runtime.getRuntime().availableProcessors());
+        }
+
+        // Assert the result
+        assertEquals(restaurants.size(), parallelPaths.size());
+        for (int i = 0; i < restaurants.size(); i++) {
+            assertNotNull(parallelPaths.get(i));
+            assertEquals(restaurants.get(i).location(), parallelPaths.get(i).get(0).coordinates);
+            assertEquals(sequentialPaths.get(i).size(), parallelPaths.get(i).size());
+        }
+        assertSame(parallelPaths.get(0), parallelPaths.get(2));
+        assertSame(parallelPaths.get(1), parallelPaths.get(4));
+    }
+
+    @Test
+    public void testParallelismMustBePositive() {
+        assertFalse(PathFinding.setParallelism(0));
+        assertTrue(PathFinding.setParallelism(Runtime.getRuntime().availableProcessors()));
+    }
+
+    @Test
+    public void testLineBlockedByNoFlyZone() {
+        // Setup a single square no-fly zone
+        NamedRegion zone = new NamedRegion("Zone", new LngLat[]{
+                new LngLat(-3.189, 55.944),
+                new LngLat(-3.189, 55.943),
+                new LngLat(-3.188, 55.943),
+                new LngLat(-3.188, 55.944)
+        });
+        NamedRegion centralArea = new NamedRegion("Central", new LngLat[]{
+                new LngLat(-3.192473, 55.946233),
+                new LngLat(-3.192473, 55.942617),
+                new LngLat(-3.184319, 55.942617),
+                new LngLat(-3.184319, 55.946233)
+        });
+        FlightMap flightMap = new FlightMap(centralArea, new NamedRegion[]{zone});
+
+        // Assert lines through and around the zone
+        assertTrue(PathFinding.isLineBlocked(new LngLat(-3.190, 55.9435), new LngLat(-3.187, 55.9435), flightMap));
+        assertFalse(PathFinding.isLineBlocked(new LngLat(-3.190, 55.9445), new LngLat(-3.187, 55.9445), flightMap));
+        assertFalse(PathFinding.isLineBlocked(new LngLat(-3.190, 55.9445), new LngLat(-3.190, 55.9445), flightMap));
+    }
+
+    @Test
+    public void testPlannerMustBeGiven() {
+        assertFalse(PathFinding.setPlanner("astar", null));
+        assertFalse(PathFinding.setPlanner(" ", AStar::findShortestPath));
+        assertTrue(PathFinding.setPlanner("visibility", VisibilityPlanner::findShortestPath));
+        assertTrue(PathFinding.setPlanner("astar", AStar::findShortestPath));
+    }
+
+    @Test
+    public void testCacheSettingsDifferBySearchAndDirections() {
+        // Arrange
+        SearchContext sixteen = new SearchContext();
+        SearchContext eight = new SearchContext();
+        eight.setDirections(8);
+
+        // Act
+        String forward = PathFinding.cacheSettings(sixteen, "astar");
+
+        // Assert
+        assertEquals(forward, PathFinding.cacheSettings(new SearchContext(), "astar"));
+        assertNotEquals(forward, PathFinding.cacheSettings(sixteen, "reverse"));
+        assertNotEquals(forward, PathFinding.cacheSettings(eight, "astar"));
+    }
+
+    @Test
+    public void testCacheSettingsDifferByOpenSet() {
+        // Arrange
+        SearchContext context = new SearchContext();
+        String heap = PathFinding.cacheSettings(context, "astar");
+
+        // Act
+        String buckets;
+        try {
+            PathFinding.setBucketQueue(true);
+            buckets = PathFinding.cacheSettings(context, "astar");
+        } finally {
+            PathFinding.setBucketQueue(false);
+        }
+
+        // Assert
+        assertNotEquals(heap, buckets);
+    }
+
+    @Test
+    public void testPathFoundOutOfTimeIsNotCached() throws Exception {
+        // Arrange
+        NamedRegion centralArea = new NamedRegion("Central", new LngLat[]{
+                new LngLat(-3.192473, 55.946233),
+                new LngLat(-3.192473, 55.942617),
+                new LngLat(-3.184319, 55.942617),
+                new LngLat(-3.184319, 55.946233)
+        });
+        FlightMap flightMap = new FlightMap(centralArea, new NamedRegion[0]);
+        Restaurant restaurant = new Restaurant("Restaurant", new LngLat(-3.1912869215011597, 55.945535152517735),
+                new DayOfWeek[0], new Pizza[0]);
+        LngLat appletonTower = new LngLat(-3.186874, 55.944494);
+        Path cacheDirectory = Files.createTempDirectory("pathcache");
+        String settings = PathFinding.cacheSettings(PathFinding.newSearchContext(), "astar");
+
+        // Act
+        List<Node> timedOutPath;
+        List<Node> cachedAfterTimeout;
+        List<Node> cachedAfterFinish;
+        try {
+            PathCache.setDirectory(cacheDirectory.toString());
+            // A search that reports running out of time, as ARA* does when the budget ends before its last weight
+            PathFinding.setPlanner("astar", (context, map, start, goal) -> {
+                boolean found = AStar.findShortestPath(context, map, start, goal);
+                context.timedOut = true;
+                return found;
+            });
+            timedOutPath = PathFinding.computePathToRestaurant(restaurant, flightMap);
+            cachedAfterTimeout = PathCache.load(restaurant.location(), appletonTower, flightMap.fingerprint(), settings);
+            PathFinding.setPlanner("astar", AStar::findShortestPath);
+            PathFinding.computePathToRestaurant(restaurant, flightMap);
+            cachedAfterFinish = PathCache.load(restaurant.location(), appletonTower, flightMap.fingerprint(), settings);
+        } finally {
+            PathFinding.setPlanner("astar", AStar::findShortestPath);
+            PathCache.setDirectory("resultfiles/pathcache");
+        }
+
+        // Assert
+        assertNotNull(timedOutPath);
+        assertNull(cachedAfterTimeout);
+        assertNotNull(cachedAfterFinish);
+    }
 }
@@ -0,0 +1,91 @@
+package uk.ac.ed.inf;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+import java.util.List;
+
+/**
+ * Unit test for the path smoother
+ *
+ *  @author B209981
+ */
+
+public class PathSmootherTest {
+
+    private FlightMap flightMap;
+
+    @Before
+    public void setUp() {
+        flightMap = TestGeofence.edinburgh();
+    }
+
+    private static final LngLat APPLETON_TOWER = new LngLat(-3.186874, 55.944494);
+
+    // Checks that a path is made of valid moves from the start to close to Appleton Tower
+    private void assertValidPath(List<Node> path, LngLat start) {
+        LngLatHandler handler = new LngLatHandler();
+        Assert.assertEquals("Path should start at the start", start, path.get(0).coordinates);
+        Assert.assertTrue("Path should end close to the goal", handler.isCloseTo(path.get(path.size() - 1).coordinates, APPLETON_TOWER));
+        for (int j = 1; j < path.size(); j++) {
+            Assert.assertEquals("Each step should be a single move", SystemConstants.DRONE_MOVE_DISTANCE,
+                    handler.distanceTo(path.get(j - 1).coordinates, path.get(j).coordinates), 1e-12);
+            Assert.assertSame(path.get(j - 1), path.get(j).parent);
+            Assert.assertFalse("Path should avoid the no-fly zones", flightMap.isInNoFlyZone(path.get(j).coordinates));
+            Assert.assertFalse("Path should not leave the central area once inside",
+                    flightMap.isInCentralArea(path.get(j - 1).coordinates) && !flightMap.isInCentralArea(path.get(j).coordinates));
+        }
+    }
+
+    @Test
+    public void smoothShouldRemoveZigZagsWithoutAddingMoves() {
+
+        // Arrange
+        LngLat start = new LngLat(-3.202541470527649, 55.943284737579376); // Sora Lella Vegan Restaurant
+        SearchContext context = new SearchContext();
+        AStar.findShortestPath(context, flightMap, new Node(start), new Node(APPLETON_TOWER));
+        List<Node> path = context.getPath();
+
+        // Act
+        List<Node> smoothed = PathSmoother.smooth(context, flightMap, path, APPLETON_TOWER);
+
+        // Assert
+        Assert.assertTrue("Smoothing should not add moves", smoothed.size() <= path.size());
+        Assert.assertTrue("Smoothing should remove changes of heading", PathSmoother.countTurns(smoothed) < PathSmoother.countTurns(path));
+        assertValidPath(smoothed, start);
+    }
+
+    @Test
+    public void smoothShouldCutMovesFromPathFlownBetweenCorners() {
+
+        // Arrange
+        LngLat start = new LngLat(-3.1896, 55.9424); // South of George Square
+        SearchContext context = new SearchContext();
+        VisibilityPlanner.findShortestPath(context, flightMap, new Node(start), new Node(APPLETON_TOWER));
+        List<Node> path = context.getPath();
+
+        // Act
+        List<Node> smoothed = PathSmoother.smooth(context, flightMap, path, APPLETON_TOWER);
+
+        // Assert
+        Assert.assertTrue("Smoothing should cut moves", smoothed.size() < path.size());
+        assertValidPath(smoothed, start);
+    }
+
+    @Test
+    public void smoothShouldKeepPathsTooShortToStraighten() {
+
+        // Arrange
+        List<Node> path = List.of(new Node(APPLETON_TOWER));
+
+        // Act
+        List<Node> smoothed = PathSmoother.smooth(new SearchContext(), flightMap, path, APPLETON_TOWER);
+
+        // Assert
+        Assert.assertSame(path, smoothed);
+        Assert.assertNull(PathSmoother.smooth(new SearchContext(), flightMap, null, APPLETON_TOWER));
+    }
+}
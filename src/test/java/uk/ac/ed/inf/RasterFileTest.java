@@ -0,0 +1,143 @@
+package uk.ac.ed.inf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the geofence raster file
+ *
+ *  @author B209981
+ */
+public class RasterFileTest {
+
+    private Path rasterDirectory;
+    private Path rasterFile;
+    private NamedRegion[] noFlyZones;
+    private NamedRegion centralArea;
+
+    @Before
+    public void setUp() throws IOException {
+        rasterDirectory = Files.createTempDirectory("raster");
+        rasterFile = rasterDirectory.resolve("geofence.raster");
+        RasterFile.setPath(rasterFile.toString());
+        noFlyZones = new NamedRegion[]{
+                new NamedRegion("Dr Elsie Inglis Quadrangle", new LngLat[]{
+                        new LngLat(-3.1907182931900024, 55.94519570234043),
+                        new LngLat(-3.1906163692474365, 55.94498241796357),
+                        new LngLat(-3.1900262832641597, 55.94507554227258),
+                        new LngLat(-3.190133571624756, 55.94529783810495)
+                })
+        };
+        centralArea = new NamedRegion("central", new LngLat[]{
+                new LngLat(-3.192473, 55.946233),
+                new LngLat(-3.192473, 55.942617),
+                new LngLat(-3.184319, 55.942617),
+                new LngLat(-3.184319, 55.946233)
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        RasterFile.setPath("resultfiles/geofence.raster");
+        try (Stream<Path> files = Files.list(rasterDirectory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(rasterDirectory);
+    }
+
+    @Test
+    public void whenFlightMapLoadedThenRasterFileIsWritten() {
+        // Act
+        FlightMap.load(centralArea, noFlyZones);
+
+        // Assert
+        assertTrue(Files.exists(rasterFile));
+    }
+
+    @Test
+    public void whenRasterFileMappedThenAnswersMatchBuiltRastersAndLandmarks() {
+        // Arrange
+        FlightMap built = new FlightMap(centralArea, noFlyZones);
+        FlightMap.load(centralArea, noFlyZones).landmarks();
+        String fingerprint = built.fingerprint();
+        NamedRegion[] central = {centralArea};
+
+        // Act
+        RasterFile.Contents mapped = RasterFile.load(fingerprint, new RegionIndex(central), new RegionIndex(noFlyZones));
+
+        // Assert
+        assertNotNull(mapped);
+        Random random = new Random(3);
+        for (int i = 0; i < 20_000; i++) {
+            double lng = -3.193 + random.nextDouble() * 0.01;
+            double lat = 55.942 + random.nextDouble() * 0.005;
+            assertEquals(built.isInCentralArea(lng, lat), mapped.central().contains(lng, lat));
+            assertEquals(built.isInNoFlyZone(lng, lat), mapped.noFly().contains(lng, lat));
+        }
+        LandmarkTable landmarks = built.landmarks();
+        assertEquals(landmarks.landmarks, mapped.landmarks().landmarks);
+        assertEquals(landmarks.distances, mapped.landmarks().distances);
+    }
+
+    @Test
+    public void whenLandmarksNotUsedThenRasterFileHoldsRastersOnly() {
+        // Arrange
+        FlightMap flightMap = FlightMap.load(centralArea, noFlyZones);
+        NamedRegion[] central = {centralArea};
+
+        // Act
+        RasterFile.Contents beforeUse = RasterFile.load(flightMap.fingerprint(), new RegionIndex(central), new RegionIndex(noFlyZones));
+        flightMap.landmarks();
+        RasterFile.Contents afterUse = RasterFile.load(flightMap.fingerprint(), new RegionIndex(central), new RegionIndex(noFlyZones));
+
+        // Assert
+        assertNotNull(beforeUse);
+        assertNull(beforeUse.landmarks());
+        assertNotNull(afterUse);
+        assertNotNull(afterUse.landmarks());
+        assertEquals(flightMap.landmarks().distances, FlightMap.load(centralArea, noFlyZones).landmarks().distances);
+    }
+
+    @Test
+    public void whenGeofenceChangesThenRasterFileIsNotUsed() {
+        // Arrange
+        FlightMap.load(centralArea, noFlyZones);
+        NamedRegion[] noZones = new NamedRegion[0];
+        String otherFingerprint = PathCache.fingerprint(noZones, centralArea);
+        NamedRegion[] central = {centralArea};
+
+        // Act
+        RasterFile.Contents mapped = RasterFile.load(otherFingerprint, new RegionIndex(central), new RegionIndex(noZones));
+
+        // Assert
+        assertNull(mapped);
+    }
+
+    @Test
+    public void whenRasterFileIsTruncatedThenLoadReturnsNull() throws IOException {
+        // Arrange
+        FlightMap flightMap = FlightMap.load(centralArea, noFlyZones);
+        byte[] bytes = Files.readAllBytes(rasterFile);
+        Files.write(rasterFile, java.util.Arrays.copyOf(bytes, bytes.length - 16));
+        NamedRegion[] central = {centralArea};
+
+        // Act
+        RasterFile.Contents mapped = RasterFile.load(flightMap.fingerprint(), new RegionIndex(central), new RegionIndex(noFlyZones));
+
+        // Assert
+        assertNull(mapped);
+    }
+}
@@ -0,0 +1,136 @@
+package uk.ac.ed.inf;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for RegionBatch
+ *
+ *  @author B209981
+ */
+public class RegionBatchTest {
+
+    private NamedRegion[] regions;
+    private LngLatHandler handler;
+
+    @Before
+    public void setUp() {
+        regions = new NamedRegion[]{
+                new NamedRegion("George Square Area", new LngLat[]{
+                        new LngLat(-3.190578818321228, 55.94402412577528),
+                        new LngLat(-3.1899887323379517, 55.94284650540911),
+                        new LngLat(-3.187097311019897, 55.94328811724263),
+                        new LngLat(-3.187682032585144, 55.944477740393744),
+                        new LngLat(-3.190578818321228, 55.94402412577528)
+                }),
+                new NamedRegion("central", new LngLat[]{
+                        new LngLat(-3.192473, 55.946233),
+                        new LngLat(-3.192473, 55.942617),
+                        new LngLat(-3.184319, 55.942617),
+                        new LngLat(-3.184319, 55.946233)
+                })
+        };
+        handler = new LngLatHandler();
+    }
+
+    @Test
+    public void whenRandomBatchesCheckedThenVectorAndScalarMatchRayCast() {
+        // Arrange
+        RegionBatch scalar = new RegionBatch(CompiledRegion.compileAll(regions));
+        RegionBatch batch = RegionBatch.of(CompiledRegion.compileAll(regions));
+        Random random = new Random(11);
+        double[] lng = new double[PointBatch.CAPACITY];
+        double[] lat = new double[PointBatch.CAPACITY];
+        boolean[] scalarInside = new boolean[PointBatch.CAPACITY];
+        boolean[] batchInside = new boolean[PointBatch.CAPACITY];
+
+        for (int round = 0; round < 5_000; round++) {
+            // Every batch size, so the lanes left over after the last full vector are covered too
+            int count = 1 + round % PointBatch.CAPACITY;
+            for (int i = 0; i < count; i++) {
+                lng[i] = -3.194 + random.nextDouble() * 0.012;
+                lat[i] = 55.941 + random.nextDouble() * 0.007;
+            }
+
+            // Act
+            scalar.contains(lng, lat, count, scalarInside);
+            batch.contains(lng, lat, count, batchInside);
+
+            // Assert
+            for (int i = 0; i < count; i++) {
+                boolean expected = handler.isInRegion(new LngLat(lng[i], lat[i]), regions[0])
+                        || handler.isInRegion(new LngLat(lng[i], lat[i]), regions[1]);
+                assertEquals(expected, scalarInside[i]);
+                assertEquals(expected, batchInside[i]);
+            }
+        }
+    }
+
+    @Test
+    public void whenPointsOnVerticesAndEdgesCheckedThenBatchMatchesRayCast() {
+        // Arrange
+        RegionBatch batch = RegionBatch.of(CompiledRegion.compileAll(regions));
+        PointBatch points = new PointBatch();
+        boolean[] inside = new boolean[PointBatch.CAPACITY];
+        LngLat[] corners = regions[1].vertices();
+        for (LngLat corner : corners) {
+            points.add(corner.lng(), corner.lat());
+        }
+        for (int i = 0; i < corners.length; i++) {
+            LngLat next = corners[(i + 1) % corners.length];
+            points.add((corners[i].lng() + next.lng()) / 2, (corners[i].lat() + next.lat()) / 2);
+        }
+
+        // Act
+        batch.contains(points.lng, points.lat, points.count, inside);
+
+        // Assert
+        for (int i = 0; i < points.count; i++) {
+            LngLat point = new LngLat(points.lng[i], points.lat[i]);
+            assertEquals(handler.isInRegion(point, regions[0]) || handler.isInRegion(point, regions[1]), inside[i]);
+        }
+    }
+
+    @Test
+    public void whenBatchMarkedByFlightMapThenFlagsMatchSinglePointChecks() {
+        // Arrange
+        FlightMap flightMap = new FlightMap(regions[1], new NamedRegion[]{regions[0]});
+        PointBatch points = new PointBatch();
+        double[] next = new double[2];
+        // The neighbours of a node on the edge of George Square, where the raster cannot answer every point
+        LngLat centre = new LngLat(-3.1899887323379517, 55.94284650540911);
+        for (int direction = 0; direction < LngLatHandler.COMPASS_DIRECTIONS; direction++) {
+            LngLatHandler.nextPosition(centre.lng(), centre.lat(), direction, next);
+            points.add(next[0], next[1]);
+        }
+
+        // Act
+        flightMap.markNoFly(points);
+        flightMap.markCentral(points);
+
+        // Assert
+        for (int i = 0; i < points.count; i++) {
+            assertEquals(flightMap.isInNoFlyZone(points.lng[i], points.lat[i]), points.noFly[i]);
+            assertEquals(flightMap.isInCentralArea(points.lng[i], points.lat[i]), points.central[i]);
+        }
+    }
+
+    @Test
+    public void whenNoRegionsThenNothingContained() {
+        // Arrange
+        RegionBatch batch = RegionBatch.of(new CompiledRegion[0]);
+        boolean[] inside = {true};
+
+        // Act
+        batch.contains(new double[]{-3.189}, new double[]{55.944}, 1, inside);
+
+        // Assert
+        assertFalse(inside[0]);
+    }
+}
@@ -0,0 +1,106 @@
+package uk.ac.ed.inf;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for RegionIndex
+ *
+ *  @author B209981
+ */
+public class RegionIndexTest {
+
+    private NamedRegion[] regions;
+    private RegionIndex index;
+    private final LngLatHandler handler = new LngLatHandler();
+
+    @Before
+    public void setUp() {
+        regions = new NamedRegion[]{
+                new NamedRegion("George Square Area", new LngLat[]{
+                        new LngLat(-3.190578818321228, 55.94402412577528),
+                        new LngLat(-3.1899887323379517, 55.94284650540911),
+                        new LngLat(-3.187097311019897, 55.94328811724263),
+                        new LngLat(-3.187682032585144, 55.944477740393744),
+                        new LngLat(-3.190578818321228, 55.94402412577528)
+                }),
+                // Concave L-shaped region, so that some rays cross it more than twice
+                new NamedRegion("L shape", new LngLat[]{
+                        new LngLat(-3.186, 55.945),
+                        new LngLat(-3.183, 55.945),
+                        new LngLat(-3.183, 55.9455),
+                        new LngLat(-3.185, 55.9455),
+                        new LngLat(-3.185, 55.947),
+                        new LngLat(-3.186, 55.947)
+                })
+        };
+        index = new RegionIndex(regions);
+    }
+
+    // Checks a point with the ray cast of every region
+    private boolean expected(LngLat position) {
+        for (NamedRegion region : regions) {
+            if (handler.isInRegion(position, region)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void whenRandomPointsCheckedThenResultsMatchRayCast() {
+        // Arrange
+        Random random = new Random(42);
+
+        for (int i = 0; i < 50_000; i++) {
+            LngLat position = new LngLat(-3.192 + random.nextDouble() * 0.01, 55.942 + random.nextDouble() * 0.006);
+
+            // Act and Assert
+            assertEquals(expected(position), index.contains(position));
+        }
+    }
+
+    @Test
+    public void whenPointsOnVerticesAndEdgesCheckedThenResultsMatchRayCast() {
+        for (NamedRegion region : regions) {
+            LngLat[] vertices = region.vertices();
+            double middleLng = (vertices[0].lng() + vertices[2].lng()) / 2;
+            for (int i = 0; i < vertices.length; i++) {
+                LngLat a = vertices[i];
+                LngLat b = vertices[(i + 1) % vertices.length];
+                LngLat middle = new LngLat((a.lng() + b.lng()) / 2, (a.lat() + b.lat()) / 2);
+                // A point inside the bounding box at the latitude of the vertex, where the ray passes through it
+                LngLat sameLatitude = new LngLat(middleLng, a.lat());
+
+                assertEquals(expected(a), index.contains(a));
+                // On a sloped edge the answer depends on rounding, which the ray cast does differently
+                if (a.lng() == b.lng() || a.lat() == b.lat()) {
+                    assertEquals(expected(middle), index.contains(middle));
+                }
+                assertEquals(expected(sameLatitude), index.contains(sameLatitude));
+            }
+        }
+    }
+
+    @Test
+    public void whenPointOutsideBoundingBoxThenNotContained() {
+        assertFalse(index.contains(new LngLat(-3.2, 55.944)));
+        assertFalse(index.contains(new LngLat(-3.186, 55.95)));
+    }
+
+    @Test
+    public void whenNoRegionsThenNothingContained() {
+        // Arrange
+        RegionIndex empty = new RegionIndex(new NamedRegion[0]);
+
+        // Act and Assert
+        assertFalse(empty.contains(new LngLat(-3.186, 55.944)));
+        assertFalse(empty.contains(new LngLat(0, 0)));
+    }
+}
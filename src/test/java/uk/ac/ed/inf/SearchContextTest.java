@@ -0,0 +1,117 @@
+package uk.ac.ed.inf;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+import java.util.List;
+
+/**
+ * Unit test for search context
+ *
+ *  @author B209981
+ */
+
+public class SearchContextTest {
+
+    @Test
+    public void whenConstructedThenStateIsEmpty() {
+        // Act
+        SearchContext context = new SearchContext();
+
+        // Assert
+        assertTrue("Open set should be empty", context.openSet.isEmpty());
+        assertTrue("Closed set should be empty", context.closedSet.isEmpty());
+        assertNull("Path should be null", context.getPath());
+    }
+
+    @Test
+    public void whenResetThenPreviousSearchStateIsCleared() {
+        // Arrange
+        SearchContext context = new SearchContext();
+        int node = context.arena.add(-3.186874, 55.944494);
+        context.openSet.add(node);
+        context.closedSet.add(context.keyOf(-3.186874, 55.944494));
+        context.path = List.of(new Node(new LngLat(-3.186874, 55.944494)));
+
+        // Act
+        context.reset();
+
+        // Assert
+        assertTrue("Open set should be empty", context.openSet.isEmpty());
+        assertTrue("Closed set should be empty", context.closedSet.isEmpty());
+        assertEquals("Arena should be empty", 0, context.arena.size());
+        assertNull("Path should be null", context.getPath());
+    }
+
+    @Test
+    public void whenPositionsInSameCellThenKeysMatch() {
+        // Arrange
+        SearchContext context = new SearchContext();
+        context.setOrigin(new LngLat(-3.186874, 55.944494));
+
+        // Act
+        long key = context.keyOf(new LngLat(-3.186874 + Lattice.RESOLUTION, 55.944494));
+        long sameCellKey = context.keyOf(new LngLat(-3.186874 + Lattice.RESOLUTION + 1e-9, 55.944494 - 1e-9));
+        long otherCellKey = context.keyOf(new LngLat(-3.186874 + 2 * Lattice.RESOLUTION, 55.944494));
+
+        // Assert
+        assertEquals("Positions in the same cell should share a key", key, sameCellKey);
+        assertNotEquals("Positions in different cells should have different keys", key, otherCellKey);
+        assertEquals(Lattice.pack(1, 0), key);
+    }
+
+    @Test
+    public void whenDirectionsSetThenOnlyEightOrSixteenAreAccepted() {
+        // Arrange
+        SearchContext context = new SearchContext();
+
+        // Act and Assert
+        assertEquals("Searches should use 16 directions by default", 16, context.directions);
+        assertTrue(context.setDirections(8));
+        assertEquals(8, context.directions);
+        assertFalse(context.setDirections(4));
+        assertEquals("Rejected value should leave the setting unchanged", 8, context.directions);
+    }
+
+    @Test
+    public void whenWeightScheduleSetThenOnlyNonIncreasingWeightsOfAtLeastOneAreAccepted() {
+        // Arrange
+        SearchContext context = new SearchContext();
+
+        // Act and Assert
+        assertArrayEquals("Searches should use a single weight of 2 by default", new double[]{2.0}, context.weights(), 0);
+        assertTrue(context.setWeightSchedule(3.0, 2.0, 1.0));
+        assertFalse(context.setWeightSchedule());
+        assertFalse(context.setWeightSchedule(2.0, 3.0));
+        assertFalse(context.setWeightSchedule(0.5));
+        assertArrayEquals("Rejected schedule should leave the setting unchanged", new double[]{3.0, 2.0, 1.0}, context.weights(), 0);
+    }
+
+    @Test
+    public void whenTimeBudgetSetThenOnlyPositiveBudgetsAreAccepted() {
+        // Arrange
+        SearchContext context = new SearchContext();
+
+        // Act and Assert
+        assertTrue(context.setTimeBudget(500));
+        assertEquals(500_000_000L, context.budgetNanos());
+        assertFalse(context.setTimeBudget(0));
+        assertEquals(500_000_000L, context.budgetNanos());
+    }
+
+    @Test
+    public void whenBoundsSetThenOnlyPositionsInsideAreInBoundsUntilCleared() {
+        // Arrange
+        SearchContext context = new SearchContext();
+
+        // Act and Assert
+        assertTrue("Searches should be unbounded by default", context.isInBounds(-3.19, 55.94));
+        context.setBounds(-3.2, 55.9, -3.1, 56.0);
+        assertTrue(context.isInBounds(-3.19, 55.94));
+        assertFalse(context.isInBounds(-3.21, 55.94));
+        assertFalse(context.isInBounds(-3.19, 56.01));
+        context.clearBounds();
+        assertTrue(context.isInBounds(-3.21, 56.01));
+    }
+}
@@ -0,0 +1,96 @@
+package uk.ac.ed.inf;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.util.List;
+
+/**
+ * Unit test for the visibility graph planner
+ *
+ *  @author B209981
+ */
+
+public class VisibilityPlannerTest {
+
+    private FlightMap flightMap;
+
+    @Before
+    public void setUp() {
+        flightMap = TestGeofence.edinburgh();
+    }
+
+    @Test
+    public void findShortestPathShouldFindValidPathWithFewExpansions() {
+
+        // Arrange
+        LngLat start = new LngLat(-3.202541470527649, 55.943284737579376); // Sora Lella Vegan Restaurant
+        LngLat goal = new LngLat(-3.186874, 55.944494); // Appleton Tower
+        SearchContext lattice = new SearchContext();
+        lattice.setWeightSchedule(1.0);
+        SearchContext visibility = new SearchContext();
+        LngLatHandler handler = new LngLatHandler();
+
+        // Act
+        boolean latticeResult = AStar.findShortestPath(lattice, flightMap, new Node(start), new Node(goal));
+        boolean visibilityResult = VisibilityPlanner.findShortestPath(visibility, flightMap, new Node(start), new Node(goal));
+
+        // Assert
+        Assert.assertTrue(latticeResult);
+        Assert.assertTrue(visibilityResult);
+        List<Node> path = visibility.getPath();
+        Assert.assertTrue("Graph search should expand far fewer nodes", visibility.getExpandedNodes() * 100 < lattice.getExpandedNodes());
+        Assert.assertTrue("Path should be close to the shortest", path.size() <= lattice.getPath().size() * 1.1);
+        Assert.assertEquals("Path should start at the start", start, path.get(0).coordinates);
+        Assert.assertTrue("Path should end close to the goal", handler.isCloseTo(path.get(path.size() - 1).coordinates, goal));
+        for (int j = 1; j < path.size(); j++) {
+            Assert.assertEquals("Each step should be a single move", SystemConstants.DRONE_MOVE_DISTANCE,
+                    handler.distanceTo(path.get(j - 1).coordinates, path.get(j).coordinates), 1e-12);
+            Assert.assertSame(path.get(j - 1), path.get(j).parent);
+            Assert.assertFalse("Path should avoid the no-fly zones", flightMap.isInNoFlyZone(path.get(j).coordinates));
+            Assert.assertFalse("Path should not leave the central area once inside",
+                    flightMap.isInCentralArea(path.get(j - 1).coordinates) && !flightMap.isInCentralArea(path.get(j).coordinates));
+        }
+    }
+
+    @Test
+    public void inflatedCornersShouldLieOutsideTheirRegion() {
+
+        // Arrange
+        NamedRegion square = new NamedRegion("Square", new LngLat[]{
+                new LngLat(-3.189, 55.944),
+                new LngLat(-3.189, 55.943),
+                new LngLat(-3.188, 55.943),
+                new LngLat(-3.188, 55.944),
+                new LngLat(-3.189, 55.944)
+        });
+        FlightMap squareMap = new FlightMap(TestGeofence.centralArea(), new NamedRegion[]{square});
+
+        // Act
+        double[] corners = VisibilityPlanner.inflatedCorners(new NamedRegion[]{square}, new OccupancyRaster(
+                new NamedRegion[]{square}, new RegionIndex(new NamedRegion[]{square})));
+
+        // Assert
+        Assert.assertEquals("Each of the four corners should be kept once", 8, corners.length);
+        for (int i = 0; i < corners.length; i += 2) {
+            Assert.assertFalse(squareMap.isInNoFlyZone(corners[i], corners[i + 1]));
+            double lngGap = Math.min(Math.abs(corners[i] + 3.189), Math.abs(corners[i] + 3.188));
+            double latGap = Math.min(Math.abs(corners[i + 1] - 55.944), Math.abs(corners[i + 1] - 55.943));
+            Assert.assertEquals(VisibilityPlanner.INFLATION, lngGap, 1e-9);
+            Assert.assertEquals(VisibilityPlanner.INFLATION, latGap, 1e-9);
+        }
+    }
+
+    @Test
+    public void isVisibleShouldRejectLinesThroughZonesOrLeavingTheCentralArea() {
+        // Through George Square, along its northern side, and from inside the central area to outside it
+        Assert.assertFalse(VisibilityPlanner.isVisible(-3.1905, 55.9435, -3.1875, 55.9435, flightMap));
+        Assert.assertTrue(VisibilityPlanner.isVisible(-3.1905, 55.9427, -3.1875, 55.9427, flightMap));
+        Assert.assertFalse(VisibilityPlanner.isVisible(-3.1870, 55.9444, -3.1800, 55.9444, flightMap));
+        Assert.assertTrue(VisibilityPlanner.isVisible(-3.1800, 55.9444, -3.1860, 55.9444, flightMap));
+    }
+}